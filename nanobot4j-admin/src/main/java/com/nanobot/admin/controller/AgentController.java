@@ -1,13 +1,13 @@
 package com.nanobot.admin.controller;
 
-import com.nanobot.admin.service.EnhancedAgentService;
+import com.nanobot.admin.service.GenericReActAgent;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
 /**
- * Agent 对话控制器 - 使用增强版服务
+ * Agent 对话控制器 - 与 /api/agent/generic/chat 共用同一套 ReAct 引擎
  */
 @Slf4j
 @RestController
@@ -15,13 +15,13 @@ import org.springframework.web.bind.annotation.*;
 @RequiredArgsConstructor
 public class AgentController {
 
-    private final EnhancedAgentService agentService;
+    private final GenericReActAgent agentService;
 
     /**
      * 处理用户消息 - 支持多步骤推理
      */
     @PostMapping("/chat")
-    public EnhancedAgentService.AgentResponse chat(@RequestBody ChatRequest request) {
+    public GenericReActAgent.AgentResponse chat(@RequestBody ChatRequest request) {
         log.info("Received chat request: {}", request.getMessage());
         return agentService.chat(request.getMessage());
     }
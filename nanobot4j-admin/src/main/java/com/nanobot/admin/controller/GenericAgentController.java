@@ -19,15 +19,21 @@ public class GenericAgentController {
 
     /**
      * 通用对话接口 - 支持任意工具
+     *
+     * 与流式接口共用同一套 ReAct 引擎；传入 sessionId 时启用多轮记忆
      */
     @PostMapping("/chat")
     public GenericReActAgent.AgentResponse chat(@RequestBody ChatRequest request) {
         log.info("Received generic chat request: {}", request.getMessage());
-        return genericAgent.chat(request.getMessage());
+        String sessionId = request.getSessionId() != null && !request.getSessionId().isBlank()
+            ? request.getSessionId()
+            : null;
+        return genericAgent.chat(sessionId, request.getMessage());
     }
 
     @Data
     public static class ChatRequest {
+        private String sessionId;
         private String message;
     }
 }
@@ -0,0 +1,35 @@
+package com.nanobot.admin.controller;
+
+import com.nanobot.admin.service.LLMUsageTracker;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LLM Token 用量 actuator 端点
+ *
+ * GET /actuator/llmusage：按 provider/调用方的累计用量 + Token 总数最高的会话
+ */
+@Component
+@Endpoint(id = "llmusage")
+@RequiredArgsConstructor
+public class LLMUsageEndpoint {
+
+    /** 汇总中列出的会话数 */
+    private static final int TOP_SESSIONS = 20;
+
+    private final LLMUsageTracker usageTracker;
+
+    @ReadOperation
+    public Map<String, Object> usage() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("callers", usageTracker.callerUsage());
+        result.put("sessionCount", usageTracker.sessionCount());
+        result.put("topSessions", usageTracker.topSessions(TOP_SESSIONS));
+        return result;
+    }
+}
@@ -1,19 +1,33 @@
 package com.nanobot.admin.controller;
 
 import com.nanobot.admin.service.StreamingGenericReActAgent;
+import com.nanobot.admin.stream.AgentRunRegistry;
+import com.nanobot.admin.stream.LiveRun;
+import com.nanobot.admin.stream.RunEventLog;
+import com.nanobot.admin.stream.SseEventWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
- * 流式 Agent 控制器 - 基于 SSE 和异步线程池
+ * 流式 Agent 控制器 - 基于 SSE（text/event-stream）和异步线程池
+ *
+ * 断线续传：
+ * 1. POST /chat 在响应头 X-Nanobot-Run-Id 中返回执行 ID，每个事件带递增的 SSE id
+ * 2. 连接断开后执行继续进行，客户端用 GET /runs/{runId}/events + Last-Event-ID 重连，
+ *    先收到缺失的事件，再继续接收后续事件
+ * 3. 执行已结束（或在其他节点上执行且启用 Redis 事件日志）时从事件日志重放；
+ *    跟随其他节点上的执行期间定期写入跟随标记，执行所在节点据此不因"客户端未重连"而取消执行
  */
 @Slf4j
 @RestController
@@ -21,10 +35,23 @@ import java.util.concurrent.Executors;
 @RequiredArgsConstructor
 public class StreamAgentController {
 
+    /** 返回执行 ID 的响应头 */
+    public static final String RUN_ID_HEADER = "X-Nanobot-Run-Id";
+
+    /** SSE 连接在执行时限之外的收尾余量（推送超时错误事件、DONE） */
+    private static final long EMITTER_GRACE_MS = 30_000L;
+
+    /** 跟随其他节点上的执行时轮询事件日志的间隔 */
+    private static final long FOLLOW_POLL_MS = 250L;
+
+    /** 跟随期间续期跟随标记的间隔（需小于 agent.stream.replay.follow-ttl） */
+    private static final long FOLLOW_MARK_INTERVAL_MS = 2_000L;
+
     private final StreamingGenericReActAgent streamingAgent;
+    private final AgentRunRegistry runRegistry;
 
-    // 存储活跃的 SSE 连接，用于监控和管理
-    private final Map<String, SseEmitter> activeEmitters = new ConcurrentHashMap<>();
+    @Value("${agent.deadline.run-timeout-ms:180000}")
+    private long runTimeoutMs;
 
     // 使用缓存线程池处理异步任务（模拟虚拟线程的轻量级特性）
     private final ExecutorService executorService = Executors.newCachedThreadPool(r -> {
@@ -38,60 +65,159 @@ public class StreamAgentController {
      * 流式对话接口
      *
      * @param request 包含用户消息的请求体（可选 sessionId，不传则自动生成）
-     * @return SSE 流
+     * @return SSE 流（响应头 X-Nanobot-Run-Id 为执行 ID）
      */
     @PostMapping(value = "/chat", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter chat(@RequestBody ChatRequest request) {
+    public ResponseEntity<ResponseBodyEmitter> chat(@RequestBody ChatRequest request) {
         // sessionId 由客户端传入以支持多轮记忆；不传则生成新会话
         String sessionId = (request.sessionId() != null && !request.sessionId().isBlank())
             ? request.sessionId()
             : generateSessionId();
 
-        log.info("Starting streaming chat session: {}, message: {}", sessionId, request.message());
+        LiveRun run = runRegistry.start(sessionId);
+        log.info("Starting streaming chat session: {}, run: {}, message: {}", sessionId, run.getRunId(), request.message());
+
+        ResponseBodyEmitter emitter = newEmitter(run);
+        run.attach(emitter, 0);
+
+        // 使用线程池异步执行 ReAct 循环（与连接解耦，断线后继续执行，等待重连）
+        executorService.submit(() -> {
+            try {
+                streamingAgent.chatStreaming(sessionId, request.message(), run, run.getCancellation());
+            } catch (Exception e) {
+                log.error("Error in streaming agent execution", e);
+            } finally {
+                run.finish();
+            }
+        });
+
+        return sse().header(RUN_ID_HEADER, run.getRunId()).body(emitter);
+    }
+
+    /**
+     * 断线重连：重放 Last-Event-ID 之后的事件，执行仍在进行时继续接收后续事件
+     *
+     * @param runId 执行 ID
+     * @param lastEventId 客户端最后收到的事件 ID（请求头 Last-Event-ID，或查询参数 lastEventId）
+     * @return SSE 流
+     */
+    @GetMapping(value = "/runs/{runId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> resume(
+        @PathVariable("runId") String runId,
+        @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+        @RequestParam(value = "lastEventId", required = false) Long lastEventIdParam
+    ) {
+        long lastEventId = lastEventIdHeader != null ? lastEventIdHeader
+            : lastEventIdParam != null ? lastEventIdParam : 0;
+
+        // 1. 本节点上仍在执行：挂到 LiveRun 上
+        LiveRun run = runRegistry.get(runId);
+        if (run != null) {
+            log.info("Resuming run {} after event {}", runId, lastEventId);
+            ResponseBodyEmitter emitter = newEmitter(run);
+            run.attach(emitter, lastEventId);
+            return sse().header(RUN_ID_HEADER, runId).body(emitter);
+        }
+
+        // 2. 已结束或在其他节点上执行：从事件日志重放
+        RunEventLog eventLog = runRegistry.getEventLog();
+        if (!eventLog.contains(runId)) {
+            return ResponseEntity.notFound().build();
+        }
+
+        log.info("Replaying run {} from event log after event {}", runId, lastEventId);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(runTimeoutMs + EMITTER_GRACE_MS);
+        executorService.submit(() -> replay(eventLog, runId, lastEventId, emitter));
+        return sse().header(RUN_ID_HEADER, runId).body(emitter);
+    }
+
+    /**
+     * 从事件日志重放；事件日志跨节点共享时持续跟随，直到收到 DONE
+     */
+    private void replay(RunEventLog eventLog, String runId, long lastEventId, ResponseBodyEmitter emitter) {
+        long cursor = lastEventId;
+        long deadline = System.currentTimeMillis() + runTimeoutMs + EMITTER_GRACE_MS;
+        long markedAt = 0;
+        try {
+            while (true) {
+                if (eventLog.isShared() && System.currentTimeMillis() - markedAt >= FOLLOW_MARK_INTERVAL_MS) {
+                    markFollowed(eventLog, runId);
+                    markedAt = System.currentTimeMillis();
+                }
+                // 每次读取到的事件合并为一次写出（DONE 之后不会再有事件）
+                List<RunEventLog.StoredEvent> events = eventLog.readAfter(runId, cursor);
+                if (!events.isEmpty()) {
+                    RunEventLog.StoredEvent last = events.get(events.size() - 1);
+                    emitter.send(SseEventWriter.join(events), MediaType.TEXT_EVENT_STREAM);
+                    cursor = last.id();
+                    if (last.isTerminal()) {
+                        emitter.complete();
+                        return;
+                    }
+                }
+                if (!eventLog.isShared() || !eventLog.contains(runId) || System.currentTimeMillis() > deadline) {
+                    emitter.complete();
+                    return;
+                }
+                Thread.sleep(FOLLOW_POLL_MS);
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Replay client of run {} gone: {}", runId, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
 
-        // 创建 SSE Emitter，设置 5 分钟超时
-        SseEmitter emitter = new SseEmitter(5 * 60 * 1000L);
-        activeEmitters.put(sessionId, emitter);
+    private static void markFollowed(RunEventLog eventLog, String runId) {
+        try {
+            eventLog.markFollowed(runId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark run {} as followed: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * 创建挂在 LiveRun 上的 SSE 连接：断开、超时或出错时从 LiveRun 上摘下（执行继续，等待重连）
+     */
+    private ResponseBodyEmitter newEmitter(LiveRun run) {
+        // 超时 = 本轮执行时限 + 收尾余量（执行时限由 AgentRunner 控制）
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(runTimeoutMs + EMITTER_GRACE_MS);
 
-        // 设置完成和超时回调
         emitter.onCompletion(() -> {
-            log.info("SSE session completed: {}", sessionId);
-            activeEmitters.remove(sessionId);
+            log.info("SSE connection completed: run={}", run.getRunId());
+            run.detach(emitter);
         });
 
         emitter.onTimeout(() -> {
-            log.warn("SSE session timeout: {}", sessionId);
-            activeEmitters.remove(sessionId);
+            log.warn("SSE connection timeout: run={}", run.getRunId());
+            run.detach(emitter);
             emitter.complete();
         });
 
         emitter.onError(throwable -> {
-            log.error("SSE session error: {}", sessionId, throwable);
-            activeEmitters.remove(sessionId);
-        });
-
-        // 使用线程池异步执行 ReAct 循环
-        executorService.submit(() -> {
-            try {
-                streamingAgent.chatStreaming(sessionId, request.message(), emitter);
-            } catch (Exception e) {
-                log.error("Error in streaming agent execution", e);
-                try {
-                    emitter.completeWithError(e);
-                } catch (Exception ignored) { }
-            }
+            log.warn("SSE connection error: run={}, {}", run.getRunId(), throwable.getMessage());
+            run.detach(emitter);
         });
 
         return emitter;
     }
 
+    /**
+     * 事件由 SseEventWriter 预先编码为 SSE 帧，连接以 ResponseBodyEmitter 原样写出
+     */
+    private static ResponseEntity.BodyBuilder sse() {
+        return ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM);
+    }
+
     /**
      * 获取活跃连接数（监控用）
      */
     @GetMapping("/stats")
     public Map<String, Object> getStats() {
         return Map.of(
-            "activeConnections", activeEmitters.size(),
+            "activeConnections", runRegistry.attachedCount(),
+            "liveRuns", runRegistry.liveCount(),
             "threadPoolSize", ((java.util.concurrent.ThreadPoolExecutor) executorService).getPoolSize()
         );
     }
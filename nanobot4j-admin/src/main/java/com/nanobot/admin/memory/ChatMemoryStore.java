@@ -2,7 +2,9 @@ package com.nanobot.admin.memory;
 
 import com.nanobot.core.llm.Message;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 聊天记忆存储接口
@@ -22,6 +24,26 @@ public interface ChatMemoryStore {
      */
     void addMessage(String sessionId, Message message);
 
+    /**
+     * 批量追加多个会话的消息
+     *
+     * 默认逐条调用 addMessage，具体存储可覆盖为一次往返提交（例如 Redis pipeline）。
+     *
+     * @param batch sessionId -> 待追加的消息（按时间升序）
+     */
+    default void addMessages(Map<String, List<Message>> batch) {
+        batch.forEach((sessionId, messages) -> messages.forEach(message -> addMessage(sessionId, message)));
+    }
+
+    /**
+     * addMessages 是否原子：失败时一条都没有写入，调用方可以整批重试
+     *
+     * 默认实现逐条写入，失败时可能已写入一部分，返回 false。
+     */
+    default boolean isBatchAtomic() {
+        return false;
+    }
+
     /**
      * 获取会话的所有历史消息
      *
@@ -39,6 +61,23 @@ public interface ChatMemoryStore {
      */
     List<Message> getRecentMessages(String sessionId, int limit);
 
+    /**
+     * 获取会话中下标位于 [start, end) 区间的消息
+     *
+     * 默认实现读取全部消息后截取，具体存储应覆盖为按下标直接读取。
+     *
+     * @param sessionId 会话 ID
+     * @param start 起始下标（包含）
+     * @param end 结束下标（不包含）
+     * @return 消息列表（按时间升序）
+     */
+    default List<Message> getMessages(String sessionId, long start, long end) {
+        List<Message> all = getMessages(sessionId);
+        int from = (int) Math.min(Math.max(0, start), all.size());
+        int to = (int) Math.min(Math.max(from, end), all.size());
+        return new ArrayList<>(all.subList(from, to));
+    }
+
     /**
      * 获取会话的消息总数
      *
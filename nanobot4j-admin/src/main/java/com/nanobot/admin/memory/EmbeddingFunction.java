@@ -0,0 +1,27 @@
+package com.nanobot.admin.memory;
+
+/**
+ * 文本向量化函数
+ *
+ * 供长期记忆召回使用。容器中存在该类型的 Bean 时优先使用（例如远程 Embedding 服务），
+ * 否则退化为本地的 HashingEmbeddingFunction。
+ *
+ * 约定：返回的向量长度等于 dimension()，且已做 L2 归一化（召回时以点积作为余弦相似度）。
+ */
+public interface EmbeddingFunction {
+
+    /**
+     * 向量维度
+     *
+     * @return 维度
+     */
+    int dimension();
+
+    /**
+     * 计算文本向量
+     *
+     * @param text 文本
+     * @return L2 归一化后的向量
+     */
+    float[] embed(String text);
+}
@@ -0,0 +1,108 @@
+package com.nanobot.admin.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地哈希向量化（Feature Hashing）
+ *
+ * 特点：
+ * 1. 纯本地、确定性：相同文本在任何进程中得到相同向量，适合测试和无外部依赖的部署
+ * 2. 分词：英文/数字按单词切分，中文按单字 + 相邻双字切分
+ * 3. 每个词项哈希到一个维度并带正负号，词频取 1 + log(tf)，最后做 L2 归一化
+ *
+ * 只能捕捉词面重叠，不具备真正的语义能力；需要语义召回时请提供 EmbeddingFunction Bean。
+ */
+public class HashingEmbeddingFunction implements EmbeddingFunction {
+
+    private final int dimension;
+
+    public HashingEmbeddingFunction(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension must be positive: " + dimension);
+        }
+        this.dimension = dimension;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] counts = new float[dimension];
+        for (String token : tokenize(text)) {
+            int hash = mix(token.hashCode());
+            int bucket = Math.floorMod(hash, dimension);
+            counts[bucket] += (hash & 0x40000000) == 0 ? 1f : -1f;
+        }
+
+        double norm = 0;
+        for (int i = 0; i < dimension; i++) {
+            float c = counts[i];
+            if (c != 0) {
+                counts[i] = (float) (Math.signum(c) * (1 + Math.log(Math.abs(c))));
+                norm += counts[i] * counts[i];
+            }
+        }
+
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < dimension; i++) {
+                counts[i] *= scale;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 分词：ASCII 字母数字连续串为一个词；中日韩字符输出单字和相邻双字
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        char prevCjk = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c) && c < 0x80) {
+                word.append(Character.toLowerCase(c));
+                prevCjk = 0;
+                continue;
+            }
+            if (word.length() > 0) {
+                tokens.add(word.toString());
+                word.setLength(0);
+            }
+            if (Character.isIdeographic(c)) {
+                tokens.add(String.valueOf(c));
+                if (prevCjk != 0) {
+                    tokens.add(new String(new char[]{prevCjk, c}));
+                }
+                prevCjk = c;
+            } else {
+                prevCjk = 0;
+            }
+        }
+        if (word.length() > 0) {
+            tokens.add(word.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * 打散 String.hashCode 的低位分布（murmur3 finalizer）
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
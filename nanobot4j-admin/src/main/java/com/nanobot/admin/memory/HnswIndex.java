@@ -0,0 +1,271 @@
+package com.nanobot.admin.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近似最近邻索引
+ *
+ * 实现要点：
+ * 1. 向量存放在堆外 DirectByteBuffer 中，按容量翻倍扩容，避免大量 float[] 给 GC 造成压力
+ * 2. 向量需预先 L2 归一化，距离定义为 1 - 点积（即余弦距离）
+ * 3. 图结构（每层邻接表）保存在堆内；节点层级由固定种子的随机数生成，结果可复现
+ *
+ * 非线程安全，由调用方（HnswRecallMemoryStore）按会话加锁。
+ */
+final class HnswIndex {
+
+    /** 每层最大邻居数（第 0 层为 2M） */
+    private static final int M = 16;
+    private static final int M0 = 2 * M;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final double LEVEL_MULTIPLIER = 1 / Math.log(M);
+
+    private final int dimension;
+    private final Random random = new Random(42);
+    private final List<int[][]> links = new ArrayList<>();
+    private final List<int[]> linkCounts = new ArrayList<>();
+
+    private FloatBuffer vectors;
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    HnswIndex(int dimension, int initialCapacity) {
+        this.dimension = dimension;
+        this.vectors = allocate(Math.max(1, initialCapacity));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * 插入向量，返回节点 ID（从 0 递增）
+     */
+    int add(float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + vector.length);
+        }
+
+        int node = size;
+        ensureCapacity(node + 1);
+        vectors.put(node * dimension, vector);
+        size++;
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * LEVEL_MULTIPLIER);
+        int[][] nodeLinks = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            nodeLinks[l] = new int[maxNeighbors(l)];
+        }
+        links.add(nodeLinks);
+        linkCounts.add(new int[level + 1]);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        // 1. 在高于新节点层级的层上贪心下降
+        int current = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            current = greedySearch(vector, current, l);
+        }
+
+        // 2. 在新节点所在的每一层搜索候选并双向连边
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            PriorityQueue<Candidate> nearest = searchLayer(vector, current, EF_CONSTRUCTION, l);
+            List<Candidate> sorted = sortAscending(nearest);
+            int max = maxNeighbors(l);
+            for (int i = 0; i < sorted.size() && i < max; i++) {
+                connect(node, sorted.get(i).node, l);
+                connect(sorted.get(i).node, node, l);
+            }
+            current = sorted.get(0).node;
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * 查询最相近的 k 个节点，按相似度降序返回
+     */
+    List<Hit> search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+
+        int current = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedySearch(query, current, l);
+        }
+
+        List<Candidate> sorted = sortAscending(searchLayer(query, current, Math.max(ef, k), 0));
+        List<Hit> hits = new ArrayList<>(Math.min(k, sorted.size()));
+        for (int i = 0; i < sorted.size() && i < k; i++) {
+            Candidate c = sorted.get(i);
+            hits.add(new Hit(c.node, 1 - c.distance));
+        }
+        return hits;
+    }
+
+    // ========== 图搜索 ==========
+
+    private int greedySearch(float[] query, int start, int level) {
+        int current = start;
+        float best = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links.get(current)[level];
+            int count = linkCounts.get(current)[level];
+            for (int i = 0; i < count; i++) {
+                float d = distance(query, neighbors[i]);
+                if (d < best) {
+                    best = d;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 单层 beam search，返回最多 ef 个最近节点（大顶堆）
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        boolean[] visited = new boolean[size];
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>((a, b) -> Float.compare(a.distance, b.distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>((a, b) -> Float.compare(b.distance, a.distance));
+
+        Candidate first = new Candidate(start, distance(query, start));
+        visited[start] = true;
+        candidates.add(first);
+        results.add(first);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (closest.distance > results.peek().distance && results.size() >= ef) {
+                break;
+            }
+
+            int[][] nodeLinks = links.get(closest.node);
+            if (level >= nodeLinks.length) {
+                continue;
+            }
+            int[] neighbors = nodeLinks[level];
+            int count = linkCounts.get(closest.node)[level];
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (visited[neighbor]) {
+                    continue;
+                }
+                visited[neighbor] = true;
+
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate c = new Candidate(neighbor, d);
+                    candidates.add(c);
+                    results.add(c);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 添加一条有向边；邻居已满时保留距离最近的 maxNeighbors 个
+     */
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links.get(from)[level];
+        int[] counts = linkCounts.get(from);
+        int count = counts[level];
+
+        if (count < neighbors.length) {
+            neighbors[count] = to;
+            counts[level] = count + 1;
+            return;
+        }
+
+        // 邻居已满：替换掉距离最远的那个（如果新节点更近）
+        float[] base = vector(from);
+        int worst = -1;
+        float worstDistance = distance(base, to);
+        for (int i = 0; i < count; i++) {
+            float d = distance(base, neighbors[i]);
+            if (d > worstDistance) {
+                worstDistance = d;
+                worst = i;
+            }
+        }
+        if (worst >= 0) {
+            neighbors[worst] = to;
+        }
+    }
+
+    private static List<Candidate> sortAscending(PriorityQueue<Candidate> queue) {
+        List<Candidate> sorted = new ArrayList<>(queue);
+        sorted.sort((a, b) -> Float.compare(a.distance, b.distance));
+        return sorted;
+    }
+
+    // ========== 堆外向量存储 ==========
+
+    private float distance(float[] query, int node) {
+        int base = node * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors.get(base + i);
+        }
+        return 1 - dot;
+    }
+
+    private float[] vector(int node) {
+        float[] v = new float[dimension];
+        vectors.get(node * dimension, v);
+        return v;
+    }
+
+    private void ensureCapacity(int nodes) {
+        int capacity = vectors.capacity() / dimension;
+        if (nodes <= capacity) {
+            return;
+        }
+        FloatBuffer grown = allocate(Math.max(nodes, capacity * 2));
+        grown.put(0, vectors, 0, size * dimension);
+        vectors = grown;
+    }
+
+    private FloatBuffer allocate(int nodes) {
+        return ByteBuffer.allocateDirect(nodes * dimension * Float.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asFloatBuffer();
+    }
+
+    private static int maxNeighbors(int level) {
+        return level == 0 ? M0 : M;
+    }
+
+    // ========== 内部数据类 ==========
+
+    private record Candidate(int node, float distance) {}
+
+    /**
+     * 查询结果：节点 ID 与余弦相似度
+     */
+    record Hit(int node, float score) {}
+}
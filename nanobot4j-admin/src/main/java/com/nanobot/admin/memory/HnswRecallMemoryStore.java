@@ -0,0 +1,171 @@
+package com.nanobot.admin.memory;
+
+import com.nanobot.core.llm.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于进程内 HNSW 索引的长期召回记忆
+ *
+ * 存储结构：
+ * - 每个会话一份 HnswIndex（向量存放在堆外内存）+ 原文列表
+ * - 向量化：优先使用容器中的 EmbeddingFunction Bean，否则使用本地 HashingEmbeddingFunction
+ * - TTL：会话最后一次访问超过 memory.recall.ttl 后整体释放
+ *
+ * 只索引 user / assistant 消息；单会话条数达到上限后不再追加。
+ */
+@Slf4j
+@Component
+public class HnswRecallMemoryStore implements RecallMemoryStore {
+
+    /** 单条片段最大保留字符数（召回结果直接进入 Prompt） */
+    private static final int MAX_SNIPPET_CHARS = 500;
+
+    private final EmbeddingFunction embeddingFunction;
+    private final boolean enabled;
+    private final float minScore;
+    private final int maxEntriesPerSession;
+    private final int efSearch;
+    private final long ttlMillis;
+
+    private final Map<String, SessionRecall> sessions = new ConcurrentHashMap<>();
+
+    public HnswRecallMemoryStore(
+        ObjectProvider<EmbeddingFunction> embeddingFunction,
+        @Value("${memory.recall.enabled:true}") boolean enabled,
+        @Value("${memory.recall.dimension:256}") int dimension,
+        @Value("${memory.recall.min-score:0.2}") float minScore,
+        @Value("${memory.recall.max-entries-per-session:5000}") int maxEntriesPerSession,
+        @Value("${memory.recall.ef-search:64}") int efSearch,
+        @Value("${memory.recall.ttl:24h}") Duration ttl
+    ) {
+        this.embeddingFunction = embeddingFunction.getIfAvailable(() -> new HashingEmbeddingFunction(dimension));
+        this.enabled = enabled;
+        this.minScore = minScore;
+        this.maxEntriesPerSession = maxEntriesPerSession;
+        this.efSearch = efSearch;
+        this.ttlMillis = ttl.toMillis();
+        log.info("Recall memory enabled={}, embedding={}, dimension={}",
+            enabled, this.embeddingFunction.getClass().getSimpleName(), this.embeddingFunction.dimension());
+    }
+
+    @Override
+    public void index(String sessionId, long fromIndex, List<Message> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+
+        SessionRecall recall = sessions.computeIfAbsent(sessionId,
+            k -> new SessionRecall(new HnswIndex(embeddingFunction.dimension(), 64)));
+
+        int added = 0;
+        synchronized (recall) {
+            for (int i = 0; i < messages.size(); i++) {
+                long messageIndex = fromIndex + i;
+                if (messageIndex < recall.nextIndex) {
+                    continue;
+                }
+                recall.nextIndex = messageIndex + 1;
+
+                Message message = messages.get(i);
+                if (!isRecallable(message) || recall.index.size() >= maxEntriesPerSession) {
+                    continue;
+                }
+
+                recall.index.add(embeddingFunction.embed(message.getContent()));
+                recall.roles.add(message.getRole());
+                recall.contents.add(truncate(message.getContent()));
+                added++;
+            }
+            recall.lastAccessMillis = System.currentTimeMillis();
+        }
+
+        log.debug("Indexed {} evicted messages for session {}", added, sessionId);
+    }
+
+    @Override
+    public long getIndexedCount(String sessionId) {
+        SessionRecall recall = sessions.get(sessionId);
+        if (recall == null) {
+            return 0;
+        }
+        synchronized (recall) {
+            return recall.nextIndex;
+        }
+    }
+
+    @Override
+    public List<RecallSnippet> recall(String sessionId, String query, int topK) {
+        SessionRecall recall = sessions.get(sessionId);
+        if (!enabled || recall == null || query == null || query.isBlank()) {
+            return List.of();
+        }
+
+        float[] vector = embeddingFunction.embed(query);
+
+        List<RecallSnippet> snippets = new ArrayList<>();
+        synchronized (recall) {
+            for (HnswIndex.Hit hit : recall.index.search(vector, topK, efSearch)) {
+                if (hit.score() >= minScore) {
+                    snippets.add(new RecallSnippet(
+                        recall.roles.get(hit.node()), recall.contents.get(hit.node()), hit.score()));
+                }
+            }
+            recall.lastAccessMillis = System.currentTimeMillis();
+        }
+
+        log.debug("Recalled {} snippets for session {}", snippets.size(), sessionId);
+        return snippets;
+    }
+
+    @Override
+    public void clear(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 定期释放过期会话的索引（每 5 分钟）
+     */
+    @Scheduled(fixedRate = 300000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        sessions.entrySet().removeIf(entry -> now - entry.getValue().lastAccessMillis > ttlMillis);
+    }
+
+    private boolean isRecallable(Message message) {
+        String role = message.getRole();
+        return message.getContent() != null
+            && !message.getContent().isBlank()
+            && ("user".equals(role) || "assistant".equals(role));
+    }
+
+    private String truncate(String content) {
+        return content.length() <= MAX_SNIPPET_CHARS
+            ? content
+            : content.substring(0, MAX_SNIPPET_CHARS) + "...";
+    }
+
+    /**
+     * 单个会话的召回索引
+     */
+    private static final class SessionRecall {
+        private final HnswIndex index;
+        private final List<String> roles = new ArrayList<>();
+        private final List<String> contents = new ArrayList<>();
+        private long nextIndex;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        SessionRecall(HnswIndex index) {
+            this.index = index;
+        }
+    }
+}
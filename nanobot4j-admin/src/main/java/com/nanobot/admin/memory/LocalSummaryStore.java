@@ -0,0 +1,99 @@
+package com.nanobot.admin.memory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内摘要存储，与 MappedFileChatMemoryStore 搭配用于无 Redis 部署
+ *
+ * 摘要可以随时由 MemorySummarizer 从聊天记录重新生成，因此不做持久化：
+ * 重启后首次 summarizeIfNeeded 会重新生成摘要。
+ *
+ * 启用方式：memory.store=local
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "memory", name = "store", havingValue = "local")
+public class LocalSummaryStore implements SummaryStore {
+
+    private final Map<String, Entry> summaries = new ConcurrentHashMap<>();
+    private final Map<String, NodesEntry> nodes = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public LocalSummaryStore(@Value("${memory.local.ttl:24h}") Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @Override
+    public void saveSummary(String sessionId, String summary) {
+        summaries.put(sessionId, new Entry(summary, System.currentTimeMillis() + ttlMillis));
+        log.info("Saved summary for session {}: {} chars", sessionId, summary.length());
+    }
+
+    @Override
+    public String getSummary(String sessionId) {
+        Entry entry = summaries.get(sessionId);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.summary();
+    }
+
+    @Override
+    public boolean hasSummary(String sessionId) {
+        return getSummary(sessionId) != null;
+    }
+
+    @Override
+    public void deleteSummary(String sessionId) {
+        summaries.remove(sessionId);
+        nodes.remove(sessionId);
+        log.info("Deleted summary for session {}", sessionId);
+    }
+
+    @Override
+    public void saveNode(String sessionId, SummaryNode node) {
+        NodesEntry entry = nodes.computeIfAbsent(sessionId, k -> new NodesEntry());
+        entry.nodes.put(node.key(), node);
+        entry.expireAt = System.currentTimeMillis() + ttlMillis;
+    }
+
+    @Override
+    public List<SummaryNode> getNodes(String sessionId) {
+        NodesEntry entry = nodes.get(sessionId);
+        if (entry == null || entry.expireAt < System.currentTimeMillis()) {
+            return List.of();
+        }
+        return new ArrayList<>(entry.nodes.values());
+    }
+
+    /**
+     * 定期清理过期摘要（每 5 分钟）
+     */
+    @Scheduled(fixedRate = 300000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        summaries.values().removeIf(entry -> entry.isExpired(now));
+        nodes.values().removeIf(entry -> entry.expireAt < now);
+    }
+
+    private record Entry(String summary, long expireAt) {
+        boolean isExpired(long now) {
+            return now > expireAt;
+        }
+    }
+
+    private static final class NodesEntry {
+        private final Map<String, SummaryNode> nodes = new ConcurrentHashMap<>();
+        private volatile long expireAt;
+    }
+}
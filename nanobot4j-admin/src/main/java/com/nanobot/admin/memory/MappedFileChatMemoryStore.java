@@ -0,0 +1,798 @@
+package com.nanobot.admin.memory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.llm.Message;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 本地内存映射文件实现的聊天记忆存储（无需 Redis）
+ *
+ * 存储结构：
+ * - 目录：memory.local.dir，由若干追加写的段文件组成（segment-0000000001.log）
+ * - 段文件：通过 MappedByteBuffer 映射，记录顺序追加，写满后封存并滚动到新段
+ * - 记录格式：[长度 int][CRC32 int][类型 byte][时间戳 long][sessionId 长度 short][sessionId][JSON 消息]
+ * - 索引：每个会话在内存中维护一份记录偏移数组（段号 << 32 | 段内位置），
+ *   getRecentMessages 只读取数组尾部的 N 条记录，getMessageCount 为 O(1)
+ *
+ * 后台任务：
+ * - TTL：会话最后一次写入超过 memory.local.ttl 后过期（与 Redis 实现一致，写入时刷新）
+ * - 压缩：已封存段的存活记录比例低于阈值时，将涉及的会话整体重写到活跃段，再删除旧段；
+ *   被删除段中仍有效的墓碑（更早的段里还有该会话的记录）以 TRUNCATE 记录转写到活跃段
+ * - 刷盘：每秒 force() 一次活跃段（类似 Redis 的 appendfsync everysec）
+ *
+ * 启用方式：memory.store=local
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "memory", name = "store", havingValue = "local")
+public class MappedFileChatMemoryStore implements ChatMemoryStore {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // ========== 记录类型 ==========
+
+    /** 普通消息 */
+    private static final byte TYPE_MESSAGE = 1;
+    /** 清空会话（clearMessages / TTL 过期） */
+    private static final byte TYPE_CLEAR = 2;
+    /** 压缩重写开始：之后的 SNAPSHOT_MESSAGE 在 COMMIT 之前不生效 */
+    private static final byte TYPE_SNAPSHOT_BEGIN = 3;
+    private static final byte TYPE_SNAPSHOT_MESSAGE = 4;
+    /** 压缩重写提交：用快照替换会话原有索引 */
+    private static final byte TYPE_SNAPSHOT_COMMIT = 5;
+    /** 压缩转写的墓碑：丢弃会话中偏移小于负载（long）的记录 */
+    private static final byte TYPE_TRUNCATE = 6;
+
+    /** 记录头：长度(4) + CRC(4) + 类型(1) + 时间戳(8) + sessionId 长度(2) */
+    private static final int HEADER_SIZE = 19;
+    private static final int CRC_START = 8;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final int segmentSize;
+    private final long ttlMillis;
+    private final double compactionThreshold;
+
+    /**
+     * 会话索引与段表，均由 lock 保护：
+     * 写入、过期、压缩持有写锁；读取持有读锁
+     */
+    private final Map<String, SessionIndex> sessions = new HashMap<>();
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment activeSegment;
+
+    public MappedFileChatMemoryStore(
+        ObjectMapper objectMapper,
+        @Value("${memory.local.dir:./data/chat-memory}") String directory,
+        @Value("${memory.local.segment-size:64MB}") DataSize segmentSize,
+        @Value("${memory.local.ttl:24h}") Duration ttl,
+        @Value("${memory.local.compaction-threshold:0.5}") double compactionThreshold
+    ) {
+        if (segmentSize.toBytes() <= HEADER_SIZE || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("memory.local.segment-size must be between "
+                + HEADER_SIZE + " bytes and 2GB: " + segmentSize);
+        }
+        this.objectMapper = objectMapper;
+        this.directory = Paths.get(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.ttlMillis = ttl.toMillis();
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    // ========== 生命周期 ==========
+
+    /**
+     * 打开目录下的所有段文件并回放，重建会话索引
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream
+                .filter(p -> parseSegmentId(p) > 0)
+                .sorted((a, b) -> Integer.compare(parseSegmentId(a), parseSegmentId(b)))
+                .toList();
+        }
+
+        lock.writeLock().lock();
+        try {
+            Map<String, SessionIndex> pendingSnapshots = new HashMap<>();
+            for (Path file : files) {
+                Segment segment = Segment.open(parseSegmentId(file), file, 0);
+                segments.put(segment.id, segment);
+                replay(segment, pendingSnapshots);
+            }
+            if (!pendingSnapshots.isEmpty()) {
+                log.warn("Discarded {} uncommitted compaction snapshots", pendingSnapshots.size());
+            }
+
+            activeSegment = segments.isEmpty() ? createSegment(1, segmentSize) : segments.lastEntry().getValue();
+
+            // 索引回放完成后统一计算各段的存活记录数
+            for (SessionIndex index : sessions.values()) {
+                for (int i = 0; i < index.size; i++) {
+                    segments.get(segmentId(index.offsets[i])).liveRecords++;
+                }
+            }
+
+            expireSessions(System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.info("Opened local chat memory at {}: {} segments, {} sessions",
+            directory.toAbsolutePath(), segments.size(), sessions.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+            sessions.clear();
+            activeSegment = null;
+            log.info("Closed local chat memory at {}", directory.toAbsolutePath());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== ChatMemoryStore ==========
+
+    @Override
+    public void addMessage(String sessionId, Message message) {
+        byte[] payload;
+        try {
+            payload = objectMapper.writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize message", e);
+            throw new RuntimeException("Failed to add message to memory", e);
+        }
+
+        long now = System.currentTimeMillis();
+
+        lock.writeLock().lock();
+        try {
+            SessionIndex index = sessions.get(sessionId);
+            if (index != null && isExpired(index, now)) {
+                dropSession(sessionId, now);
+                index = null;
+            }
+            if (index == null) {
+                index = new SessionIndex();
+                sessions.put(sessionId, index);
+            }
+
+            long offset = append(TYPE_MESSAGE, sessionId, now, payload);
+            index.add(offset);
+            index.lastWriteMillis = now;
+            activeSegment.liveRecords++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        log.debug("Added message to session {}: role={}", sessionId, message.getRole());
+    }
+
+    @Override
+    public List<Message> getMessages(String sessionId) {
+        return getRecentMessages(sessionId, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Message> getRecentMessages(String sessionId, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            SessionIndex index = liveIndex(sessionId);
+            if (index == null) {
+                return new ArrayList<>();
+            }
+
+            // 直接定位尾部偏移，无需扫描更早的记录
+            int start = Math.max(0, index.size - limit);
+            List<Message> messages = new ArrayList<>(index.size - start);
+            for (int i = start; i < index.size; i++) {
+                messages.add(deserializeMessage(readPayload(index.offsets[i])));
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessages(String sessionId, long start, long end) {
+        lock.readLock().lock();
+        try {
+            SessionIndex index = liveIndex(sessionId);
+            if (index == null) {
+                return new ArrayList<>();
+            }
+
+            int from = (int) Math.min(Math.max(0, start), index.size);
+            int to = (int) Math.min(Math.max(from, end), index.size);
+            List<Message> messages = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                messages.add(deserializeMessage(readPayload(index.offsets[i])));
+            }
+            return messages;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long getMessageCount(String sessionId) {
+        lock.readLock().lock();
+        try {
+            SessionIndex index = liveIndex(sessionId);
+            return index != null ? index.size : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void clearMessages(String sessionId) {
+        lock.writeLock().lock();
+        try {
+            dropSession(sessionId, System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Cleared all messages for session {}", sessionId);
+    }
+
+    @Override
+    public boolean exists(String sessionId) {
+        lock.readLock().lock();
+        try {
+            return liveIndex(sessionId) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ========== 后台任务 ==========
+
+    /**
+     * 定期刷盘活跃段
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flush() {
+        lock.readLock().lock();
+        try {
+            if (activeSegment != null) {
+                activeSegment.buffer.force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 定期清理过期会话并压缩段文件
+     */
+    @Scheduled(fixedDelayString = "${memory.local.compaction-interval-ms:300000}")
+    public void expireAndCompact() {
+        lock.writeLock().lock();
+        try {
+            expireSessions(System.currentTimeMillis());
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            compact();
+        } catch (Exception e) {
+            log.error("Local chat memory compaction failed", e);
+        }
+    }
+
+    /**
+     * 压缩：选出存活比例低于阈值的封存段，把引用这些段的会话整体重写到活跃段后删除旧段
+     *
+     * 每个会话的重写以 SNAPSHOT_BEGIN / SNAPSHOT_COMMIT 包裹，崩溃时未提交的快照会在回放时丢弃，
+     * 旧段在快照刷盘之后才删除，因此任意时刻崩溃都不会丢失已写入的消息。
+     */
+    void compact() {
+        List<Integer> victims = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment == activeSegment) {
+                    continue;
+                }
+                // 只含墓碑等控制记录的段（totalRecords == 0）同样可以直接回收
+                if (segment.totalRecords == 0
+                    || (double) segment.liveRecords / segment.totalRecords < compactionThreshold) {
+                    victims.add(segment.id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (victims.isEmpty()) {
+            return;
+        }
+
+        // 找出仍引用待回收段的会话
+        List<String> affected = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, SessionIndex> entry : sessions.entrySet()) {
+                if (entry.getValue().referencesAny(victims)) {
+                    affected.add(entry.getKey());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // 逐个会话重写，每次只短暂持有写锁
+        for (String sessionId : affected) {
+            lock.writeLock().lock();
+            try {
+                SessionIndex index = sessions.get(sessionId);
+                if (index != null && index.referencesAny(victims)) {
+                    rewriteSession(sessionId, index);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            // victims 按段号升序：更早的段先删除，之后的墓碑检查不再计入它们
+            List<Segment> deletable = new ArrayList<>();
+            for (Integer id : victims) {
+                Segment segment = segments.get(id);
+                if (segment == null || segment.liveRecords > 0) {
+                    continue;
+                }
+                carryTombstones(segment);
+                segments.remove(id);
+                deletable.add(segment);
+            }
+            // 快照和转写的墓碑刷盘之后才删除旧段
+            activeSegment.buffer.force();
+            for (Segment segment : deletable) {
+                segment.close();
+                Files.deleteIfExists(segment.path);
+                log.info("Compacted segment {} ({} records reclaimed)", segment.path.getFileName(), segment.totalRecords);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ========== 内部实现 ==========
+
+    /**
+     * 把待删除段中仍有效的墓碑转写到活跃段（需持有写锁）
+     *
+     * 墓碑有效：仍存在的更早段中有该会话的记录（包括已失效的记录，回放时会被重新加入索引）。
+     * 转写为 TRUNCATE 并保留原墓碑的偏移，只屏蔽墓碑之前的记录，不影响清空之后写入的新消息。
+     */
+    private void carryTombstones(Segment victim) {
+        int carried = 0;
+        for (Map.Entry<String, Long> tombstone : victim.tombstones.entrySet()) {
+            String sessionId = tombstone.getKey();
+            long bound = tombstone.getValue();
+            boolean shadowsOlderRecords = segments.headMap(segmentId(bound), true).values().stream()
+                .anyMatch(segment -> segment != victim && segment.sessionIds.contains(sessionId));
+            if (shadowsOlderRecords) {
+                append(TYPE_TRUNCATE, sessionId, System.currentTimeMillis(),
+                    ByteBuffer.allocate(Long.BYTES).putLong(bound).array());
+                carried++;
+            }
+        }
+        if (carried > 0) {
+            log.debug("Carried {} tombstones out of segment {}", carried, victim.path.getFileName());
+        }
+    }
+
+    private void rewriteSession(String sessionId, SessionIndex index) {
+        long now = System.currentTimeMillis();
+        SessionIndex rewritten = new SessionIndex();
+        rewritten.lastWriteMillis = index.lastWriteMillis;
+
+        append(TYPE_SNAPSHOT_BEGIN, sessionId, now, EMPTY);
+        for (int i = 0; i < index.size; i++) {
+            long offset = index.offsets[i];
+            // 保留原始时间戳，回放时 TTL 依旧按最后一次真实写入计算
+            long timestamp = segments.get(segmentId(offset)).buffer.getLong(position(offset) + 9);
+            rewritten.add(append(TYPE_SNAPSHOT_MESSAGE, sessionId, timestamp, readPayload(offset)));
+        }
+        append(TYPE_SNAPSHOT_COMMIT, sessionId, now, EMPTY);
+
+        releaseRecords(index);
+        for (int i = 0; i < rewritten.size; i++) {
+            segments.get(segmentId(rewritten.offsets[i])).liveRecords++;
+        }
+        sessions.put(sessionId, rewritten);
+    }
+
+    private void expireSessions(long now) {
+        List<String> expired = new ArrayList<>();
+        for (Map.Entry<String, SessionIndex> entry : sessions.entrySet()) {
+            if (isExpired(entry.getValue(), now)) {
+                expired.add(entry.getKey());
+            }
+        }
+        for (String sessionId : expired) {
+            dropSession(sessionId, now);
+        }
+        if (!expired.isEmpty()) {
+            log.info("Expired {} chat memory sessions", expired.size());
+        }
+    }
+
+    /**
+     * 移除会话并写入 CLEAR 墓碑，保证回放时不会复活旧消息（需持有写锁）
+     */
+    private void dropSession(String sessionId, long now) {
+        SessionIndex index = sessions.remove(sessionId);
+        if (index != null) {
+            append(TYPE_CLEAR, sessionId, now, EMPTY);
+            releaseRecords(index);
+        }
+    }
+
+    private void releaseRecords(SessionIndex index) {
+        for (int i = 0; i < index.size; i++) {
+            Segment segment = segments.get(segmentId(index.offsets[i]));
+            if (segment != null) {
+                segment.liveRecords--;
+            }
+        }
+    }
+
+    private SessionIndex liveIndex(String sessionId) {
+        SessionIndex index = sessions.get(sessionId);
+        if (index == null || isExpired(index, System.currentTimeMillis())) {
+            return null;
+        }
+        return index;
+    }
+
+    private boolean isExpired(SessionIndex index, long now) {
+        return now - index.lastWriteMillis > ttlMillis;
+    }
+
+    /**
+     * 追加一条记录并返回其偏移（需持有写锁）
+     *
+     * 长度字段最后写入：回放遇到长度为 0 的位置即视为段内数据结束
+     */
+    private long append(byte type, String sessionId, long timestamp, byte[] payload) {
+        byte[] sid = sessionId.getBytes(StandardCharsets.UTF_8);
+        if (sid.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("sessionId is too long: " + sid.length + " bytes");
+        }
+
+        int length = HEADER_SIZE + sid.length + payload.length;
+        Segment segment = segmentFor(length);
+        MappedByteBuffer buffer = segment.buffer;
+        int pos = segment.writePosition;
+
+        buffer.put(pos + 8, type);
+        buffer.putLong(pos + 9, timestamp);
+        buffer.putShort(pos + 17, (short) sid.length);
+        buffer.put(pos + HEADER_SIZE, sid);
+        buffer.put(pos + HEADER_SIZE + sid.length, payload);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(pos + CRC_START, length - CRC_START));
+        buffer.putInt(pos + 4, (int) crc.getValue());
+        buffer.putInt(pos, length);
+
+        segment.writePosition = pos + length;
+        long offset = offset(segment.id, pos);
+        segment.track(type, sessionId, offset, payload);
+        return offset;
+    }
+
+    /**
+     * 返回能容纳指定长度记录的段，必要时封存当前段并滚动
+     */
+    private Segment segmentFor(int length) {
+        if (activeSegment.writePosition + length <= activeSegment.capacity()) {
+            return activeSegment;
+        }
+        activeSegment.buffer.force();
+        activeSegment = createSegment(activeSegment.id + 1, Math.max(segmentSize, length));
+        return activeSegment;
+    }
+
+    private Segment createSegment(int id, int capacity) {
+        Path path = directory.resolve(String.format("%s%010d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try {
+            Segment segment = Segment.open(id, path, capacity);
+            segments.put(id, segment);
+            log.debug("Created chat memory segment {}", path.getFileName());
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create segment " + path, e);
+        }
+    }
+
+    /**
+     * 回放段文件，遇到未写完或 CRC 不匹配的记录时停止（崩溃时的残缺尾部）
+     */
+    private void replay(Segment segment, Map<String, SessionIndex> pendingSnapshots) {
+        MappedByteBuffer buffer = segment.buffer;
+        int capacity = segment.capacity();
+        int pos = 0;
+
+        while (pos + HEADER_SIZE <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length == 0) {
+                break;
+            }
+            if (length < HEADER_SIZE || pos + length > capacity || !crcMatches(buffer, pos, length)) {
+                log.warn("Truncating corrupt tail of {} at position {}", segment.path.getFileName(), pos);
+                // 清零残缺区域，避免之后追加的短记录与旧数据拼接
+                buffer.put(pos, new byte[capacity - pos]);
+                break;
+            }
+
+            byte type = buffer.get(pos + 8);
+            long timestamp = buffer.getLong(pos + 9);
+            byte[] sid = new byte[buffer.getShort(pos + 17)];
+            buffer.get(pos + HEADER_SIZE, sid);
+            String sessionId = new String(sid, StandardCharsets.UTF_8);
+            long offset = offset(segment.id, pos);
+
+            byte[] payload = EMPTY;
+            if (type == TYPE_TRUNCATE) {
+                payload = new byte[length - HEADER_SIZE - sid.length];
+                buffer.get(pos + HEADER_SIZE + sid.length, payload);
+            }
+            segment.track(type, sessionId, offset, payload);
+
+            switch (type) {
+                case TYPE_MESSAGE -> {
+                    SessionIndex index = sessions.computeIfAbsent(sessionId, k -> new SessionIndex());
+                    index.add(offset);
+                    index.lastWriteMillis = Math.max(index.lastWriteMillis, timestamp);
+                }
+                case TYPE_CLEAR -> sessions.remove(sessionId);
+                case TYPE_TRUNCATE -> {
+                    SessionIndex index = sessions.get(sessionId);
+                    if (index != null && index.removeBefore(ByteBuffer.wrap(payload).getLong()) == 0) {
+                        sessions.remove(sessionId);
+                    }
+                }
+                case TYPE_SNAPSHOT_BEGIN -> pendingSnapshots.put(sessionId, new SessionIndex());
+                case TYPE_SNAPSHOT_MESSAGE -> {
+                    SessionIndex snapshot = pendingSnapshots.get(sessionId);
+                    if (snapshot != null) {
+                        snapshot.add(offset);
+                        snapshot.lastWriteMillis = Math.max(snapshot.lastWriteMillis, timestamp);
+                    }
+                }
+                case TYPE_SNAPSHOT_COMMIT -> {
+                    SessionIndex snapshot = pendingSnapshots.remove(sessionId);
+                    if (snapshot != null) {
+                        sessions.put(sessionId, snapshot);
+                    }
+                }
+                default -> log.warn("Unknown record type {} in {} at position {}", type, segment.path.getFileName(), pos);
+            }
+
+            pos += length;
+        }
+
+        segment.writePosition = pos;
+    }
+
+    private boolean crcMatches(MappedByteBuffer buffer, int pos, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(pos + CRC_START, length - CRC_START));
+        return (int) crc.getValue() == buffer.getInt(pos + 4);
+    }
+
+    private byte[] readPayload(long offset) {
+        MappedByteBuffer buffer = segments.get(segmentId(offset)).buffer;
+        int pos = position(offset);
+        int payloadStart = pos + HEADER_SIZE + buffer.getShort(pos + 17);
+        byte[] payload = new byte[pos + buffer.getInt(pos) - payloadStart];
+        buffer.get(payloadStart, payload);
+        return payload;
+    }
+
+    /**
+     * 反序列化消息
+     */
+    private Message deserializeMessage(byte[] payload) {
+        try {
+            return objectMapper.readValue(payload, Message.class);
+        } catch (IOException e) {
+            log.error("Failed to deserialize message: {}", new String(payload, StandardCharsets.UTF_8), e);
+            // 与 Redis 实现保持一致：返回一个错误消息而不是抛出异常
+            return Message.system("Error: Failed to load message from history");
+        }
+    }
+
+    private static long offset(int segmentId, int position) {
+        return ((long) segmentId << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long offset) {
+        return (int) (offset >>> 32);
+    }
+
+    private static int position(long offset) {
+        return (int) offset;
+    }
+
+    private static int parseSegmentId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ========== 内部数据类 ==========
+
+    /**
+     * 单个会话的记录偏移索引（按写入顺序）
+     */
+    private static final class SessionIndex {
+        private long[] offsets = new long[16];
+        private int size;
+        private long lastWriteMillis;
+
+        void add(long offset) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            offsets[size++] = offset;
+        }
+
+        /**
+         * 移除偏移小于 bound 的记录（偏移按写入顺序递增）
+         *
+         * @return 剩余记录数
+         */
+        int removeBefore(long bound) {
+            int keepFrom = 0;
+            while (keepFrom < size && offsets[keepFrom] < bound) {
+                keepFrom++;
+            }
+            if (keepFrom > 0) {
+                System.arraycopy(offsets, keepFrom, offsets, 0, size - keepFrom);
+                size -= keepFrom;
+            }
+            return size;
+        }
+
+        boolean referencesAny(List<Integer> segmentIds) {
+            for (int i = 0; i < size; i++) {
+                if (segmentIds.contains(segmentId(offsets[i]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 段文件：整个文件映射为一个 MappedByteBuffer
+     */
+    private static final class Segment {
+        private final int id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int totalRecords;
+        private int liveRecords;
+        /** 段内有消息记录的会话（含已失效的记录，用于判断更晚段中的墓碑是否仍需保留） */
+        private final Set<String> sessionIds = new HashSet<>();
+        /** 段内的墓碑：会话 -> 屏蔽该偏移之前的记录 */
+        private final Map<String, Long> tombstones = new HashMap<>();
+
+        private Segment(int id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 打开（或创建）段文件，capacity 为 0 时按现有文件大小映射
+         */
+        static Segment open(int id, Path path, int capacity) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = capacity > 0 ? capacity : channel.size();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new Segment(id, path, channel, buffer);
+        }
+
+        int capacity() {
+            return buffer.capacity();
+        }
+
+        /**
+         * 记录计数、会话与墓碑（追加和回放时调用）
+         */
+        void track(byte type, String sessionId, long offset, byte[] payload) {
+            switch (type) {
+                case TYPE_MESSAGE, TYPE_SNAPSHOT_MESSAGE -> {
+                    totalRecords++;
+                    sessionIds.add(sessionId);
+                }
+                case TYPE_CLEAR -> tombstones.merge(sessionId, offset, Math::max);
+                case TYPE_TRUNCATE -> tombstones.merge(sessionId, ByteBuffer.wrap(payload).getLong(), Math::max);
+                default -> { }
+            }
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Failed to close segment {}", path, e);
+            }
+        }
+    }
+}
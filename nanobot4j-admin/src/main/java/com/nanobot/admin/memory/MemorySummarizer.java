@@ -1,26 +1,37 @@
 package com.nanobot.admin.memory;
 
 import com.nanobot.admin.service.LLMService;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.llm.LLMException;
 import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.TokenEstimator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 记忆摘要器 - 滑动窗口 + 异步压缩
  *
  * 核心机制：
  * 1. 滑动窗口：始终保留最近 10 条消息作为短期记忆
- * 2. 异步摘要：当消息超过 10 条时，在虚拟线程中生成前 N 条的摘要
- * 3. 摘要注入：将摘要作为 System Message 注入到上下文中
+ * 2. 分层摘要：滑出窗口的消息按固定分块（chunk-size 条）各自摘要一次，
+ *    每 fanout 个相邻分块摘要再合并为上一层摘要（只对摘要再摘要，不重读原始消息），
+ *    每次只需为最新的分块调用 LLM，摘要成本不随会话长度增长
+ * 3. 摘要注入：在 Token 预算内选择摘要粒度（越新的历史越细），作为 System Message 注入
+ * 4. 长期召回：滑出窗口的原始消息异步写入 RecallMemoryStore，供按问题检索
  *
  * 工作流程：
  * - 每次对话前调用 applyWindow() 获取窗口化的历史
- * - 如果消息数 > 10，返回：[摘要] + [最近10条]
+ * - 如果消息数 > 10，返回：[分层摘要] + [摘要未覆盖的最近消息（至少 10 条）]
  * - 如果消息数 <= 10，直接返回所有消息
  */
 @Slf4j
@@ -30,6 +41,7 @@ public class MemorySummarizer {
 
     private final ChatMemoryStore chatMemoryStore;
     private final SummaryStore summaryStore;
+    private final RecallMemoryStore recallMemoryStore;
     private final LLMService llmService;
 
     /**
@@ -37,10 +49,20 @@ public class MemorySummarizer {
      */
     private static final int WINDOW_SIZE = 10;
 
-    /**
-     * 触发摘要的阈值
-     */
-    private static final int SUMMARY_THRESHOLD = 10;
+    /** 每个 level 0 摘要覆盖的消息条数 */
+    @Value("${memory.summary.chunk-size:20}")
+    private int chunkSize;
+
+    /** 每多少个相邻摘要合并为上一层 */
+    @Value("${memory.summary.fanout:4}")
+    private int fanout;
+
+    /** 注入 Prompt 的摘要 Token 预算 */
+    @Value("${memory.summary.token-budget:1000}")
+    private int summaryTokenBudget;
+
+    /** 正在后台更新摘要树的会话（避免同一分块重复调用 LLM） */
+    private final Set<String> summarizing = ConcurrentHashMap.newKeySet();
 
     /**
      * 应用滑动窗口，返回用于构建 Prompt 的消息列表
@@ -49,6 +71,17 @@ public class MemorySummarizer {
      * @return 窗口化的消息列表（可能包含摘要）
      */
     public List<Message> applyWindow(String sessionId) {
+        return applyWindow(sessionId, summaryTokenBudget);
+    }
+
+    /**
+     * 应用滑动窗口，摘要部分按给定 Token 预算选择粒度
+     *
+     * @param sessionId 会话 ID
+     * @param tokenBudget 摘要部分的 Token 预算
+     * @return 窗口化的消息列表（可能包含摘要）
+     */
+    public List<Message> applyWindow(String sessionId, int tokenBudget) {
         long totalCount = chatMemoryStore.getMessageCount(sessionId);
 
         log.debug("Session {} has {} messages", sessionId, totalCount);
@@ -58,23 +91,64 @@ public class MemorySummarizer {
             return chatMemoryStore.getMessages(sessionId);
         }
 
-        // 情况2：消息数 > 窗口大小，需要应用滑动窗口
-        List<Message> recentMessages = chatMemoryStore.getRecentMessages(sessionId, WINDOW_SIZE);
+        // 情况2：已有分层摘要，原始消息从摘要覆盖的末尾开始，与摘要之间不留空隙
+        SummaryTree tree = new SummaryTree(summaryStore.getNodes(sessionId), chunkSize, fanout);
+        long coveredEnd = tree.coveredEnd();
+
+        if (coveredEnd > 0) {
+            List<Message> recentMessages = unsummarizedMessages(sessionId, coveredEnd, totalCount, tokenBudget);
+            List<SummaryNode> selected = tree.select(tokenBudget);
+
+            log.debug("Using {} summary nodes for session {}, {} raw messages after {}",
+                selected.size(), sessionId, recentMessages.size(), coveredEnd);
+            return selected.isEmpty() ? recentMessages : prependSummary(renderSummary(selected), recentMessages);
+        }
 
-        // 检查是否已有摘要
+        // 情况3：还没有分块摘要（消息不足一个分块，或首个分块的摘要尚未生成）：
+        // 未摘要的消息同样按 Token 预算保留，不只保留最近的窗口；有手动生成的整体摘要时放在最前
+        List<Message> recentMessages = unsummarizedMessages(sessionId, 0, totalCount, tokenBudget);
         String existingSummary = summaryStore.getSummary(sessionId);
 
         if (existingSummary != null) {
-            // 已有摘要，直接使用
             log.debug("Using existing summary for session {}", sessionId);
             return prependSummary(existingSummary, recentMessages);
         }
 
-        // 没有摘要，返回最近的消息（摘要会在后台异步生成）
-        log.debug("No summary found for session {}, returning recent messages only", sessionId);
+        log.debug("No summary found for session {}, {} raw messages", sessionId, recentMessages.size());
         return recentMessages;
     }
 
+    /**
+     * 摘要未覆盖的原始消息 [coveredEnd, totalCount)
+     *
+     * 最近 WINDOW_SIZE 条总是保留；摘要落后（LLM 调用失败、后台请求被限流）时，窗口之前尚未摘要的消息
+     * 从新到旧按 Token 预算保留。超出预算的最早部分暂不注入 Prompt：这些消息已滑出窗口并写入召回索引，
+     * 摘要补齐后重新回到摘要中。
+     */
+    private List<Message> unsummarizedMessages(String sessionId, long coveredEnd, long totalCount, int tokenBudget) {
+        long windowStart = Math.max(coveredEnd, totalCount - WINDOW_SIZE);
+        List<Message> messages = new ArrayList<>();
+        if (windowStart > coveredEnd) {
+            List<Message> backlog = chatMemoryStore.getMessages(sessionId, coveredEnd, windowStart);
+            int keepFrom = backlog.size();
+            int tokens = 0;
+            while (keepFrom > 0) {
+                tokens += TokenEstimator.estimate(List.of(backlog.get(keepFrom - 1)));
+                if (tokens > tokenBudget) {
+                    break;
+                }
+                keepFrom--;
+            }
+            if (keepFrom > 0) {
+                log.warn("Summaries of session {} lag {} messages behind, omitting the oldest {} from the prompt",
+                    sessionId, backlog.size(), keepFrom);
+            }
+            messages.addAll(backlog.subList(keepFrom, backlog.size()));
+        }
+        messages.addAll(chatMemoryStore.getMessages(sessionId, windowStart, totalCount));
+        return messages;
+    }
+
     /**
      * 异步触发摘要生成（如果需要）
      *
@@ -85,58 +159,103 @@ public class MemorySummarizer {
     public void summarizeIfNeeded(String sessionId) {
         long totalCount = chatMemoryStore.getMessageCount(sessionId);
 
-        // 只有当消息数刚好超过阈值且没有摘要时才触发
-        if (totalCount > SUMMARY_THRESHOLD && !summaryStore.hasSummary(sessionId)) {
-            log.info("Triggering async summarization for session {}", sessionId);
+        indexEvictedMessages(sessionId, totalCount);
 
-            // 使用 CompletableFuture 在虚拟线程中执行摘要
-            CompletableFuture.runAsync(() -> {
-                try {
-                    generateAndSaveSummary(sessionId);
-                } catch (Exception e) {
-                    log.error("Failed to generate summary for session {}", sessionId, e);
-                }
-            });
+        // 只为完整滑出窗口的分块生成摘要
+        long summarizableEnd = (totalCount - WINDOW_SIZE) / chunkSize * chunkSize;
+        if (summarizableEnd <= 0 || !summarizing.add(sessionId)) {
+            return;
         }
+
+        // 摘要的 Token 用量计入该会话
+        RunContext context = new RunContext(CancellationToken.NONE, Deadline.NONE, sessionId, null);
+        CompletableFuture.runAsync(() -> {
+            try (RunContext.Scope ignored = context.attach()) {
+                updateSummaryTree(sessionId, summarizableEnd);
+            } catch (Exception e) {
+                log.error("Failed to update summaries for session {}", sessionId, e);
+            } finally {
+                summarizing.remove(sessionId);
+            }
+        });
     }
 
     /**
-     * 生成并保存摘要（在虚拟线程中执行）
+     * 将新滑出窗口的消息异步写入召回索引
      */
-    private void generateAndSaveSummary(String sessionId) {
-        log.info("Starting summary generation for session {}", sessionId);
+    private void indexEvictedMessages(String sessionId, long totalCount) {
+        long evictedEnd = totalCount - WINDOW_SIZE;
+        long indexed = recallMemoryStore.getIndexedCount(sessionId);
 
-        // 获取所有历史消息
-        List<Message> allMessages = chatMemoryStore.getMessages(sessionId);
-
-        if (allMessages.isEmpty()) {
-            log.warn("No messages to summarize for session {}", sessionId);
+        if (evictedEnd <= indexed) {
             return;
         }
 
-        // 计算需要摘要的消息数量（保留最近 WINDOW_SIZE 条，其余的进行摘要）
-        int messagesToSummarize = Math.max(0, allMessages.size() - WINDOW_SIZE);
+        CompletableFuture.runAsync(() -> {
+            try {
+                List<Message> evicted = chatMemoryStore.getMessages(sessionId, indexed, evictedEnd);
+                recallMemoryStore.index(sessionId, indexed, evicted);
+            } catch (Exception e) {
+                log.error("Failed to index evicted messages for session {}", sessionId, e);
+            }
+        });
+    }
 
-        if (messagesToSummarize == 0) {
-            log.debug("Not enough messages to summarize for session {}", sessionId);
-            return;
+    /**
+     * 补齐缺失的分块摘要，再自底向上合并（在后台线程中执行）
+     *
+     * 正常情况下每次只有最新的一个分块需要调用 LLM；
+     * LLM 调用失败时停止本轮更新，下次 summarizeIfNeeded 时从缺失处继续。
+     */
+    private void updateSummaryTree(String sessionId, long summarizableEnd) {
+        SummaryTree tree = new SummaryTree(summaryStore.getNodes(sessionId), chunkSize, fanout);
+
+        for (long start = 0; start < summarizableEnd; start += chunkSize) {
+            if (tree.get(0, start) != null) {
+                continue;
+            }
+
+            List<Message> chunk = chatMemoryStore.getMessages(sessionId, start, start + chunkSize);
+            String summary;
+            try {
+                summary = llmService.chatForSummary(
+                    "你是一个对话摘要助手。请用简洁的语言总结以下对话的关键信息，保留重要的上下文和决策。",
+                    buildSummaryPrompt(chunk)
+                );
+            } catch (LLMException e) {
+                log.warn("Chunk summary failed for session {} at message {}: {}", sessionId, start, e.getMessage());
+                return;
+            }
+
+            SummaryNode node = new SummaryNode(0, start, start + chunkSize, summary);
+            summaryStore.saveNode(sessionId, node);
+            tree.add(node);
+            log.info("Chunk summary saved for session {}: messages [{}, {}), {} chars",
+                sessionId, node.start(), node.end(), summary.length());
         }
 
-        List<Message> oldMessages = allMessages.subList(0, messagesToSummarize);
-
-        // 构建摘要 Prompt
-        String summaryPrompt = buildSummaryPrompt(oldMessages);
-
-        // 调用 LLM 生成摘要
-        String summary = llmService.chat(
-            "你是一个对话摘要助手。请用简洁的语言总结以下对话的关键信息，保留重要的上下文和决策。",
-            summaryPrompt
-        );
-
-        // 保存摘要
-        summaryStore.saveSummary(sessionId, summary);
-
-        log.info("Summary generated and saved for session {}: {} chars", sessionId, summary.length());
+        List<SummaryNode> group;
+        while ((group = tree.nextMerge()) != null) {
+            SummaryNode first = group.get(0);
+            SummaryNode last = group.get(group.size() - 1);
+
+            String summary;
+            try {
+                summary = llmService.chatForSummary(
+                    "你是一个对话摘要助手。请把以下按时间顺序排列的多段对话摘要合并为一段更精炼的摘要，保留关键事实和决策。",
+                    buildMergePrompt(group)
+                );
+            } catch (LLMException e) {
+                log.warn("Summary merge failed for session {} at level {}: {}", sessionId, first.level() + 1, e.getMessage());
+                return;
+            }
+
+            SummaryNode parent = new SummaryNode(first.level() + 1, first.start(), last.end(), summary);
+            summaryStore.saveNode(sessionId, parent);
+            tree.add(parent);
+            log.info("Merged summary saved for session {}: level {}, messages [{}, {})",
+                sessionId, parent.level(), parent.start(), parent.end());
+        }
     }
 
     /**
@@ -155,6 +274,39 @@ public class MemorySummarizer {
         return prompt.toString();
     }
 
+    /**
+     * 构建合并摘要 Prompt
+     */
+    private String buildMergePrompt(List<SummaryNode> nodes) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("请合并以下分段摘要：\n\n");
+
+        for (SummaryNode node : nodes) {
+            prompt.append(rangeLabel(node)).append(" ").append(node.content()).append("\n");
+        }
+
+        prompt.append("\n请用 3-5 句话概括上述各段的核心内容和关键决策。");
+        return prompt.toString();
+    }
+
+    /**
+     * 将选中的摘要节点渲染为一段文本（按时间顺序）
+     */
+    private String renderSummary(List<SummaryNode> nodes) {
+        StringBuilder summary = new StringBuilder();
+        for (SummaryNode node : nodes) {
+            if (summary.length() > 0) {
+                summary.append("\n");
+            }
+            summary.append(rangeLabel(node)).append(" ").append(node.content());
+        }
+        return summary.toString();
+    }
+
+    private String rangeLabel(SummaryNode node) {
+        return "[第 " + (node.start() + 1) + "-" + node.end() + " 条消息]";
+    }
+
     /**
      * 获取角色标签
      */
@@ -208,7 +360,7 @@ public class MemorySummarizer {
 
         String summaryPrompt = buildSummaryPrompt(allMessages);
 
-        String summary = llmService.chat(
+        String summary = llmService.chatForSummary(
             "你是一个对话摘要助手。请用简洁的语言总结以下对话的关键信息。",
             summaryPrompt
         );
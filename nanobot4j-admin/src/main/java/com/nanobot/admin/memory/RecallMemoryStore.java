@@ -0,0 +1,58 @@
+package com.nanobot.admin.memory;
+
+import com.nanobot.core.llm.Message;
+
+import java.util.List;
+
+/**
+ * 长期召回记忆接口
+ *
+ * 职责：
+ * 1. 为滑出滑动窗口的历史消息建立向量索引（摘要会丢失细节，召回层保留原文）
+ * 2. 按当前问题检索最相关的历史片段，注入到 System Prompt
+ */
+public interface RecallMemoryStore {
+
+    /**
+     * 索引一段被逐出窗口的消息
+     *
+     * @param sessionId 会话 ID
+     * @param fromIndex 第一条消息在会话历史中的下标（用于去重，已索引过的下标会被跳过）
+     * @param messages 消息列表（按时间升序）
+     */
+    void index(String sessionId, long fromIndex, List<Message> messages);
+
+    /**
+     * 已索引的消息数（即下一条待索引消息的下标）
+     *
+     * @param sessionId 会话 ID
+     * @return 已索引数量
+     */
+    long getIndexedCount(String sessionId);
+
+    /**
+     * 检索与查询最相关的历史片段
+     *
+     * @param sessionId 会话 ID
+     * @param query 查询文本（通常是当前用户消息）
+     * @param topK 最大返回条数
+     * @return 片段列表（按相关度降序）
+     */
+    List<RecallSnippet> recall(String sessionId, String query, int topK);
+
+    /**
+     * 清空会话的召回索引
+     *
+     * @param sessionId 会话 ID
+     */
+    void clear(String sessionId);
+
+    /**
+     * 召回片段
+     *
+     * @param role 原消息角色
+     * @param content 原消息内容
+     * @param score 余弦相似度
+     */
+    record RecallSnippet(String role, String content, float score) {}
+}
@@ -5,12 +5,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nanobot.core.llm.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -24,6 +30,7 @@ import java.util.stream.Collectors;
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "memory", name = "store", havingValue = "redis", matchIfMissing = true)
 @RequiredArgsConstructor
 public class RedisChatMemoryStore implements ChatMemoryStore {
 
@@ -59,6 +66,56 @@ public class RedisChatMemoryStore implements ChatMemoryStore {
         }
     }
 
+    /**
+     * 批量追加：所有会话的 RPUSH + EXPIRE 在一个 MULTI/EXEC 事务中通过 pipeline 一次提交，
+     * 要么全部写入，要么全部失败（失败时调用方可整体重试而不会产生重复消息）
+     */
+    @Override
+    public void addMessages(Map<String, List<Message>> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<String>> serialized = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Message>> entry : batch.entrySet()) {
+            List<String> jsonList = new ArrayList<>(entry.getValue().size());
+            for (Message message : entry.getValue()) {
+                try {
+                    jsonList.add(objectMapper.writeValueAsString(message));
+                } catch (JsonProcessingException e) {
+                    log.error("Failed to serialize message", e);
+                    throw new RuntimeException("Failed to add message to memory", e);
+                }
+            }
+            if (!jsonList.isEmpty()) {
+                serialized.put(buildKey(entry.getKey()), jsonList);
+            }
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.multi();
+                serialized.forEach((key, jsonList) -> {
+                    ops.opsForList().rightPushAll(key, jsonList);
+                    ops.expire(key, TTL);
+                });
+                ops.exec();
+                return null;
+            }
+        });
+
+        log.debug("Added {} messages to {} sessions in one pipeline",
+            serialized.values().stream().mapToInt(List::size).sum(), serialized.size());
+    }
+
+    @Override
+    public boolean isBatchAtomic() {
+        return true;
+    }
+
     @Override
     public List<Message> getMessages(String sessionId) {
         String key = buildKey(sessionId);
@@ -94,6 +151,24 @@ public class RedisChatMemoryStore implements ChatMemoryStore {
             .collect(Collectors.toList());
     }
 
+    @Override
+    public List<Message> getMessages(String sessionId, long start, long end) {
+        if (end <= start) {
+            return new ArrayList<>();
+        }
+
+        // LRANGE 的结束下标是闭区间
+        List<String> jsonList = redisTemplate.opsForList().range(buildKey(sessionId), Math.max(0, start), end - 1);
+
+        if (jsonList == null || jsonList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return jsonList.stream()
+            .map(this::deserializeMessage)
+            .collect(Collectors.toList());
+    }
+
     @Override
     public long getMessageCount(String sessionId) {
         String key = buildKey(sessionId);
@@ -1,11 +1,16 @@
 package com.nanobot.admin.memory;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Redis 实现的摘要存储
@@ -14,21 +19,33 @@ import java.time.Duration;
  * - Key: "chat:summary:{sessionId}"
  * - Type: String
  * - TTL: 24 小时
+ *
+ * 分层摘要节点：
+ * - Key: "chat:summary:nodes:{sessionId}"
+ * - Type: Hash（field 为 "{level}:{start}"，value 为 JSON 序列化的 SummaryNode）
+ * - TTL: 24 小时
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(prefix = "memory", name = "store", havingValue = "redis", matchIfMissing = true)
 @RequiredArgsConstructor
 public class RedisSummaryStore implements SummaryStore {
 
     private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
 
     private static final String KEY_PREFIX = "chat:summary:";
+    private static final String NODES_KEY_PREFIX = "chat:summary:nodes:";
     private static final Duration TTL = Duration.ofHours(24);
 
     private String buildKey(String sessionId) {
         return KEY_PREFIX + sessionId;
     }
 
+    private String buildNodesKey(String sessionId) {
+        return NODES_KEY_PREFIX + sessionId;
+    }
+
     @Override
     public void saveSummary(String sessionId, String summary) {
         String key = buildKey(sessionId);
@@ -51,8 +68,35 @@ public class RedisSummaryStore implements SummaryStore {
 
     @Override
     public void deleteSummary(String sessionId) {
-        String key = buildKey(sessionId);
-        redisTemplate.delete(key);
+        redisTemplate.delete(List.of(buildKey(sessionId), buildNodesKey(sessionId)));
         log.info("Deleted summary for session {}", sessionId);
     }
+
+    @Override
+    public void saveNode(String sessionId, SummaryNode node) {
+        try {
+            String key = buildNodesKey(sessionId);
+            redisTemplate.opsForHash().put(key, node.key(), objectMapper.writeValueAsString(node));
+            redisTemplate.expire(key, TTL);
+            log.debug("Saved summary node {} [{}, {}) for session {}", node.key(), node.start(), node.end(), sessionId);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize summary node", e);
+            throw new RuntimeException("Failed to save summary node", e);
+        }
+    }
+
+    @Override
+    public List<SummaryNode> getNodes(String sessionId) {
+        List<Object> values = redisTemplate.opsForHash().values(buildNodesKey(sessionId));
+
+        List<SummaryNode> nodes = new ArrayList<>(values.size());
+        for (Object value : values) {
+            try {
+                nodes.add(objectMapper.readValue((String) value, SummaryNode.class));
+            } catch (JsonProcessingException e) {
+                log.error("Failed to deserialize summary node: {}", value, e);
+            }
+        }
+        return nodes;
+    }
 }
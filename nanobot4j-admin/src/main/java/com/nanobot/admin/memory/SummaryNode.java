@@ -0,0 +1,32 @@
+package com.nanobot.admin.memory;
+
+/**
+ * 分层摘要节点
+ *
+ * 节点覆盖会话历史中的一段固定消息区间 [start, end)：
+ * - level 0：对一个分块（chunk-size 条原始消息）的摘要
+ * - level N：对 fanout 个相邻 level N-1 节点摘要的再摘要
+ *
+ * 区间按分块大小对齐，同一会话中 (level, start) 唯一确定一个节点。
+ *
+ * @param level 层级（0 为最细粒度）
+ * @param start 起始消息下标（包含）
+ * @param end 结束消息下标（不包含）
+ * @param content 摘要内容
+ */
+public record SummaryNode(int level, long start, long end, String content) {
+
+    /**
+     * 节点在存储中的唯一键
+     */
+    public String key() {
+        return level + ":" + start;
+    }
+
+    /**
+     * 覆盖的消息条数
+     */
+    public long span() {
+        return end - start;
+    }
+}
@@ -1,11 +1,14 @@
 package com.nanobot.admin.memory;
 
+import java.util.List;
+
 /**
  * 摘要存储接口
  *
  * 职责：
  * 1. 存储会话的历史摘要
  * 2. 支持摘要的更新和检索
+ * 3. 存储分层摘要节点（分块摘要 + 合并后的高层摘要），见 SummaryNode
  */
 public interface SummaryStore {
 
@@ -34,9 +37,25 @@ public interface SummaryStore {
     boolean hasSummary(String sessionId);
 
     /**
-     * 删除会话摘要
+     * 删除会话摘要（包括所有分层摘要节点）
      *
      * @param sessionId 会话 ID
      */
     void deleteSummary(String sessionId);
+
+    /**
+     * 保存分层摘要节点，相同 (level, start) 的节点会被覆盖
+     *
+     * @param sessionId 会话 ID
+     * @param node 摘要节点
+     */
+    void saveNode(String sessionId, SummaryNode node);
+
+    /**
+     * 获取会话的全部分层摘要节点
+     *
+     * @param sessionId 会话 ID
+     * @return 节点列表（无序），不存在时返回空列表
+     */
+    List<SummaryNode> getNodes(String sessionId);
 }
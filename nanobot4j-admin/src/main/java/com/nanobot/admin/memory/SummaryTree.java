@@ -0,0 +1,167 @@
+package com.nanobot.admin.memory;
+
+import com.nanobot.core.llm.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层摘要树 - 在 SummaryStore 中的节点之上提供对齐、合并与粒度选择
+ *
+ * 结构（chunkSize=10, fanout=4 时）：
+ * - level 0：[0,10) [10,20) [20,30) [30,40) [40,50) ...
+ * - level 1：[0,40) ...（4 个相邻 level 0 节点齐全后合并生成）
+ * - level 2：[0,160) ...
+ *
+ * 合并后子节点仍保留，Prompt 构建时可在 Token 预算内把较新的高层节点展开为子节点，
+ * 越新的历史保留越多细节。
+ *
+ * 非线程安全，每次使用时从 SummaryStore 的节点列表新建。
+ */
+final class SummaryTree {
+
+    /** 每个摘要条目在 Prompt 中的额外开销（区间标题等） */
+    private static final int NODE_OVERHEAD_TOKENS = 8;
+
+    private final int chunkSize;
+    private final int fanout;
+    private final Map<String, SummaryNode> nodes = new HashMap<>();
+    private int maxLevel = -1;
+
+    SummaryTree(List<SummaryNode> nodes, int chunkSize, int fanout) {
+        this.chunkSize = chunkSize;
+        this.fanout = fanout;
+        nodes.forEach(this::add);
+    }
+
+    void add(SummaryNode node) {
+        nodes.put(node.key(), node);
+        maxLevel = Math.max(maxLevel, node.level());
+    }
+
+    SummaryNode get(int level, long start) {
+        return nodes.get(level + ":" + start);
+    }
+
+    /**
+     * level 层节点覆盖的消息条数
+     */
+    long span(int level) {
+        long span = chunkSize;
+        for (int i = 0; i < level; i++) {
+            span *= fanout;
+        }
+        return span;
+    }
+
+    /**
+     * 从第 0 条消息开始、每个位置取最高层节点得到的最粗粒度覆盖（连续区间）
+     */
+    List<SummaryNode> coarsestCover() {
+        List<SummaryNode> cover = new ArrayList<>();
+        long position = 0;
+        while (true) {
+            SummaryNode next = null;
+            for (int level = maxLevel; level >= 0 && next == null; level--) {
+                next = get(level, position);
+            }
+            if (next == null) {
+                return cover;
+            }
+            cover.add(next);
+            position = next.end();
+        }
+    }
+
+    /**
+     * 摘要连续覆盖到的消息下标（不包含）
+     */
+    long coveredEnd() {
+        List<SummaryNode> cover = coarsestCover();
+        return cover.isEmpty() ? 0 : cover.get(cover.size() - 1).end();
+    }
+
+    /**
+     * 节点的全部子节点；不齐全或为 level 0 时返回 null
+     */
+    List<SummaryNode> children(SummaryNode node) {
+        if (node.level() == 0) {
+            return null;
+        }
+        long childSpan = span(node.level() - 1);
+        List<SummaryNode> children = new ArrayList<>(fanout);
+        for (int i = 0; i < fanout; i++) {
+            SummaryNode child = get(node.level() - 1, node.start() + i * childSpan);
+            if (child == null) {
+                return null;
+            }
+            children.add(child);
+        }
+        return children;
+    }
+
+    /**
+     * 找到一组可合并但尚未合并的相邻节点（层级最低者优先）
+     *
+     * @return fanout 个按区间升序排列的节点，没有可合并的组时返回 null
+     */
+    List<SummaryNode> nextMerge() {
+        for (int level = 0; level <= maxLevel; level++) {
+            long parentSpan = span(level + 1);
+            for (SummaryNode node : nodes.values()) {
+                if (node.level() != level || node.start() % parentSpan != 0 || get(level + 1, node.start()) != null) {
+                    continue;
+                }
+                List<SummaryNode> group = children(new SummaryNode(level + 1, node.start(), node.start() + parentSpan, null));
+                if (group != null) {
+                    return group;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 在 Token 预算内选择摘要粒度
+     *
+     * 1. 从最粗粒度覆盖开始；超出预算时丢弃最旧的节点
+     * 2. 从最新的节点开始，只要展开后仍在预算内，就把高层节点替换为其子节点
+     *
+     * @param tokenBudget 摘要部分的 Token 预算
+     * @return 按区间升序排列的节点
+     */
+    List<SummaryNode> select(int tokenBudget) {
+        List<SummaryNode> selected = new ArrayList<>(coarsestCover());
+        int total = selected.stream().mapToInt(SummaryTree::cost).sum();
+
+        while (total > tokenBudget && !selected.isEmpty()) {
+            total -= cost(selected.remove(0));
+        }
+
+        boolean refined = true;
+        while (refined) {
+            refined = false;
+            for (int i = selected.size() - 1; i >= 0; i--) {
+                List<SummaryNode> children = children(selected.get(i));
+                if (children == null) {
+                    continue;
+                }
+                int delta = children.stream().mapToInt(SummaryTree::cost).sum() - cost(selected.get(i));
+                if (total + delta <= tokenBudget) {
+                    selected.remove(i);
+                    selected.addAll(i, children);
+                    total += delta;
+                    refined = true;
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static int cost(SummaryNode node) {
+        return TokenEstimator.estimate(node.content()) + NODE_OVERHEAD_TOKENS;
+    }
+}
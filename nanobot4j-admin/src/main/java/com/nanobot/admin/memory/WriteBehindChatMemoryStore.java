@@ -0,0 +1,415 @@
+package com.nanobot.admin.memory;
+
+import com.nanobot.core.llm.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 写后（write-behind）聊天记忆存储 - 包装实际的 ChatMemoryStore
+ *
+ * 核心机制：
+ * 1. addMessage 只把消息放入会话的本地有序队列，立即返回（Redis 抖动不再阻塞请求线程）
+ * 2. 后台线程按固定间隔把所有会话的待写消息合并为一批，通过 delegate.addMessages 一次提交
+ *    （delegate 的批量写入不是原子的时逐条写入，每写成功一条即出队，重试时不会重复写入）
+ * 3. 读取时合并「已持久化的消息 + 本地待写消息」，保证下一轮对话能读到自己刚写的内容
+ *
+ * 一致性：
+ * - 同一会话的消息按写入顺序提交（只有一个刷写线程）
+ * - 刷写失败时消息保留在队列中，下个周期整体重试
+ * - 待写消息总数超过 max-pending 时，写入方同步刷写直到低于上限（背压）；
+ *   delegate 不可用、无法降到上限以下时拒绝写入（抛出异常，消息不入队）
+ * - 只保证本节点的读己之写；其他节点在刷写完成前看不到这些消息
+ *
+ * 启用方式：memory.write-behind.enabled=true
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(prefix = "memory.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindChatMemoryStore implements ChatMemoryStore {
+
+    private final ChatMemoryStore delegate;
+    private final int batchSize;
+    private final int maxPending;
+
+    private final Map<String, SessionBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    /** 串行化刷写：后台线程、背压刷写与关闭时的刷写互斥 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private int consecutiveFailures;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName("memory-write-behind");
+        return thread;
+    });
+
+    public WriteBehindChatMemoryStore(
+        ChatMemoryStore delegate,
+        @Value("${memory.write-behind.flush-interval-ms:50}") long flushIntervalMs,
+        @Value("${memory.write-behind.batch-size:500}") int batchSize,
+        @Value("${memory.write-behind.max-pending:10000}") int maxPending
+    ) {
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Write-behind chat memory enabled over {} (interval={}ms, batch={})",
+            delegate.getClass().getSimpleName(), flushIntervalMs, batchSize);
+    }
+
+    // ========== 写入 ==========
+
+    @Override
+    public void addMessage(String sessionId, Message message) {
+        applyBackpressure(1);
+        enqueue(sessionId, List.of(message));
+    }
+
+    @Override
+    public void addMessages(Map<String, List<Message>> batch) {
+        applyBackpressure(batch.values().stream().mapToInt(List::size).sum());
+        batch.forEach(this::enqueue);
+    }
+
+    private void enqueue(String sessionId, List<Message> messages) {
+        while (true) {
+            SessionBuffer buffer = buffers.computeIfAbsent(sessionId, k -> new SessionBuffer());
+            synchronized (buffer) {
+                // 缓冲区可能刚被刷写线程回收，此时重新获取
+                if (buffer.retired) {
+                    continue;
+                }
+                buffer.pending.addAll(messages);
+            }
+            pendingCount.addAndGet(messages.size());
+            return;
+        }
+    }
+
+    /**
+     * 待写消息加上本次写入会超过 max-pending 时，在写入方同步刷写直到低于上限
+     *
+     * @param incoming 本次写入的消息数
+     * @throws RuntimeException delegate 写入失败，积压无法降到上限以下（本次消息不入队）
+     */
+    private void applyBackpressure(int incoming) {
+        if (pendingCount.get() + incoming <= maxPending) {
+            return;
+        }
+        log.warn("Write-behind backlog reached {} messages, flushing synchronously", pendingCount.get());
+        while (pendingCount.get() > 0 && pendingCount.get() + incoming > maxPending) {
+            int flushed;
+            try {
+                flushed = flush();
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Failed to add message to memory: write-behind backlog is full ("
+                    + pendingCount.get() + " pending) and the store is unavailable", e);
+            }
+            if (flushed == 0) {
+                // 待写的会话正被读取（刷写跳过了它们），稍后重试
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    // ========== 读取（合并本地待写消息） ==========
+
+    @Override
+    public List<Message> getMessages(String sessionId) {
+        SessionBuffer buffer = activeBuffer(sessionId);
+        if (buffer == null) {
+            return delegate.getMessages(sessionId);
+        }
+
+        buffer.lock.lock();
+        try {
+            List<Message> messages = new ArrayList<>(delegate.getMessages(sessionId));
+            messages.addAll(buffer.pending);
+            return messages;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getRecentMessages(String sessionId, int limit) {
+        SessionBuffer buffer = activeBuffer(sessionId);
+        if (buffer == null) {
+            return delegate.getRecentMessages(sessionId, limit);
+        }
+
+        buffer.lock.lock();
+        try {
+            List<Message> pending = new ArrayList<>(buffer.pending);
+            if (pending.size() >= limit) {
+                return new ArrayList<>(pending.subList(pending.size() - limit, pending.size()));
+            }
+            List<Message> messages = new ArrayList<>(delegate.getRecentMessages(sessionId, limit - pending.size()));
+            messages.addAll(pending);
+            return messages;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public List<Message> getMessages(String sessionId, long start, long end) {
+        SessionBuffer buffer = activeBuffer(sessionId);
+        if (buffer == null) {
+            return delegate.getMessages(sessionId, start, end);
+        }
+
+        buffer.lock.lock();
+        try {
+            long persisted = delegate.getMessageCount(sessionId);
+            List<Message> messages = new ArrayList<>();
+            if (start < persisted) {
+                messages.addAll(delegate.getMessages(sessionId, start, Math.min(end, persisted)));
+            }
+
+            // 区间落在本地待写部分的下标从 persisted 开始
+            List<Message> pending = new ArrayList<>(buffer.pending);
+            int from = (int) Math.max(0, start - persisted);
+            int to = (int) Math.min(pending.size(), end - persisted);
+            if (from < to) {
+                messages.addAll(pending.subList(from, to));
+            }
+            return messages;
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public long getMessageCount(String sessionId) {
+        SessionBuffer buffer = activeBuffer(sessionId);
+        if (buffer == null) {
+            return delegate.getMessageCount(sessionId);
+        }
+
+        buffer.lock.lock();
+        try {
+            return delegate.getMessageCount(sessionId) + buffer.pending.size();
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public void clearMessages(String sessionId) {
+        SessionBuffer buffer = buffers.get(sessionId);
+        if (buffer == null) {
+            delegate.clearMessages(sessionId);
+            return;
+        }
+
+        buffer.lock.lock();
+        try {
+            int dropped = 0;
+            while (buffer.pending.poll() != null) {
+                dropped++;
+            }
+            pendingCount.addAndGet(-dropped);
+            delegate.clearMessages(sessionId);
+        } finally {
+            buffer.lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(String sessionId) {
+        return activeBuffer(sessionId) != null || delegate.exists(sessionId);
+    }
+
+    /**
+     * 返回有待写消息的会话缓冲区；没有待写消息时直接读 delegate 即可
+     */
+    private SessionBuffer activeBuffer(String sessionId) {
+        SessionBuffer buffer = buffers.get(sessionId);
+        return buffer != null && !buffer.pending.isEmpty() ? buffer : null;
+    }
+
+    // ========== 刷写 ==========
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            // 失败已在 flush 中记录，消息留在队列中下个周期重试
+        }
+    }
+
+    /**
+     * 将各会话的待写消息（最多 batchSize 条）合并为一批提交
+     *
+     * 提交期间持有涉及会话的锁：读取方要么看到「未提交 + 本地队列」，要么看到「已提交 + 已出队」，
+     * 不会出现消息重复或缺失；写入方只向队列尾部追加，不受影响。
+     *
+     * @return 写入的消息数
+     * @throws RuntimeException delegate 写入失败（已写入的消息已出队，其余留在队列中）
+     */
+    int flush() {
+        flushLock.lock();
+        try {
+            Map<String, List<Message>> batch = new LinkedHashMap<>();
+            List<SessionBuffer> locked = new ArrayList<>();
+            int budget = batchSize;
+
+            try {
+                for (Map.Entry<String, SessionBuffer> entry : buffers.entrySet()) {
+                    if (budget <= 0) {
+                        break;
+                    }
+                    SessionBuffer buffer = entry.getValue();
+                    // 正在被读取的会话留到下个周期，避免刷写线程等待读请求
+                    if (buffer.pending.isEmpty() || !buffer.lock.tryLock()) {
+                        continue;
+                    }
+                    locked.add(buffer);
+
+                    List<Message> messages = new ArrayList<>();
+                    Iterator<Message> it = buffer.pending.iterator();
+                    while (it.hasNext() && budget > 0) {
+                        messages.add(it.next());
+                        budget--;
+                    }
+                    batch.put(entry.getKey(), messages);
+                }
+
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+
+                int flushed = delegate.isBatchAtomic() ? commitBatch(batch) : commitEach(batch);
+
+                if (consecutiveFailures > 0) {
+                    log.info("Write-behind flush recovered after {} failed attempts", consecutiveFailures);
+                    consecutiveFailures = 0;
+                }
+                log.debug("Flushed {} messages for {} sessions", flushed, batch.size());
+                return flushed;
+
+            } catch (RuntimeException e) {
+                // 未写入的消息仍在队列中，下个周期重试；连续失败时降低日志频率
+                if (consecutiveFailures++ % 100 == 0) {
+                    log.error("Write-behind flush failed ({} pending messages, attempt {})",
+                        pendingCount.get(), consecutiveFailures, e);
+                }
+                throw e;
+            } finally {
+                for (SessionBuffer buffer : locked) {
+                    buffer.lock.unlock();
+                }
+                retireEmptyBuffers();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 原子批量写入，成功后整批出队
+     */
+    private int commitBatch(Map<String, List<Message>> batch) {
+        delegate.addMessages(batch);
+
+        int flushed = 0;
+        for (Map.Entry<String, List<Message>> entry : batch.entrySet()) {
+            Queue<Message> pending = buffers.get(entry.getKey()).pending;
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                pending.poll();
+            }
+            flushed += entry.getValue().size();
+        }
+        pendingCount.addAndGet(-flushed);
+        return flushed;
+    }
+
+    /**
+     * 逐条写入，每条成功后立即出队：中途失败时已写入的消息不会在重试时重复写入
+     */
+    private int commitEach(Map<String, List<Message>> batch) {
+        int flushed = 0;
+        for (Map.Entry<String, List<Message>> entry : batch.entrySet()) {
+            Queue<Message> pending = buffers.get(entry.getKey()).pending;
+            for (Message message : entry.getValue()) {
+                delegate.addMessage(entry.getKey(), message);
+                pending.poll();
+                pendingCount.decrementAndGet();
+                flushed++;
+            }
+        }
+        return flushed;
+    }
+
+    /**
+     * 回收已清空的会话缓冲区，避免 buffers 无限增长
+     */
+    private void retireEmptyBuffers() {
+        buffers.forEach((sessionId, buffer) -> {
+            synchronized (buffer) {
+                if (buffer.pending.isEmpty() && !buffer.lock.isLocked()) {
+                    buffer.retired = true;
+                    buffers.remove(sessionId, buffer);
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 尽量把剩余消息写完（每轮最多 batchSize 条）
+        for (int attempt = 0; attempt < 10 && pendingCount.get() > 0; attempt++) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // 已记录，继续尝试
+            }
+        }
+        if (pendingCount.get() > 0) {
+            log.error("Write-behind shutdown with {} unflushed messages", pendingCount.get());
+        }
+    }
+
+    // ========== 内部数据类 ==========
+
+    /**
+     * 单个会话的待写队列
+     */
+    private static final class SessionBuffer {
+        private final Queue<Message> pending = new ConcurrentLinkedQueue<>();
+        /** 刷写提交与合并读取互斥 */
+        private final ReentrantLock lock = new ReentrantLock();
+        /** 已从 buffers 中移除，写入方需重新获取（由 synchronized(this) 保护） */
+        private boolean retired;
+    }
+}
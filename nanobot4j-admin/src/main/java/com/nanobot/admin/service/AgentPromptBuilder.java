@@ -0,0 +1,224 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.admin.memory.RecallMemoryStore;
+import com.nanobot.admin.tool.ObservationReaderTool;
+import com.nanobot.admin.tool.ToolCreatorTool;
+import com.nanobot.core.agent.ReActPromptBuilder;
+import com.nanobot.core.agent.ReActRun;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolDefinition;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 单轮对话的 System Prompt 构建器（每轮新建，不跨线程共享）
+ *
+ * 工具较多时按问题检索相关工具，本轮调用过/创建的工具始终保留；
+ * 工具执行后目录变化（create_tool 注册了新工具）或保留的工具不在当前工具集中时重新检索。
+ */
+class AgentPromptBuilder implements ReActPromptBuilder {
+
+    /**
+     * 静态前缀：角色定义 + 输出协议（所有会话、所有步骤完全相同）
+     */
+    static final String PROMPT_PREFIX = """
+        # 角色
+        你是 Nanobot，一个拥有自我编程能力的工业级 ReAct Agent。
+
+        # 核心原则
+        1. 你必须逐步推理，每次只执行一个动作（TOOL_CALL 或 FINAL_ANSWER）。
+        2. **严禁回答"我做不到"**。若现有工具无法完成任务，你必须调用 `create_tool`，
+           用 Groovy 编写新工具并立即使用。
+        3. 遇到工具报错时，必须先用 <thinking> 反思原因，再换策略，禁止无脑重试。
+
+        # 输出协议（严格遵守）
+
+        ## 每一步必须先输出思考
+        在任何 TOOL_CALL 或 FINAL_ANSWER 之前，必须先输出：
+        ```
+        <thinking>
+        [你的推理过程：分析当前状态、选择工具的理由、上一步错误的反思]
+        </thinking>
+        ```
+
+        ## 调用工具
+        ```
+        TOOL_CALL: {"name": "工具名", "args": {参数字典}}
+        ```
+
+        ## 给出最终答案
+        ```
+        FINAL_ANSWER: 你的完整答案
+        ```
+
+        ## 禁止事项
+        - 禁止在一次输出中同时出现多个 TOOL_CALL
+        - 禁止省略 <thinking> 标签
+        - 禁止输出"我无法..."、"我做不到..."等放弃语句
+
+        """;
+
+    /**
+     * 原生 function calling 下的静态前缀：工具说明随工具定义发送，不需要文本调用协议
+     */
+    static final String NATIVE_PROMPT_PREFIX = """
+        # 角色
+        你是 Nanobot，一个拥有自我编程能力的工业级 ReAct Agent。
+
+        # 核心原则
+        1. 你必须逐步推理，需要外部能力时通过函数调用使用工具。
+        2. **严禁回答"我做不到"**。若现有工具无法完成任务，你必须调用 `create_tool`，
+           用 Groovy 编写新工具并立即使用。
+        3. 遇到工具报错时，必须先用 <thinking> 反思原因，再换策略，禁止无脑重试。
+
+        # 输出要求
+        - 调用工具或回答之前，先在 <thinking></thinking> 中简要写出推理过程
+        - 任务完成后不再调用工具，直接输出完整的最终答案
+        - 禁止输出"我无法..."、"我做不到..."等放弃语句
+
+        """;
+
+    private final ToolCatalog toolCatalog;
+    private final ToolSelector toolSelector;
+    private final ObservationProcessor observationProcessor;
+    private final String userMessage;
+    private final List<Message> memoryHistory;
+    private final List<RecallMemoryStore.RecallSnippet> recalled;
+    private final boolean nativeTools;
+    private final Set<String> pinnedTools = new HashSet<>();
+
+    private ToolCatalog.Snapshot catalog;
+    private ToolCatalog.ToolSet availableTools;
+
+    AgentPromptBuilder(ToolCatalog toolCatalog, ToolSelector toolSelector, ObservationProcessor observationProcessor,
+                       String userMessage, List<Message> memoryHistory,
+                       List<RecallMemoryStore.RecallSnippet> recalled, boolean nativeTools) {
+        this.toolCatalog = toolCatalog;
+        this.toolSelector = toolSelector;
+        this.observationProcessor = observationProcessor;
+        this.userMessage = userMessage;
+        this.memoryHistory = memoryHistory;
+        this.recalled = recalled;
+        this.nativeTools = nativeTools;
+        this.catalog = toolCatalog.current();
+        this.availableTools = toolSelector.select(catalog, userMessage, pinnedTools);
+    }
+
+    /**
+     * 当前目录快照
+     */
+    ToolCatalog.Snapshot getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * 当前注入 Prompt 的工具集
+     */
+    ToolCatalog.ToolSet getAvailableTools() {
+        return availableTools;
+    }
+
+    /**
+     * 原生 function calling 时返回当前工具集的定义，否则返回 null（工具写入 System Prompt）
+     */
+    @Override
+    public List<ToolDefinition> toolDefinitions() {
+        return nativeTools ? availableTools.definitions() : null;
+    }
+
+    @Override
+    public void onObservation(ToolCall toolCall, String observation) {
+        pinnedTools.add(toolCall.getName());
+        if (ToolCreatorTool.TOOL_NAME.equals(toolCall.getName())
+            && toolCall.getArguments().get("tool_name") != null) {
+            pinnedTools.add(toolCall.getArguments().get("tool_name").toString().trim());
+        }
+        // 只有 ObservationProcessor 确实卸载了结果时才需要读取器
+        if (observationProcessor.offloaded(observation)) {
+            pinnedTools.add(ObservationReaderTool.TOOL_NAME);
+        }
+
+        // 目录未变化且保留的工具都在当前工具集中时复用
+        ToolCatalog.Snapshot latest = toolCatalog.current();
+        if (latest != catalog || !availableTools.toolNames().containsAll(pinnedTools)) {
+            catalog = latest;
+            availableTools = toolSelector.select(catalog, userMessage, pinnedTools);
+        }
+    }
+
+    /**
+     * 构建完整的 System Prompt
+     *
+     * 按变化频率从低到高排列，保证前缀稳定以命中服务端上下文缓存（如 DeepSeek 硬盘缓存）：
+     * 1. 角色定义 + 输出协议（常量）
+     * 2. 工具列表（ToolCatalog 预渲染，按名称排序；ToolSelector 检索后为相关子集）
+     * 3. 记忆历史（滑动窗口 + 摘要）+ 长期召回片段（每轮变化）
+     * 4. 本轮执行记录（每步追加，只在末尾增长）
+     *
+     * 原生 function calling 时工具随请求的工具定义发送、执行记录以 assistant / tool 消息传递，
+     * System Prompt 只包含 1 和 3，整轮执行中保持不变。
+     */
+    @Override
+    public String buildSystemPrompt(ReActRun run) {
+        if (nativeTools) {
+            StringBuilder sb = new StringBuilder(NATIVE_PROMPT_PREFIX.length() + 4096);
+            sb.append(NATIVE_PROMPT_PREFIX);
+            appendMemory(sb);
+            return sb.toString();
+        }
+
+        String toolFragment = availableTools.promptFragment();
+        StringBuilder sb = new StringBuilder(PROMPT_PREFIX.length() + toolFragment.length() + 4096);
+        sb.append(PROMPT_PREFIX);
+
+        // ── 1. 可用工具列表（预渲染片段）──────────────────────────────────
+        sb.append(toolFragment);
+        appendMemory(sb);
+
+        // ── 3. 本轮执行记录（用户消息已在 userTurn 传入）───────────────────
+        List<String> history = run.getHistory();
+        if (!history.isEmpty()) {
+            sb.append("# 本轮执行记录\n");
+            for (String entry : history) {
+                sb.append(entry).append("\n");
+            }
+            sb.append("\n");
+        }
+
+        sb.append("请根据以上信息，输出你的 <thinking> 和下一步动作。");
+
+        return sb.toString();
+    }
+
+    /**
+     * 历史记忆（滑动窗口 + 摘要）和长期召回片段
+     */
+    private void appendMemory(StringBuilder sb) {
+        // ── 2. 历史记忆（多轮上下文）─────────────────────────────────────
+        if (!memoryHistory.isEmpty()) {
+            sb.append("# 历史记忆（最近几轮对话摘要）\n");
+            for (Message msg : memoryHistory) {
+                String label = switch (msg.getRole()) {
+                    case "system"    -> "【摘要】";
+                    case "user"      -> "【用户】";
+                    case "assistant" -> "【助手】";
+                    default          -> "【" + msg.getRole() + "】";
+                };
+                sb.append(label).append(" ").append(msg.getContent()).append("\n");
+            }
+            sb.append("\n");
+        }
+
+        if (!recalled.isEmpty()) {
+            sb.append("# 相关历史片段（从更早的对话中检索，仅供参考）\n");
+            for (RecallMemoryStore.RecallSnippet snippet : recalled) {
+                String label = "user".equals(snippet.role()) ? "【用户】" : "【助手】";
+                sb.append(label).append(" ").append(snippet.content()).append("\n");
+            }
+            sb.append("\n");
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.nanobot.admin.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.admin.memory.ChatMemoryStore;
+import com.nanobot.admin.memory.MemorySummarizer;
+import com.nanobot.admin.memory.RecallMemoryStore;
+import com.nanobot.admin.tool.DynamicToolRegistry;
+import com.nanobot.admin.tool.ObservationReaderTool;
+import com.nanobot.admin.tool.ToolCreatorTool;
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.AgentEventSink;
+import com.nanobot.core.agent.AgentStreamEvent;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.agent.ReActEngine;
+import com.nanobot.core.agent.ReActResult;
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agent 执行器 - 为 core 的 ReActEngine 装配记忆、工具目录和工具分发，供流式与同步接口共用
+ *
+ * 执行阶段：
+ * 1. 加载记忆：滑动窗口 + 摘要 + 长期召回（传入 sessionId 时）
+ * 2. 选择工具：ToolCatalog 快照 + ToolSelector 检索
+ * 3. 执行 ReAct 循环：事件经 AgentEventSink 输出（SSE / 聚合 JSON / 测试记录）
+ * 4. 保存问答到会话记忆，异步触发摘要
+ *
+ * 每轮执行有统一的时间预算（agent.deadline.run-timeout-ms），LLM 请求、远程工具、Groovy 脚本都使用剩余预算；
+ * 会话累计的 Token 用量达到 agent.budget.session-max-tokens 时，引擎在下一步开始前提前结束；
+ * 各阶段之间检查当前 RunContext（客户端断开时抛出 AgentCancelledException，超时抛出 DeadlineExceededException）。
+ * DONE 事件和连接收尾由调用方负责。
+ */
+@Slf4j
+@Service
+public class AgentRunner {
+
+    /** 最大执行步数（熔断阈值） */
+    private static final int MAX_STEPS = 15;
+
+    private final RemoteToolExecutor remoteToolExecutor;
+    private final ChatMemoryStore chatMemoryStore;
+    private final MemorySummarizer memorySummarizer;
+    private final RecallMemoryStore recallMemoryStore;
+    private final DynamicToolRegistry dynamicToolRegistry;
+    private final ToolCreatorTool toolCreatorTool;
+    private final ObservationReaderTool observationReaderTool;
+    private final ObservationProcessor observationProcessor;
+    private final ToolCatalog toolCatalog;
+    private final ToolSelector toolSelector;
+    private final LLMUsageTracker usageTracker;
+    private final ReActEngine engine;
+
+    /** 每轮注入的召回片段数 */
+    @Value("${memory.recall.top-k:3}")
+    private int recallTopK;
+
+    /** 是否使用 provider 原生 function calling（关闭时使用 TOOL_CALL 文本协议） */
+    @Value("${agent.native-tools.enabled:true}")
+    private boolean nativeTools;
+
+    /** 每轮执行的总时间预算（毫秒） */
+    @Value("${agent.deadline.run-timeout-ms:180000}")
+    private long runTimeoutMs;
+
+    /** 每个会话累计的 Token 上限（prompt + completion，0 表示不限制） */
+    @Value("${agent.budget.session-max-tokens:0}")
+    private long sessionMaxTokens;
+
+    public AgentRunner(
+        RemoteToolExecutor remoteToolExecutor,
+        LLMService llmService,
+        ChatMemoryStore chatMemoryStore,
+        MemorySummarizer memorySummarizer,
+        RecallMemoryStore recallMemoryStore,
+        DynamicToolRegistry dynamicToolRegistry,
+        ToolCreatorTool toolCreatorTool,
+        ObservationReaderTool observationReaderTool,
+        ObservationProcessor observationProcessor,
+        ToolCatalog toolCatalog,
+        ToolSelector toolSelector,
+        LLMUsageTracker usageTracker,
+        ObjectMapper objectMapper
+    ) {
+        this.remoteToolExecutor = remoteToolExecutor;
+        this.chatMemoryStore = chatMemoryStore;
+        this.memorySummarizer = memorySummarizer;
+        this.recallMemoryStore = recallMemoryStore;
+        this.dynamicToolRegistry = dynamicToolRegistry;
+        this.toolCreatorTool = toolCreatorTool;
+        this.observationReaderTool = observationReaderTool;
+        this.observationProcessor = observationProcessor;
+        this.toolCatalog = toolCatalog;
+        this.toolSelector = toolSelector;
+        this.usageTracker = usageTracker;
+        // 压缩超大结果（JSON 裁剪 / 卸载 / 首尾摘录），避免后续每一步重复发送
+        this.engine = new ReActEngine(llmService, MAX_STEPS, observationProcessor::process, objectMapper);
+    }
+
+    /**
+     * 为一轮执行创建上下文（时限从现在开始计算），调用方绑定到执行线程后再调用 run
+     *
+     * @param sessionId 会话 ID（用于统计 Token 用量和会话预算，为 null 时不限制）
+     * @param cancellation 取消令牌
+     * @return 执行上下文
+     */
+    public RunContext newContext(String sessionId, CancellationToken cancellation) {
+        return new RunContext(cancellation, Deadline.after(Duration.ofMillis(runTimeoutMs)),
+            sessionId, usageTracker.budget(sessionId, sessionMaxTokens));
+    }
+
+    /**
+     * 执行一轮对话
+     *
+     * @param sessionId   会话 ID（为 null 时不读写会话记忆）
+     * @param userMessage 用户消息
+     * @param sink        事件接收器
+     * @return 执行结果
+     */
+    public ReActResult run(String sessionId, String userMessage, AgentEventSink sink) {
+        log.info("[ReAct] session={}, message={}", sessionId, userMessage);
+        boolean stateful = sessionId != null;
+        RunContext context = RunContext.current();
+
+        // ── Phase 1: 加载记忆 ───────────────────────────────────────────
+        List<Message> memoryHistory = List.of();
+        List<RecallMemoryStore.RecallSnippet> recalled = List.of();
+        if (stateful) {
+            memoryHistory = memorySummarizer.applyWindow(sessionId);
+            sink.emit(AgentStreamEvent.thinking("📚 已加载 " + memoryHistory.size() + " 条历史记忆"));
+
+            recalled = recallMemoryStore.recall(sessionId, userMessage, recallTopK);
+            if (!recalled.isEmpty()) {
+                sink.emit(AgentStreamEvent.thinking("🔎 召回 " + recalled.size() + " 条相关历史片段"));
+            }
+        }
+
+        context.checkpoint();
+
+        // ── Phase 2: 选择可用工具（远程 + 内建 + 动态）──────────────────
+        AgentPromptBuilder promptBuilder =
+            new AgentPromptBuilder(toolCatalog, toolSelector, observationProcessor, userMessage, memoryHistory, recalled,
+                nativeTools);
+        ToolCatalog.ToolSet availableTools = promptBuilder.getAvailableTools();
+        int catalogSize = promptBuilder.getCatalog().getTools().size();
+        sink.emit(AgentStreamEvent.thinking(
+            "🔧 可用工具：" + availableTools.toolNames()
+                + (availableTools.tools().size() < catalogSize ? "（从 " + catalogSize + " 个工具中检索）" : "")));
+
+        // ── Phase 3: 保存用户消息 ─────────────────────────────────────
+        context.checkpoint();
+        if (stateful) {
+            chatMemoryStore.addMessage(sessionId, Message.user(userMessage));
+        }
+
+        // ── Phase 4: ReAct 主循环（含熔断器）─────────────────────────
+        sink.emit(AgentStreamEvent.thinking("🤔 开始分析任务..."));
+        ReActResult result = engine.run(userMessage, promptBuilder, this::dispatchToolCall, sink);
+
+        // ── Phase 5: 保存 AI 回复，异步触发记忆摘要 ─────────────────────
+        if (stateful && result.completed()) {
+            chatMemoryStore.addMessage(sessionId, Message.assistant(result.finalAnswer()));
+            memorySummarizer.summarizeIfNeeded(sessionId);
+        }
+        return result;
+    }
+
+    // ========== 工具分发（内建 → 动态 → 远程）==========
+
+    /**
+     * 工具调用分发器
+     * 优先级：内建工具（ToolCreatorTool / ObservationReaderTool）> DynamicToolRegistry > RemoteToolExecutor
+     */
+    private ToolResult dispatchToolCall(ToolCall toolCall) {
+        String result = dispatch(toolCall.getName(), toolCall.getArguments());
+        // 各执行器以 "Error: ..." 文本表示失败
+        return result != null && result.startsWith("Error:")
+            ? ToolResult.failure(result.substring("Error:".length()).trim())
+            : ToolResult.success(result);
+    }
+
+    private String dispatch(String name, Map<String, Object> args) {
+        try {
+            // 1. 内建工具
+            if (ToolCreatorTool.TOOL_NAME.equals(name)) {
+                log.info("[ReAct] dispatching to ToolCreatorTool");
+                return toolCreatorTool.execute(args);
+            }
+            if (ObservationReaderTool.TOOL_NAME.equals(name)) {
+                return observationReaderTool.execute(args);
+            }
+
+            // 2. 动态 Groovy 工具
+            if (dynamicToolRegistry.hasTool(name)) {
+                log.info("[ReAct] dispatching to DynamicGroovyTool: {}", name);
+                return dynamicToolRegistry.executeTool(name, args);
+            }
+
+            // 3. 远程工具（SSE 实例）
+            log.info("[ReAct] dispatching to RemoteToolExecutor: {}", name);
+            return remoteToolExecutor.executeRemoteTool(name, args);
+
+        } catch (AgentCancelledException | DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("[ReAct] tool execution error: tool={}", name, e);
+            return "Error: " + e.getMessage();
+        }
+    }
+}
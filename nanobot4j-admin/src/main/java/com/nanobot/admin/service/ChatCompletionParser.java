@@ -0,0 +1,224 @@
+package com.nanobot.admin.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.llm.LLMResponse;
+import com.nanobot.core.llm.ToolCall;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAI 兼容 chat/completions 响应的流式解析器
+ *
+ * 直接在响应流上按 Token 读取，只提取 choices[0].message（content、tool_calls）和 usage，
+ * 其余字段跳过；不把响应体读成 String，也不构建 JsonNode 树。线程安全。
+ */
+@Slf4j
+final class ChatCompletionParser {
+
+    private static final TypeReference<Map<String, Object>> ARGUMENTS_TYPE = new TypeReference<>() {};
+
+    private final JsonFactory jsonFactory;
+    private final ObjectMapper objectMapper;
+
+    ChatCompletionParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * 解析响应
+     *
+     * @param body 响应体（由调用方关闭）
+     * @return content（没有时为空字符串）、工具调用和 Token 使用情况
+     * @throws IOException 响应不是合法 JSON，或没有 choices[0].message
+     */
+    LLMResponse parse(InputStream body) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Chat completion response is not a JSON object");
+            }
+
+            Choice choice = null;
+            LLMResponse.TokenUsage usage = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(field) && value == JsonToken.START_ARRAY) {
+                    choice = parseChoices(parser);
+                } else if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                    usage = parseUsage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (choice == null) {
+                throw new IOException("Chat completion response has no choices[0].message");
+            }
+            return new LLMResponse(choice.content != null ? choice.content : "", choice.toolCalls, true, usage);
+        }
+    }
+
+    // ========== choices ==========
+
+    /**
+     * 只解析第一个 choice 的 message，其余 choice 跳过
+     */
+    private Choice parseChoices(JsonParser parser) throws IOException {
+        Choice first = null;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first != null || parser.currentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("message".equals(field) && value == JsonToken.START_OBJECT) {
+                    first = parseMessage(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return first;
+    }
+
+    private Choice parseMessage(JsonParser parser) throws IOException {
+        Choice choice = new Choice();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                choice.content = parser.getText();
+            } else if ("tool_calls".equals(field) && value == JsonToken.START_ARRAY) {
+                choice.toolCalls = parseToolCalls(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return choice;
+    }
+
+    private List<ToolCall> parseToolCalls(JsonParser parser) throws IOException {
+        List<ToolCall> toolCalls = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            ToolCall toolCall = new ToolCall();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("id".equals(field) && value == JsonToken.VALUE_STRING) {
+                    toolCall.setId(parser.getText());
+                } else if ("function".equals(field) && value == JsonToken.START_OBJECT) {
+                    parseFunction(parser, toolCall);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            toolCalls.add(toolCall);
+        }
+        return toolCalls;
+    }
+
+    /**
+     * function.arguments 是 JSON 字符串，解析为参数 Map（无法解析时为空 Map）
+     */
+    private void parseFunction(JsonParser parser, ToolCall toolCall) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("name".equals(field) && value == JsonToken.VALUE_STRING) {
+                toolCall.setName(parser.getText());
+            } else if ("arguments".equals(field) && value == JsonToken.VALUE_STRING) {
+                toolCall.setArguments(parseArguments(toolCall.getName(), parser.getText()));
+            } else if ("arguments".equals(field) && value == JsonToken.START_OBJECT) {
+                toolCall.setArguments(objectMapper.readValue(parser, ARGUMENTS_TYPE));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (toolCall.getArguments() == null) {
+            toolCall.setArguments(Map.of());
+        }
+    }
+
+    private Map<String, Object> parseArguments(String toolName, String json) {
+        if (json.isBlank()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(json, ARGUMENTS_TYPE);
+        } catch (IOException e) {
+            log.warn("Invalid arguments for tool call {}: {}", toolName, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    // ========== usage ==========
+
+    /**
+     * 缓存命中数：DeepSeek 为 prompt_cache_hit_tokens，OpenAI 风格为 prompt_tokens_details.cached_tokens，
+     * Kimi 为 cached_tokens（按此优先级取值）
+     */
+    private LLMResponse.TokenUsage parseUsage(JsonParser parser) throws IOException {
+        int prompt = 0;
+        int completion = 0;
+        int total = 0;
+        Integer cacheHit = null;
+        Integer detailsCached = null;
+        Integer cached = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && "prompt_tokens_details".equals(field)) {
+                detailsCached = parseDetailsCachedTokens(parser);
+                continue;
+            }
+            if (value != JsonToken.VALUE_NUMBER_INT) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "prompt_tokens" -> prompt = parser.getIntValue();
+                case "completion_tokens" -> completion = parser.getIntValue();
+                case "total_tokens" -> total = parser.getIntValue();
+                case "prompt_cache_hit_tokens" -> cacheHit = parser.getIntValue();
+                case "cached_tokens" -> cached = parser.getIntValue();
+                default -> { }
+            }
+        }
+
+        int cachedPromptTokens = cacheHit != null ? cacheHit
+            : detailsCached != null ? detailsCached
+            : cached != null ? cached : 0;
+        return new LLMResponse.TokenUsage(prompt, completion, total, cachedPromptTokens);
+    }
+
+    private Integer parseDetailsCachedTokens(JsonParser parser) throws IOException {
+        Integer cached = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            if (parser.nextToken() == JsonToken.VALUE_NUMBER_INT && "cached_tokens".equals(field)) {
+                cached = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return cached;
+    }
+
+    private static final class Choice {
+        String content;
+        List<ToolCall> toolCalls;
+    }
+}
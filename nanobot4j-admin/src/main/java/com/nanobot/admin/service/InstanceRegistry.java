@@ -9,6 +9,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 实例注册表 - 管理所有注册的服务实例
@@ -19,6 +20,11 @@ public class InstanceRegistry {
 
     private final Map<String, ServiceInstance> instances = new ConcurrentHashMap<>();
 
+    /**
+     * 版本号：实例注册或上下线时递增，供 ToolCatalog 判断缓存是否失效
+     */
+    private final AtomicLong version = new AtomicLong();
+
     /**
      * 注册实例
      */
@@ -27,6 +33,7 @@ public class InstanceRegistry {
         instance.setLastHeartbeat(System.currentTimeMillis());
         instance.setStatus("ONLINE");
         instances.put(instance.getInstanceId(), instance);
+        version.incrementAndGet();
         log.info("Instance registered: {} at {}", instance.getInstanceId(), instance.getAddress());
     }
 
@@ -37,10 +44,20 @@ public class InstanceRegistry {
         ServiceInstance instance = instances.get(instanceId);
         if (instance != null) {
             instance.setLastHeartbeat(System.currentTimeMillis());
-            instance.setStatus("ONLINE");
+            if (!"ONLINE".equals(instance.getStatus())) {
+                instance.setStatus("ONLINE");
+                version.incrementAndGet();
+            }
         }
     }
 
+    /**
+     * 获取当前版本号
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     /**
      * 获取所有实例
      */
@@ -69,6 +86,7 @@ public class InstanceRegistry {
             if (now - instance.getLastHeartbeat() > timeout) {
                 if ("ONLINE".equals(instance.getStatus())) {
                     instance.setStatus("OFFLINE");
+                    version.incrementAndGet();
                     log.warn("Instance marked as OFFLINE: {}", instance.getInstanceId());
                 }
             }
@@ -0,0 +1,364 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.RunContext;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Handshake;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LLM provider 的 HTTP 传输层 - 长连接复用、预热和连接级指标
+ *
+ * 核心机制：
+ * 1. 独立的 OkHttpClient：优先 HTTP/2（ALPN 协商，不支持时回退 HTTP/1.1），
+ *    请求在专用线程池上执行，每个 provider 的并发上限为 max-requests-per-host
+ * 2. 每个 provider 的请求地址和 Authorization 头在启动时解析一次
+ * 3. HTTP/2 连接按 h2-ping-interval 发送 PING 帧，保持连接活跃并及早发现断开的连接
+ * 4. 预热：启动后及每隔 keep-warm.interval-ms，对期间没有请求的 provider 发送 GET /models，
+ *    使下一次真实请求复用已完成 TLS 握手的连接
+ * 5. 成功响应直接交给调用方的 BodyReader 在响应流上解析，不先读成完整的 String
+ *
+ * 连接指标（tag: host）：
+ * - nanobot.llm.http.connections：每次请求取得的连接（tag: reused=true/false, protocol）
+ * - nanobot.llm.http.connect：新建连接耗时（TCP + TLS）
+ * - nanobot.llm.http.handshake：TLS 握手耗时
+ */
+@Slf4j
+@Component
+public class LLMHttpTransport {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    /** 预热请求超时 */
+    private static final Duration WARM_UP_TIMEOUT = Duration.ofSeconds(10);
+
+    private final OkHttpClient httpClient;
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Endpoint> endpoints = new HashMap<>();
+    private final boolean keepWarm;
+    private final long keepWarmIntervalMs;
+
+    /** 每个 provider 最近一次请求的时间（预热时跳过近期有请求的 provider） */
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+
+    public LLMHttpTransport(
+        LLMProviderRouter router,
+        MeterRegistry meterRegistry,
+        @Value("${llm.http.max-requests-per-host:64}") int maxRequestsPerHost,
+        @Value("${llm.http.max-idle-connections:8}") int maxIdleConnections,
+        @Value("${llm.http.keep-alive:5m}") Duration keepAlive,
+        @Value("${llm.http.h2-ping-interval:30s}") Duration h2PingInterval,
+        @Value("${llm.http.keep-warm.enabled:true}") boolean keepWarm,
+        @Value("${llm.http.keep-warm.interval-ms:60000}") long keepWarmIntervalMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.keepWarm = keepWarm;
+        this.keepWarmIntervalMs = keepWarmIntervalMs;
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "llm-http-" + threads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        Dispatcher dispatcher = new Dispatcher(executor);
+        dispatcher.setMaxRequests(maxRequestsPerHost * Math.max(1, router.providers().size()));
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        this.httpClient = new OkHttpClient.Builder()
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .dispatcher(dispatcher)
+            .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+            .pingInterval(h2PingInterval)
+            .connectTimeout(Duration.ofSeconds(30))
+            // 整体超时由每次调用的 call timeout 控制（模型配置的 timeout，受剩余预算约束）
+            .readTimeout(Duration.ZERO)
+            .eventListenerFactory(call -> new ConnectionMetrics())
+            .build();
+
+        for (LLMProvider provider : router.providers()) {
+            HttpUrl base = HttpUrl.parse(provider.baseUrl());
+            if (base == null) {
+                log.warn("LLM provider {} has an invalid base-url: '{}'", provider.name(), provider.baseUrl());
+                continue;
+            }
+            endpoints.put(provider.name(), new Endpoint(
+                base.newBuilder().addPathSegments("chat/completions").build(),
+                base.newBuilder().addPathSegment("models").build(),
+                "Bearer " + provider.apiKey(),
+                provider.isConfigured()
+            ));
+        }
+    }
+
+    /**
+     * POST {baseUrl}/chat/completions；当前 RunContext 被取消时中止请求并抛出 AgentCancelledException
+     *
+     * @param provider provider
+     * @param jsonBody 请求体（JSON）
+     * @param timeout 单次请求超时（受本轮执行剩余预算约束）
+     * @param reader HTTP 200 时在响应流上解析响应体（在传输线程上执行）
+     * @return reader 的解析结果
+     * @throws HttpStatusException 非 200 响应
+     */
+    public <T> T postChatCompletion(LLMProvider provider, byte[] jsonBody, Duration timeout, BodyReader<T> reader)
+        throws IOException {
+        Endpoint endpoint = endpoint(provider);
+        CancellationToken cancellation = RunContext.current().getCancellationToken();
+        Deadline deadline = RunContext.current().getDeadline();
+        cancellation.throwIfCancelled();
+        deadline.throwIfExpired();
+
+        Request request = new Request.Builder()
+            .url(endpoint.chatCompletions())
+            .header("Authorization", endpoint.authorization())
+            .post(RequestBody.create(jsonBody, JSON))
+            .build();
+        Call call = httpClient.newCall(request);
+        call.timeout().timeout(Math.max(1, deadline.cap(timeout).toMillis()), TimeUnit.MILLISECONDS);
+        lastUsed.put(provider.name(), System.currentTimeMillis());
+
+        // 在专用线程池上执行并解析响应体，调用线程只等待结果
+        CompletableFuture<T> future = new CompletableFuture<>();
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call c, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call c, Response response) {
+                try (ResponseBody body = response.body()) {
+                    if (response.code() != 200) {
+                        future.completeExceptionally(new HttpStatusException(response.code(),
+                            body != null ? body.string() : "", response.header("Retry-After")));
+                    } else if (body == null) {
+                        future.completeExceptionally(new IOException("Empty response body"));
+                    } else {
+                        future.complete(reader.read(body.byteStream()));
+                    }
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        try (CancellationToken.Registration ignored = cancellation.onCancel(call::cancel)) {
+            return future.get();
+        } catch (InterruptedException e) {
+            call.cancel();
+            Thread.currentThread().interrupt();
+            throw new AgentCancelledException("interrupted");
+        } catch (ExecutionException e) {
+            cancellation.throwIfCancelled();
+            if (e.getCause() instanceof InterruptedIOException) {
+                deadline.throwIfExpired();
+            }
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private Endpoint endpoint(LLMProvider provider) throws IOException {
+        Endpoint endpoint = endpoints.get(provider.name());
+        if (endpoint == null) {
+            throw new IOException("LLM provider " + provider.name() + " has no valid base-url");
+        }
+        return endpoint;
+    }
+
+    // ========== 连接预热 ==========
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (keepWarm) {
+            warmUp(0);
+        }
+    }
+
+    /**
+     * 对一段时间内没有请求的 provider 发送 GET /models，保持已握手的连接
+     */
+    @Scheduled(fixedDelayString = "${llm.http.keep-warm.interval-ms:60000}",
+        initialDelayString = "${llm.http.keep-warm.interval-ms:60000}")
+    public void keepWarm() {
+        if (keepWarm) {
+            warmUp(keepWarmIntervalMs);
+        }
+    }
+
+    private void warmUp(long idleMs) {
+        long now = System.currentTimeMillis();
+        endpoints.forEach((name, endpoint) -> {
+            if (!endpoint.configured() || now - lastUsed.getOrDefault(name, 0L) < idleMs) {
+                return;
+            }
+            lastUsed.put(name, now);
+            Request request = new Request.Builder()
+                .url(endpoint.models())
+                .header("Authorization", endpoint.authorization())
+                .get()
+                .build();
+            Call warmUpCall = httpClient.newCall(request);
+            warmUpCall.timeout().timeout(WARM_UP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+            warmUpCall.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    log.debug("LLM provider {} warm-up failed: {}", name, e.getMessage());
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    log.debug("LLM provider {} warm-up: HTTP {} over {}", name, response.code(), response.protocol());
+                }
+            });
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * 响应体解析器（HTTP 200 时调用，流由传输层关闭）
+     */
+    @FunctionalInterface
+    public interface BodyReader<T> {
+
+        T read(InputStream body) throws IOException;
+    }
+
+    /**
+     * provider 返回非 200 状态码
+     */
+    public static class HttpStatusException extends IOException {
+
+        private final int status;
+        private final String body;
+        private final String retryAfter;
+
+        public HttpStatusException(int status, String body, String retryAfter) {
+            super("HTTP " + status);
+            this.status = status;
+            this.body = body;
+            this.retryAfter = retryAfter;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /** 错误响应体 */
+        public String getBody() {
+            return body;
+        }
+
+        /** Retry-After 头（没有时为 null） */
+        public String getRetryAfter() {
+            return retryAfter;
+        }
+    }
+
+    /**
+     * 预先解析的 provider 地址
+     */
+    private record Endpoint(HttpUrl chatCompletions, HttpUrl models, String authorization, boolean configured) {}
+
+    // ========== 连接指标 ==========
+
+    /**
+     * 每次请求一个实例：记录连接是否新建、建连和 TLS 握手耗时
+     */
+    private final class ConnectionMetrics extends okhttp3.EventListener {
+
+        private long connectStart;
+        private long secureConnectStart;
+        private boolean newConnection;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+            newConnection = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            secureConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            timer("nanobot.llm.http.handshake", call).record(System.nanoTime() - secureConnectStart, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            timer("nanobot.llm.http.connect", call).record(System.nanoTime() - connectStart, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            meterRegistry.counter("nanobot.llm.http.connections",
+                "host", call.request().url().host(),
+                "reused", String.valueOf(!newConnection),
+                "protocol", connection.protocol().toString()).increment();
+            if (newConnection) {
+                log.debug("New {} connection to {}", connection.protocol(), call.request().url().host());
+            }
+        }
+
+        private Timer timer(String name, Call call) {
+            return Timer.builder(name).tag("host", call.request().url().host()).register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.llm.LLMResponse;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * 模型配置（llm.profiles.{name}）- 一类调用使用的端点、模型、生成参数和单价
+ *
+ * 端点：设置了 base-url 时使用独立端点（provider 名称即 profile 名称，api-key 未设置时沿用 provider 的），
+ * 否则使用 provider 指定的端点（deepseek / kimi / llm.openai-compatible.name，未设置时为主 provider）。
+ * 未设置的 model 使用端点配置的默认模型。
+ */
+@Data
+public class LLMModelProfile {
+
+    /** 上下文窗口快用尽时，生成 Token 上限不低于此值 */
+    private static final int MIN_COMPLETION_TOKENS = 256;
+
+    /**
+     * profile 名称（由 LLMModelProfiles 按配置的 key 填充）
+     */
+    private String name;
+
+    /**
+     * 使用的 provider（未设置时为 llm.provider 指定的主 provider）
+     */
+    private String provider;
+
+    /**
+     * 独立端点的 API 根地址（可选）
+     */
+    private String baseUrl;
+
+    /**
+     * 独立端点的 API Key（可选，未设置时沿用 provider 的）
+     */
+    private String apiKey;
+
+    /**
+     * 模型（未设置时使用端点的默认模型）
+     */
+    private String model;
+
+    /**
+     * 请求未指定时使用的温度
+     */
+    private double temperature = 0.7;
+
+    /**
+     * 请求未指定时的生成 Token 上限
+     */
+    private int maxTokens = 2000;
+
+    /**
+     * 模型上下文窗口（Token 数，0 表示不检查）；Prompt + 生成上限超出时缩小生成上限
+     */
+    private int contextTokens = 0;
+
+    /**
+     * 单次请求超时（受本轮执行剩余预算约束）
+     */
+    private Duration timeout = Duration.ofSeconds(60);
+
+    /**
+     * 每百万 Prompt Token 的价格（未命中缓存部分）
+     */
+    private double inputPrice = 0;
+
+    /**
+     * 每百万命中上下文缓存的 Prompt Token 的价格
+     */
+    private double cachedInputPrice = 0;
+
+    /**
+     * 每百万生成 Token 的价格
+     */
+    private double outputPrice = 0;
+
+    /**
+     * 是否配置了独立端点
+     */
+    public boolean hasOwnEndpoint() {
+        return baseUrl != null && !baseUrl.isBlank();
+    }
+
+    /**
+     * 本次请求的生成 Token 上限：不超过上下文窗口减去 Prompt 的剩余量
+     *
+     * @param requested 请求指定的上限（null 时使用 max-tokens）
+     * @param promptTokens 估算的 Prompt Token 数（含工具定义）
+     */
+    public int completionBudget(Integer requested, int promptTokens) {
+        int limit = requested != null ? requested : maxTokens;
+        if (contextTokens <= 0) {
+            return limit;
+        }
+        return Math.max(MIN_COMPLETION_TOKENS, Math.min(limit, contextTokens - promptTokens));
+    }
+
+    /**
+     * 按单价估算一次调用的费用（未上报 usage 时为 0）
+     */
+    public double costOf(LLMResponse.TokenUsage usage) {
+        if (usage == null) {
+            return 0;
+        }
+        int cached = usage.getCachedPromptTokens();
+        return ((usage.getPromptTokens() - cached) * inputPrice
+            + cached * cachedInputPrice
+            + usage.getCompletionTokens() * outputPrice) / 1_000_000;
+    }
+}
@@ -0,0 +1,76 @@
+package com.nanobot.admin.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 模型配置注册表 - 按调用方（LLMRequest.caller）选择模型配置
+ *
+ * 例如 ReAct 步骤（agent）使用主模型，记忆摘要（summary）使用更快、更便宜的小模型：
+ * <pre>
+ * llm:
+ *   profiles:
+ *     fast:
+ *       model: deepseek-chat
+ *       max-tokens: 512
+ *   caller-profiles:
+ *     summary: fast
+ * </pre>
+ *
+ * 没有映射的调用方使用 default 配置（未配置时为内置默认值：温度 0.7、max_tokens 2000、超时 60s）。
+ */
+@Slf4j
+@Data
+@Component
+@ConfigurationProperties(prefix = "llm")
+public class LLMModelProfiles {
+
+    /** 默认配置的名称 */
+    public static final String DEFAULT_PROFILE = "default";
+
+    /**
+     * 模型配置（key 为 profile 名称）
+     */
+    private Map<String, LLMModelProfile> profiles = new LinkedHashMap<>();
+
+    /**
+     * 调用方 -> profile 名称
+     */
+    private Map<String, String> callerProfiles = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        profiles.putIfAbsent(DEFAULT_PROFILE, new LLMModelProfile());
+        profiles.forEach((name, profile) -> profile.setName(name));
+        callerProfiles.forEach((caller, name) -> {
+            if (!profiles.containsKey(name)) {
+                log.warn("Unknown LLM profile '{}' for caller {}, using {}", name, caller, DEFAULT_PROFILE);
+            }
+        });
+        log.info("LLM profiles: {}, caller mapping: {}", profiles.keySet(), callerProfiles);
+    }
+
+    /**
+     * 调用方使用的模型配置
+     *
+     * @param caller 调用方（null 或没有映射时使用 default）
+     */
+    public LLMModelProfile forCaller(String caller) {
+        String name = caller != null ? callerProfiles.get(caller) : null;
+        LLMModelProfile profile = name != null ? profiles.get(name) : null;
+        return profile != null ? profile : defaultProfile();
+    }
+
+    /**
+     * default 配置
+     */
+    public LLMModelProfile defaultProfile() {
+        return profiles.get(DEFAULT_PROFILE);
+    }
+}
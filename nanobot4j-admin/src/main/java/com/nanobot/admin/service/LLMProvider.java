@@ -0,0 +1,19 @@
+package com.nanobot.admin.service;
+
+/**
+ * OpenAI 兼容的 LLM 端点
+ *
+ * @param name provider 名称（用于限流、熔断和指标的 tag）
+ * @param baseUrl API 根地址（请求发往 {baseUrl}/chat/completions）
+ * @param apiKey API Key
+ * @param model 默认模型
+ */
+public record LLMProvider(String name, String baseUrl, String apiKey, String model) {
+
+    /**
+     * 是否已配置（有 API 根地址和 API Key）
+     */
+    public boolean isConfigured() {
+        return baseUrl != null && !baseUrl.isBlank() && apiKey != null && !apiKey.isBlank();
+    }
+}
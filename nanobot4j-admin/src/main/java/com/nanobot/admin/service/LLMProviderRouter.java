@@ -0,0 +1,526 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.llm.LLMException;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 多 provider 路由 - 失败切换、对冲请求和按 provider 熔断
+ *
+ * 核心机制：
+ * 1. 候选顺序：本次调用的模型配置（LLMModelProfile）指定的 provider 在前（未指定时为 llm.provider 的主 provider），
+ *    其余已配置 API Key 的 provider 依次在后（DeepSeek、Kimi、llm.openai-compatible 配置的任意 OpenAI 兼容端点）；
+ *    模型配置中的独立端点只用于该配置，不作为其他调用的切换目标
+ * 2. 失败切换：当前 provider 出错时立即尝试下一个，全部失败时抛出 LLMException
+ * 3. 对冲（默认关闭，只用于 INTERACTIVE 请求）：当前请求超过该 provider 近期延迟的指定分位数仍未返回时，
+ *    向下一个 provider 再发一次，取先成功的响应并取消其余请求
+ * 4. 熔断：provider 连续失败 failure-threshold 次后跳过 open-ms，之后放行一次试探请求，成功则恢复
+ *
+ * 只有 provider 侧的错误（网络/IO 错误、超时、429、5xx）计入熔断并触发失败切换；
+ * 请求本身被拒绝（其余 4xx）或本地限流排队超时直接抛出，不计入熔断，也不切换到其他 provider。
+ * 取消本轮执行会中止所有进行中的请求；被对冲取消的请求不计入熔断。
+ * 调用结果累计到 Micrometer 计数器 nanobot.llm.router.attempts（tag: provider, result=success/failure/rejected），
+ * 对冲次数累计到 nanobot.llm.router.hedges（tag: provider）。
+ */
+@Slf4j
+@Component
+public class LLMProviderRouter {
+
+    /** 对冲模式下等待期间检查取消信号的间隔 */
+    private static final long POLL_INTERVAL_MS = 100;
+    /** 计算延迟分位数所需的最少样本数，不足时使用 default-delay-ms */
+    private static final int MIN_LATENCY_SAMPLES = 20;
+    private static final int LATENCY_WINDOW = 100;
+
+    private final LLMProvider primary;
+    private final List<LLMProvider> candidates;
+    /** 全部 provider：候选 provider + 模型配置的独立端点 */
+    private final List<LLMProvider> providers;
+    /** profile 名称 -> 首选 provider */
+    private final Map<String, LLMProvider> profileProviders = new LinkedHashMap<>();
+    private final Map<String, ProviderHealth> health = new LinkedHashMap<>();
+    private final boolean failover;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final long hedgeMinDelayMs;
+    private final long hedgeDefaultDelayMs;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger hedgeThreads = new AtomicInteger();
+    private final ExecutorService hedgeExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "llm-hedge-" + hedgeThreads.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LLMProviderRouter(
+        MeterRegistry meterRegistry,
+        LLMModelProfiles profiles,
+        @Value("${llm.provider:deepseek}") String provider,
+        @Value("${llm.deepseek.base-url:https://api.deepseek.com/v1}") String deepseekBaseUrl,
+        @Value("${llm.deepseek.api-key:}") String deepseekApiKey,
+        @Value("${llm.deepseek.model:deepseek-chat}") String deepseekModel,
+        @Value("${llm.kimi.base-url:https://api.moonshot.cn/v1}") String kimiBaseUrl,
+        @Value("${llm.kimi.api-key:}") String kimiApiKey,
+        @Value("${llm.kimi.model:moonshot-v1-8k}") String kimiModel,
+        @Value("${llm.openai-compatible.name:openai}") String compatibleName,
+        @Value("${llm.openai-compatible.base-url:}") String compatibleBaseUrl,
+        @Value("${llm.openai-compatible.api-key:}") String compatibleApiKey,
+        @Value("${llm.openai-compatible.model:}") String compatibleModel,
+        @Value("${llm.router.failover:true}") boolean failover,
+        @Value("${llm.router.hedge.enabled:false}") boolean hedgeEnabled,
+        @Value("${llm.router.hedge.percentile:0.95}") double hedgePercentile,
+        @Value("${llm.router.hedge.min-delay-ms:2000}") long hedgeMinDelayMs,
+        @Value("${llm.router.hedge.default-delay-ms:10000}") long hedgeDefaultDelayMs,
+        @Value("${llm.router.circuit-breaker.failure-threshold:5}") int failureThreshold,
+        @Value("${llm.router.circuit-breaker.open-ms:30000}") long openMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.failover = failover;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeMinDelayMs = hedgeMinDelayMs;
+        this.hedgeDefaultDelayMs = hedgeDefaultDelayMs;
+
+        List<LLMProvider> all = List.of(
+            new LLMProvider("deepseek", deepseekBaseUrl, deepseekApiKey, deepseekModel),
+            new LLMProvider("kimi", kimiBaseUrl, kimiApiKey, kimiModel),
+            new LLMProvider(compatibleName, compatibleBaseUrl, compatibleApiKey, compatibleModel)
+        );
+        LLMProvider selected = all.stream()
+            .filter(p -> p.name().equalsIgnoreCase(provider))
+            .findFirst()
+            .orElse(null);
+        if (selected == null) {
+            log.warn("Unknown LLM provider: {}, falling back to DeepSeek", provider);
+            selected = all.get(0);
+        }
+        this.primary = selected;
+
+        List<LLMProvider> ordered = new ArrayList<>();
+        ordered.add(primary);
+        for (LLMProvider p : all) {
+            if (p != primary && p.isConfigured()) {
+                ordered.add(p);
+            }
+        }
+        this.candidates = List.copyOf(ordered);
+
+        List<LLMProvider> known = new ArrayList<>(candidates);
+        for (LLMModelProfile profile : profiles.getProfiles().values()) {
+            LLMProvider resolved = resolveProfile(profile, all, known);
+            if (resolved != null) {
+                profileProviders.put(profile.getName(), resolved);
+            }
+        }
+        this.providers = List.copyOf(known);
+        for (LLMProvider p : providers) {
+            health.put(p.name(), new ProviderHealth(failureThreshold, openMs));
+        }
+        log.info("LLM providers: {} (failover={}, hedge={}), profile providers: {}",
+            candidates.stream().map(LLMProvider::name).toList(), failover, hedgeEnabled,
+            profileProviders.entrySet().stream().map(e -> e.getKey() + "->" + e.getValue().name()).toList());
+    }
+
+    /**
+     * 模型配置的首选 provider：独立端点加入 known；未指定 provider 时返回 null（使用主 provider）
+     */
+    private LLMProvider resolveProfile(LLMModelProfile profile, List<LLMProvider> all, List<LLMProvider> known) {
+        LLMProvider referenced = primary;
+        if (profile.getProvider() != null) {
+            referenced = all.stream()
+                .filter(p -> p.name().equalsIgnoreCase(profile.getProvider()))
+                .findFirst()
+                .orElse(null);
+            if (referenced == null) {
+                log.warn("Unknown LLM provider '{}' in profile {}, using {}",
+                    profile.getProvider(), profile.getName(), primary.name());
+                referenced = primary;
+            }
+        }
+        boolean ownEndpoint = profile.hasOwnEndpoint();
+        if (ownEndpoint && known.stream().anyMatch(p -> p.name().equalsIgnoreCase(profile.getName()))) {
+            log.warn("LLM profile {} has the same name as a provider, ignoring its base-url", profile.getName());
+            ownEndpoint = false;
+        }
+        if (!ownEndpoint) {
+            if (!known.contains(referenced)) {
+                // 未配置 API Key 的 provider 不是候选，被显式指定时仍需要端点和熔断状态
+                known.add(referenced);
+            }
+            return profile.getProvider() != null ? referenced : null;
+        }
+        LLMProvider endpoint = new LLMProvider(profile.getName(), profile.getBaseUrl(),
+            profile.getApiKey() != null ? profile.getApiKey() : referenced.apiKey(),
+            profile.getModel() != null ? profile.getModel() : referenced.model());
+        known.add(endpoint);
+        return endpoint;
+    }
+
+    /**
+     * 主 provider（llm.provider）
+     */
+    public LLMProvider primary() {
+        return primary;
+    }
+
+    /**
+     * 全部 provider（候选 provider 在前，之后是模型配置的独立端点）
+     */
+    public List<LLMProvider> providers() {
+        return providers;
+    }
+
+    /**
+     * 模型配置的首选 provider（未指定 provider 和独立端点时为主 provider）
+     */
+    public LLMProvider providerFor(LLMModelProfile profile) {
+        return profileProviders.getOrDefault(profile.getName(), primary);
+    }
+
+    /**
+     * 按路由策略调用 provider
+     *
+     * @param preferred 首选 provider（见 {@link #providerFor}）
+     * @param request 请求
+     * @param call 对单个 provider 的实际调用
+     * @return 第一个成功的响应
+     * @throws LLMException 所有可用 provider 都失败或处于熔断状态，或请求被拒绝（4xx、本地限流排队超时）
+     */
+    public LLMResponse execute(LLMProvider preferred, LLMRequest request, ProviderCall call) {
+        List<LLMProvider> available = available(preferred);
+        if (available.isEmpty()) {
+            throw new LLMException("All LLM providers are unavailable (circuit open)");
+        }
+
+        boolean hedge = hedgeEnabled && available.size() > 1
+            && request.getPriority() != LLMRequest.Priority.BACKGROUND;
+        return hedge ? executeHedged(available, request, call) : executeSequential(available, request, call);
+    }
+
+    /**
+     * 可用的 provider：首选在前，其余候选在后；熔断中的 provider 被跳过；未开启失败切换时只使用首选
+     */
+    private List<LLMProvider> available(LLMProvider preferred) {
+        List<LLMProvider> ordered = new ArrayList<>();
+        ordered.add(preferred);
+        if (failover) {
+            for (LLMProvider p : candidates) {
+                if (p != preferred) {
+                    ordered.add(p);
+                }
+            }
+        }
+        ordered.removeIf(p -> !health.get(p.name()).isAvailable());
+        return ordered;
+    }
+
+    // ========== 失败切换 ==========
+
+    private LLMResponse executeSequential(List<LLMProvider> available, LLMRequest request, ProviderCall call) {
+        Exception lastError = null;
+        for (LLMProvider provider : available) {
+            try {
+                return attempt(provider, request, call);
+            } catch (AgentCancelledException | DeadlineExceededException | RequestRejectedException e) {
+                throw e;
+            } catch (Exception e) {
+                lastError = e;
+                log.warn("LLM provider {} failed: {}", provider.name(), describe(e));
+            }
+        }
+        throw new LLMException("LLM call failed - " + describe(lastError), lastError);
+    }
+
+    // ========== 对冲请求 ==========
+
+    private LLMResponse executeHedged(List<LLMProvider> available, LLMRequest request, ProviderCall call) {
+        RunContext parent = RunContext.current();
+        BlockingQueue<Attempt> completed = new LinkedBlockingQueue<>();
+        List<Attempt> running = new ArrayList<>();
+        int next = 0;
+        Exception lastError = null;
+
+        try {
+            running.add(launch(available.get(next++), request, call, parent, completed));
+            long hedgeAt = System.currentTimeMillis() + hedgeDelayMs(available.get(0));
+
+            while (!running.isEmpty()) {
+                long now = System.currentTimeMillis();
+                long waitMs = next < available.size() ? Math.max(0, hedgeAt - now) : POLL_INTERVAL_MS;
+                Attempt done = completed.poll(Math.min(waitMs, POLL_INTERVAL_MS), TimeUnit.MILLISECONDS);
+                parent.checkpoint();
+
+                if (done == null) {
+                    if (next < available.size() && System.currentTimeMillis() >= hedgeAt) {
+                        LLMProvider slow = running.get(running.size() - 1).provider;
+                        LLMProvider backup = available.get(next++);
+                        log.info("LLM provider {} slower than p{} latency, hedging to {}",
+                            slow.name(), Math.round(hedgePercentile * 100), backup.name());
+                        meterRegistry.counter("nanobot.llm.router.hedges", "provider", backup.name()).increment();
+                        running.add(launch(backup, request, call, parent, completed));
+                        hedgeAt = System.currentTimeMillis() + hedgeDelayMs(backup);
+                    }
+                    continue;
+                }
+
+                running.remove(done);
+                if (done.error == null) {
+                    return done.response;
+                }
+                if (done.error instanceof RequestRejectedException rejected) {
+                    // 请求本身有问题，换 provider 也不会成功；进行中的对冲请求在 finally 中取消
+                    throw rejected;
+                }
+                lastError = done.error;
+                log.warn("LLM provider {} failed: {}", done.provider.name(), describe(done.error));
+                if (running.isEmpty() && next < available.size()) {
+                    // 失败切换：不等对冲延迟，立即尝试下一个
+                    LLMProvider backup = available.get(next++);
+                    running.add(launch(backup, request, call, parent, completed));
+                    hedgeAt = System.currentTimeMillis() + hedgeDelayMs(backup);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AgentCancelledException("interrupted");
+        } finally {
+            for (Attempt attempt : running) {
+                attempt.cancellation.cancel("superseded by hedged request");
+            }
+        }
+        throw new LLMException("LLM call failed - " + describe(lastError), lastError);
+    }
+
+    /**
+     * 在对冲线程上发起一次调用：继承本轮执行的时限、会话和 Token 预算，取消令牌独立（可单独取消，本轮取消时一并取消）
+     */
+    private Attempt launch(LLMProvider provider, LLMRequest request, ProviderCall call,
+                           RunContext parent, BlockingQueue<Attempt> completed) {
+        CancellationToken cancellation = new CancellationToken();
+        CancellationToken.Registration link = parent.getCancellationToken().onCancel(
+            () -> cancellation.cancel(parent.getCancellationToken().getReason()));
+        Attempt attempt = new Attempt(provider, cancellation);
+        CompletableFuture.runAsync(() -> {
+            try (RunContext.Scope ignored = parent.withCancellationToken(cancellation).attach()) {
+                attempt.response = attempt(provider, request, call);
+            } catch (Exception e) {
+                attempt.error = e;
+            } finally {
+                link.close();
+                completed.offer(attempt);
+            }
+        }, hedgeExecutor);
+        return attempt;
+    }
+
+    private long hedgeDelayMs(LLMProvider provider) {
+        long percentile = health.get(provider.name()).latencyPercentile(hedgePercentile);
+        return percentile < 0 ? hedgeDefaultDelayMs : Math.max(hedgeMinDelayMs, percentile);
+    }
+
+    // ========== 单次调用 ==========
+
+    /**
+     * 调用一个 provider 并记录熔断状态和延迟（取消、本轮超时和请求被拒绝不计入熔断）
+     *
+     * @throws RequestRejectedException 请求被 provider 拒绝（4xx）或本地限流排队超时，不应切换 provider
+     */
+    private LLMResponse attempt(LLMProvider provider, LLMRequest request, ProviderCall call) throws Exception {
+        ProviderHealth providerHealth = health.get(provider.name());
+        if (!providerHealth.tryAcquire()) {
+            // 熔断中，或另一个试探请求已在进行
+            throw new IllegalStateException("LLM provider " + provider.name() + " circuit open");
+        }
+        long start = System.currentTimeMillis();
+        try {
+            LLMResponse response = call.call(provider, request);
+            providerHealth.onSuccess(System.currentTimeMillis() - start);
+            meterRegistry.counter("nanobot.llm.router.attempts", "provider", provider.name(), "result", "success")
+                .increment();
+            return response;
+        } catch (AgentCancelledException | DeadlineExceededException e) {
+            providerHealth.onAbandoned();
+            throw e;
+        } catch (Exception e) {
+            if (!isProviderFailure(e)) {
+                providerHealth.onAbandoned();
+                meterRegistry.counter("nanobot.llm.router.attempts", "provider", provider.name(), "result", "rejected")
+                    .increment();
+                throw new RequestRejectedException("LLM request rejected by " + provider.name() + " - " + describe(e), e);
+            }
+            if (providerHealth.onFailure()) {
+                log.warn("LLM provider {} circuit opened after consecutive failures", provider.name());
+            }
+            meterRegistry.counter("nanobot.llm.router.attempts", "provider", provider.name(), "result", "failure")
+                .increment();
+            throw e;
+        }
+    }
+
+    /**
+     * 是否为 provider 侧的错误：网络/IO 错误（含响应超时和响应解析失败）、408、429 和 5xx。
+     * 其余 4xx 说明请求本身有问题，本地限流排队超时等非 IO 异常与 provider 无关
+     */
+    private static boolean isProviderFailure(Exception e) {
+        if (e instanceof LLMHttpTransport.HttpStatusException status) {
+            int code = status.getStatus();
+            return code == 408 || code == 429 || code >= 500;
+        }
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    private static String describe(Exception error) {
+        if (error == null) {
+            return "no provider available";
+        }
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 对单个 provider 的实际调用
+     */
+    @FunctionalInterface
+    public interface ProviderCall {
+        LLMResponse call(LLMProvider provider, LLMRequest request) throws Exception;
+    }
+
+    /**
+     * 请求被 provider 拒绝或在本地被限流拒绝：直接抛给调用方，不切换 provider
+     */
+    private static final class RequestRejectedException extends LLMException {
+        RequestRejectedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 一次对冲调用（结果由对冲线程写入，经 completed 队列发布给等待线程）
+     */
+    private static final class Attempt {
+        final LLMProvider provider;
+        final CancellationToken cancellation;
+        volatile LLMResponse response;
+        volatile Exception error;
+
+        Attempt(LLMProvider provider, CancellationToken cancellation) {
+            this.provider = provider;
+            this.cancellation = cancellation;
+        }
+    }
+
+    // ========== provider 健康状态 ==========
+
+    /**
+     * 熔断器（CLOSED -> OPEN -> HALF_OPEN）与近期延迟窗口
+     */
+    private static final class ProviderHealth {
+
+        private final int failureThreshold;
+        private final long openMs;
+
+        private int consecutiveFailures;
+        private long openUntil;
+        /** HALF_OPEN 状态下是否已有试探请求在进行 */
+        private boolean probing;
+
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int latencyCount;
+        private int latencyNext;
+
+        ProviderHealth(int failureThreshold, long openMs) {
+            this.failureThreshold = failureThreshold;
+            this.openMs = openMs;
+        }
+
+        /**
+         * 是否可以参与本次路由（不占用试探名额）
+         */
+        synchronized boolean isAvailable() {
+            return consecutiveFailures < failureThreshold
+                || (System.currentTimeMillis() >= openUntil && !probing);
+        }
+
+        /**
+         * 发起请求前调用：CLOSED 时直接放行；OPEN 到期后（HALF_OPEN）只放行一次试探请求
+         */
+        synchronized boolean tryAcquire() {
+            if (consecutiveFailures < failureThreshold) {
+                return true;
+            }
+            if (System.currentTimeMillis() < openUntil || probing) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        synchronized void onSuccess(long latencyMs) {
+            consecutiveFailures = 0;
+            probing = false;
+            latencies[latencyNext] = latencyMs;
+            latencyNext = (latencyNext + 1) % latencies.length;
+            latencyCount = Math.min(latencyCount + 1, latencies.length);
+        }
+
+        /**
+         * @return 本次失败是否使熔断器打开
+         */
+        synchronized boolean onFailure() {
+            consecutiveFailures++;
+            boolean wasProbing = probing;
+            probing = false;
+            if (consecutiveFailures >= failureThreshold) {
+                openUntil = System.currentTimeMillis() + openMs;
+                return consecutiveFailures == failureThreshold || wasProbing;
+            }
+            return false;
+        }
+
+        synchronized void onAbandoned() {
+            probing = false;
+        }
+
+        /**
+         * 近期成功请求延迟的分位数；样本不足时返回 -1
+         */
+        synchronized long latencyPercentile(double percentile) {
+            if (latencyCount < MIN_LATENCY_SAMPLES) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * latencyCount) - 1;
+            return sorted[Math.max(0, Math.min(index, latencyCount - 1))];
+        }
+    }
+}
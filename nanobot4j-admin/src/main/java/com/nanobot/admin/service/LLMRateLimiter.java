@@ -0,0 +1,259 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LLM 客户端限流 - 按 provider 配额平滑发送请求，避免触发 429 后整批失败
+ *
+ * 核心机制：
+ * 1. 每个 provider 两个令牌桶：请求数/分钟、Token 数/分钟（配置为 0 表示不限制）；
+ *    provider 来自 LLMProviderRouter（含 openai-compatible 和模型配置的独立端点），
+ *    配额为 llm.rate-limit.{provider 名称}.requests-per-minute / tokens-per-minute
+ * 2. 配额不足时请求进入优先级队列：INTERACTIVE 先于 BACKGROUND，同优先级按到达顺序；
+ *    只有队首请求可以取令牌，后台请求不会插到交互请求之前
+ * 3. Token 按 Prompt 估算值 + max_tokens 预扣，响应返回后按实际用量多退少补
+ * 4. provider 返回 429 时按 Retry-After 暂停该 provider 的发放（未配置配额的 provider 同样暂停）
+ * 5. 排队等待受当前 RunContext 的取消信号和剩余预算约束，最长等待 max-wait
+ *
+ * 排队时间记录到 Micrometer 计时器 nanobot.llm.ratelimit.wait（tag: provider, priority），
+ * 排队中的请求数为 gauge nanobot.llm.ratelimit.queued（tag: provider）。
+ */
+@Slf4j
+@Component
+public class LLMRateLimiter {
+
+    /** 等待期间检查取消信号的间隔 */
+    private static final long POLL_INTERVAL_MS = 100;
+
+    private final Map<String, ProviderLimiter> limiters;
+    private final Duration maxWait;
+    private final MeterRegistry meterRegistry;
+
+    public LLMRateLimiter(
+        MeterRegistry meterRegistry,
+        LLMProviderRouter router,
+        Environment environment,
+        @Value("${llm.rate-limit.max-wait:2m}") Duration maxWait
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.maxWait = maxWait;
+
+        Map<String, ProviderLimiter> byName = new LinkedHashMap<>();
+        for (LLMProvider provider : router.providers()) {
+            String prefix = "llm.rate-limit." + provider.name() + ".";
+            int requestsPerMinute = environment.getProperty(prefix + "requests-per-minute", Integer.class, 0);
+            long tokensPerMinute = environment.getProperty(prefix + "tokens-per-minute", Long.class, 0L);
+            byName.put(provider.name(), new ProviderLimiter(provider.name(), requestsPerMinute, tokensPerMinute));
+            if (requestsPerMinute > 0 || tokensPerMinute > 0) {
+                log.info("LLM rate limit for {}: {} requests/min, {} tokens/min",
+                    provider.name(), requestsPerMinute, tokensPerMinute);
+            }
+        }
+        this.limiters = Map.copyOf(byName);
+        limiters.values().forEach(limiter ->
+            meterRegistry.gauge("nanobot.llm.ratelimit.queued",
+                Tags.of("provider", limiter.provider), limiter, ProviderLimiter::queued));
+    }
+
+    /**
+     * 取得一次调用的配额，配额不足时排队等待
+     *
+     * @param provider provider 名称
+     * @param priority 请求优先级（null 视为 INTERACTIVE）
+     * @param estimatedTokens 预估的 Token 数（Prompt + max_tokens）
+     * @return 调用许可，响应返回后调用 {@link Permit#complete}
+     */
+    public Permit acquire(String provider, LLMRequest.Priority priority, long estimatedTokens) {
+        ProviderLimiter limiter = limiters.get(provider);
+        if (limiter == null || (!limiter.isLimited() && !limiter.isPaused())) {
+            return Permit.NONE;
+        }
+
+        LLMRequest.Priority effective = priority != null ? priority : LLMRequest.Priority.INTERACTIVE;
+        long start = System.nanoTime();
+        limiter.acquire(effective, estimatedTokens);
+        long waited = System.nanoTime() - start;
+
+        Timer.builder("nanobot.llm.ratelimit.wait")
+            .tag("provider", provider)
+            .tag("priority", effective.name())
+            .register(meterRegistry)
+            .record(waited, TimeUnit.NANOSECONDS);
+        if (waited > TimeUnit.SECONDS.toNanos(1)) {
+            log.info("LLM request to {} ({}) queued {} ms for rate limit",
+                provider, effective, TimeUnit.NANOSECONDS.toMillis(waited));
+        }
+        return usage -> limiter.reconcile(estimatedTokens, usage);
+    }
+
+    /**
+     * provider 返回 429：暂停该 provider 的配额发放
+     *
+     * @param provider provider 名称
+     * @param retryAfter 服务端要求的等待时间（未提供时为 null）
+     */
+    public void onThrottled(String provider, Duration retryAfter) {
+        ProviderLimiter limiter = limiters.get(provider);
+        if (limiter != null) {
+            Duration pause = retryAfter != null ? retryAfter : Duration.ofSeconds(1);
+            log.warn("LLM provider {} throttled the request, pausing for {} ms", provider, pause.toMillis());
+            limiter.pause(pause.toMillis());
+        }
+    }
+
+    /**
+     * 调用许可
+     */
+    @FunctionalInterface
+    public interface Permit {
+
+        /** 未限流时的空许可 */
+        Permit NONE = usage -> { };
+
+        /**
+         * 按实际用量修正预扣的 Token（调用失败时传 null，保留预扣值）
+         */
+        void complete(LLMResponse.TokenUsage usage);
+    }
+
+    // ========== 单个 provider 的令牌桶 ==========
+
+    private final class ProviderLimiter {
+
+        private final String provider;
+        private final double requestCapacity;
+        private final double tokenCapacity;
+        /** 每毫秒补充的请求数 / Token 数 */
+        private final double requestRefillPerMs;
+        private final double tokenRefillPerMs;
+
+        private double requests;
+        private double tokens;
+        private long lastRefill = System.currentTimeMillis();
+        private long pausedUntil;
+
+        private long sequence;
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing(Waiter::priority).thenComparingLong(Waiter::sequence));
+
+        ProviderLimiter(String provider, int requestsPerMinute, long tokensPerMinute) {
+            this.provider = provider;
+            this.requestCapacity = requestsPerMinute;
+            this.tokenCapacity = tokensPerMinute;
+            this.requestRefillPerMs = requestsPerMinute / 60_000.0;
+            this.tokenRefillPerMs = tokensPerMinute / 60_000.0;
+            this.requests = requestCapacity;
+            this.tokens = tokenCapacity;
+        }
+
+        boolean isLimited() {
+            return requestCapacity > 0 || tokenCapacity > 0;
+        }
+
+        synchronized boolean isPaused() {
+            return pausedUntil > System.currentTimeMillis();
+        }
+
+        synchronized int queued() {
+            return queue.size();
+        }
+
+        synchronized void acquire(LLMRequest.Priority priority, long estimatedTokens) {
+            // 超过桶容量的请求按满桶计，避免永远等不到
+            double need = tokenCapacity > 0 ? Math.min(estimatedTokens, tokenCapacity) : 0;
+            Waiter waiter = new Waiter(priority, sequence++);
+            queue.add(waiter);
+            long giveUpAt = System.currentTimeMillis() + maxWait.toMillis();
+            try {
+                while (true) {
+                    RunContext.current().checkpoint();
+                    long now = System.currentTimeMillis();
+                    refill(now);
+
+                    long waitMs;
+                    if (queue.peek() != waiter) {
+                        waitMs = POLL_INTERVAL_MS;
+                    } else {
+                        waitMs = millisUntilAvailable(now, need);
+                        if (waitMs == 0) {
+                            if (requestCapacity > 0) {
+                                requests -= 1;
+                            }
+                            tokens -= need;
+                            return;
+                        }
+                    }
+
+                    if (now + waitMs > giveUpAt) {
+                        throw new RuntimeException("Rate limit queue wait for " + provider
+                            + " exceeded " + maxWait.toMillis() + " ms");
+                    }
+                    wait(Math.max(1, Math.min(waitMs, POLL_INTERVAL_MS)));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for rate limit", e);
+            } finally {
+                queue.remove(waiter);
+                notifyAll();
+            }
+        }
+
+        synchronized void reconcile(long estimatedTokens, LLMResponse.TokenUsage usage) {
+            if (tokenCapacity <= 0 || usage == null) {
+                return;
+            }
+            // 实际用量超出预估时允许欠账（tokens 为负），后续请求等待补齐
+            long actual = (long) usage.getPromptTokens() + usage.getCompletionTokens();
+            tokens = Math.min(tokenCapacity, tokens + Math.min(estimatedTokens, tokenCapacity) - actual);
+            notifyAll();
+        }
+
+        synchronized void pause(long millis) {
+            pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + millis);
+            requests = Math.min(requests, 0);
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed <= 0) {
+                return;
+            }
+            requests = Math.min(requestCapacity, requests + elapsed * requestRefillPerMs);
+            tokens = Math.min(tokenCapacity, tokens + elapsed * tokenRefillPerMs);
+            lastRefill = now;
+        }
+
+        /**
+         * 队首请求还需等待的时间（0 表示可以立即发放）
+         */
+        private long millisUntilAvailable(long now, double need) {
+            long wait = Math.max(0, pausedUntil - now);
+            if (requestCapacity > 0 && requests < 1) {
+                wait = Math.max(wait, (long) Math.ceil((1 - requests) / requestRefillPerMs));
+            }
+            if (tokenCapacity > 0 && tokens < need) {
+                wait = Math.max(wait, (long) Math.ceil((need - tokens) / tokenRefillPerMs));
+            }
+            return wait;
+        }
+    }
+
+    private record Waiter(LLMRequest.Priority priority, long sequence) {}
+}
@@ -0,0 +1,143 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.llm.LLMResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * LLM 请求合并（single-flight）- 同时进行的相同请求只发起一次 provider 调用
+ *
+ * 核心机制：
+ * 1. 以 LLMRequestKey 为键登记进行中的调用；第一个请求（leader）实际调用 provider，
+ *    同一时刻到达的相同请求（follower）等待 leader 的结果，调用结束后立即移除登记
+ * 2. follower 按自己的 RunContext 等待：自己被取消或超时只影响自己，不会中止 leader 的请求
+ * 3. leader 因自身取消或超时而失败时，follower 不继承该异常，改为自己调用 provider；
+ *    provider 返回的错误则原样传给所有 follower
+ *
+ * 合并情况累计到 Micrometer 计数器 nanobot.llm.coalesce（tag: role=leader/follower）。
+ */
+@Slf4j
+@Component
+public class LLMRequestCoalescer {
+
+    /** follower 等待的上限（与单次 LLM 请求超时一致，受本轮执行剩余预算约束） */
+    private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(60);
+
+    private final boolean enabled;
+    private final MeterRegistry meterRegistry;
+
+    /** 进行中的调用：请求键 -> 结果 */
+    private final ConcurrentHashMap<String, CompletableFuture<LLMResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public LLMRequestCoalescer(
+        MeterRegistry meterRegistry,
+        @Value("${llm.coalesce.enabled:true}") boolean enabled
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * 是否启用请求合并
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 执行调用；已有相同请求在进行中时等待其结果
+     *
+     * @param key LLMRequestKey 计算的请求键
+     * @param call 实际的 provider 调用
+     * @return provider 响应（follower 与 leader 共享同一个响应）
+     */
+    public LLMResponse execute(String key, ProviderCall call) throws Exception {
+        CompletableFuture<LLMResponse> own = new CompletableFuture<>();
+        CompletableFuture<LLMResponse> existing = inFlight.putIfAbsent(key, own);
+        if (existing == null) {
+            return lead(key, own, call);
+        }
+
+        meterRegistry.counter("nanobot.llm.coalesce", "role", "follower").increment();
+        log.info("LLM request joined an identical in-flight call");
+        try {
+            return await(existing);
+        } catch (LeaderAbandonedException e) {
+            log.info("Leader of coalesced LLM call gave up ({}), calling provider directly", e.getMessage());
+            return call.call();
+        }
+    }
+
+    private LLMResponse lead(String key, CompletableFuture<LLMResponse> own, ProviderCall call) throws Exception {
+        meterRegistry.counter("nanobot.llm.coalesce", "role", "leader").increment();
+        try {
+            LLMResponse response = call.call();
+            own.complete(response);
+            return response;
+        } catch (Exception e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * 按当前 RunContext 的取消信号和剩余预算等待 leader 的结果
+     */
+    private LLMResponse await(CompletableFuture<LLMResponse> shared) throws Exception {
+        CancellationToken cancellation = RunContext.current().getCancellationToken();
+        Deadline deadline = RunContext.current().getDeadline();
+        cancellation.throwIfCancelled();
+        deadline.throwIfExpired();
+
+        // 取消只作用于副本，不影响 leader 和其他 follower
+        CompletableFuture<LLMResponse> view = shared.copy();
+        try (CancellationToken.Registration ignored = cancellation.onCancel(() -> view.cancel(true))) {
+            return view.get(deadline.cap(WAIT_TIMEOUT).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (CancellationException e) {
+            throw new AgentCancelledException(cancellation.getReason());
+        } catch (TimeoutException e) {
+            deadline.throwIfExpired();
+            throw new RuntimeException("Timed out waiting for coalesced LLM call");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof AgentCancelledException || cause instanceof DeadlineExceededException) {
+                throw new LeaderAbandonedException(cause.getClass().getSimpleName());
+            }
+            throw cause instanceof Exception exception ? exception : e;
+        }
+    }
+
+    /**
+     * 实际的 provider 调用
+     */
+    @FunctionalInterface
+    public interface ProviderCall {
+        LLMResponse call() throws Exception;
+    }
+
+    /**
+     * leader 因自身的取消或超时失败，结果不代表 provider 的响应
+     */
+    private static final class LeaderAbandonedException extends Exception {
+        LeaderAbandonedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.nanobot.admin.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolDefinition;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * LLM 请求的规范化键 - 发往 provider 的内容完全相同的请求得到相同的键
+ *
+ * provider、model、temperature、max_tokens、完整消息列表（含工具调用）和工具定义按固定顺序编码后取 SHA-256，
+ * 编码直接写入摘要流，不拼接 Prompt 字符串。供响应缓存和请求合并共用。
+ */
+final class LLMRequestKey {
+
+    /** 带 ObjectMapper 编解码器，工具调用参数（Map）可直接写入 */
+    private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+
+    private LLMRequestKey() {
+    }
+
+    /**
+     * 计算请求的键
+     *
+     * @param provider provider 名称
+     * @param model 实际使用的模型
+     * @param temperature 实际使用的温度
+     * @param maxTokens 实际使用的最大 Token 数
+     * @param request 请求
+     * @return SHA-256 十六进制字符串
+     */
+    static String of(String provider, String model, double temperature, int maxTokens, LLMRequest request) {
+        MessageDigest digest = sha256();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(
+            new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            generator.writeStartObject();
+            generator.writeStringField("provider", provider);
+            generator.writeStringField("model", model);
+            generator.writeNumberField("temperature", temperature);
+            generator.writeNumberField("max_tokens", maxTokens);
+            generator.writeArrayFieldStart("messages");
+            for (Message message : request.getMessages()) {
+                generator.writeStartObject();
+                generator.writeStringField("role", message.getRole());
+                generator.writeStringField("content", message.getContent());
+                if (message.getToolCallId() != null) {
+                    generator.writeStringField("tool_call_id", message.getToolCallId());
+                }
+                if (message.getToolCalls() != null) {
+                    generator.writeArrayFieldStart("tool_calls");
+                    for (ToolCall toolCall : message.getToolCalls()) {
+                        generator.writeStartObject();
+                        generator.writeStringField("id", toolCall.getId());
+                        generator.writeStringField("name", toolCall.getName());
+                        generator.writeObjectField("arguments", toolCall.getArguments());
+                        generator.writeEndObject();
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            if (request.getTools() != null) {
+                generator.writeArrayFieldStart("tools");
+                for (ToolDefinition tool : request.getTools()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("name", tool.getName());
+                    generator.writeStringField("description", tool.getDescription());
+                    generator.writeStringField("parameters", tool.getParameterSchema());
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
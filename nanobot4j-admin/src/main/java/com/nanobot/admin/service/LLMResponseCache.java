@@ -0,0 +1,136 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.llm.LLMRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LLM 响应缓存 - 完全相同的请求直接返回上次的响应（默认关闭）
+ *
+ * 核心机制：
+ * 1. 只缓存温度为 0 或显式标记 cacheable 的请求（如记忆摘要），其他请求每次都调用 provider
+ * 2. 缓存键：LLMRequestKey（provider、model、temperature、max_tokens 和完整消息列表的 SHA-256）
+ * 3. 两级存储：本地 LRU（max-entries 条）+ 可选 Redis（多节点共享），Redis 命中时回填本地
+ * 4. 只缓存成功的响应；Redis 不可用时视为未命中
+ *
+ * 命中情况累计到 Micrometer 计数器 nanobot.llm.cache（tag: result=hit/miss, tier=local/redis）。
+ */
+@Slf4j
+@Component
+public class LLMResponseCache {
+
+    private static final String KEY_PREFIX = "llm:cache:";
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    /** 本地 LRU（访问顺序） */
+    private final LinkedHashMap<String, Entry> local;
+
+    public LLMResponseCache(
+        ObjectProvider<StringRedisTemplate> redisTemplate,
+        MeterRegistry meterRegistry,
+        @Value("${llm.cache.enabled:false}") boolean enabled,
+        @Value("${llm.cache.max-entries:1000}") int maxEntries,
+        @Value("${llm.cache.ttl:1h}") Duration ttl,
+        @Value("${llm.cache.redis.enabled:false}") boolean redisEnabled
+    ) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.redisTemplate = enabled && redisEnabled ? redisTemplate.getIfAvailable() : null;
+        this.meterRegistry = meterRegistry;
+        this.local = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > LLMResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 请求是否可以使用缓存
+     *
+     * @param temperature 实际使用的温度
+     * @param request 请求
+     * @return 缓存已启用，且请求温度为 0 或标记为 cacheable
+     */
+    public boolean accepts(double temperature, LLMRequest request) {
+        return enabled && (request.isCacheable() || temperature == 0);
+    }
+
+    /**
+     * 查找缓存的响应内容
+     *
+     * @param key LLMRequestKey 计算的请求键
+     * @return 响应内容；未命中时返回 null
+     */
+    public String get(String key) {
+        synchronized (local) {
+            Entry entry = local.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                record("hit", "local");
+                return entry.content();
+            }
+            if (entry != null) {
+                local.remove(key);
+            }
+        }
+
+        if (redisTemplate != null) {
+            try {
+                String content = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+                if (content != null) {
+                    putLocal(key, content);
+                    record("hit", "redis");
+                    return content;
+                }
+            } catch (RuntimeException e) {
+                log.warn("LLM cache lookup in Redis failed: {}", e.getMessage());
+            }
+        }
+
+        record("miss", redisTemplate != null ? "redis" : "local");
+        return null;
+    }
+
+    /**
+     * 缓存成功的响应内容
+     *
+     * @param key LLMRequestKey 计算的请求键
+     * @param content 响应内容
+     */
+    public void put(String key, String content) {
+        putLocal(key, content);
+        if (redisTemplate != null) {
+            try {
+                redisTemplate.opsForValue().set(KEY_PREFIX + key, content, ttl);
+            } catch (RuntimeException e) {
+                log.warn("LLM cache write to Redis failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void putLocal(String key, String content) {
+        synchronized (local) {
+            local.put(key, new Entry(content, System.currentTimeMillis() + ttl.toMillis()));
+        }
+    }
+
+    private void record(String result, String tier) {
+        meterRegistry.counter("nanobot.llm.cache", "result", result, "tier", tier).increment();
+    }
+
+    private record Entry(String content, long expiresAt) {}
+}
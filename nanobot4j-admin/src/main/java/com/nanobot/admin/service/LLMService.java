@@ -1,146 +1,319 @@
 package com.nanobot.admin.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.llm.LLMClient;
+import com.nanobot.core.llm.LLMException;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.TokenEstimator;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolDefinition;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
- * LLM服务 - 支持DeepSeek和Kimi API
+ * LLM服务 - 支持DeepSeek、Kimi及任意 OpenAI 兼容 API
+ *
+ * 实现 core 模块的 LLMClient 接口，供 ReActEngine 调用。
+ * 每个调用方（LLMRequest.caller：agent、summary 等）按 LLMModelProfiles 选择模型配置（端点、模型、温度、
+ * max_tokens、上下文窗口、超时和单价），例如记忆摘要使用更快、更便宜的小模型；
+ * provider 的选择、失败切换、对冲请求和熔断由 LLMProviderRouter 负责，全部失败时抛出 LLMException；
+ * HTTP 连接复用与预热由 LLMHttpTransport 负责。
+ *
+ * 响应由 ChatCompletionParser 在响应流上直接解析出 content、tool_calls 和 usage（不构建 JSON 树）；
+ * 每次调用解析服务端返回的 usage（包括上下文缓存命中的 Token 数），由 LLMUsageTracker 按 provider、调用方和会话累计。
+ *
+ * 温度为 0 或标记 cacheable 的请求先查 LLMResponseCache（需开启 llm.cache.enabled），命中时不调用 provider；
+ * 同时进行的相同请求由 LLMRequestCoalescer 合并为一次 provider 调用；
+ * 实际发出的请求经 LLMRateLimiter 按 provider 配额排队（交互请求优先于后台摘要）。
  */
 @Slf4j
 @Service
-public class LLMService {
+public class LLMService implements LLMClient {
 
-    @Value("${llm.provider:deepseek}")
-    private String provider;
+    /** 记忆摘要请求的调用方标识 */
+    public static final String SUMMARY_CALLER = "summary";
 
-    @Value("${llm.deepseek.api-key:}")
-    private String deepseekApiKey;
-
-    @Value("${llm.kimi.api-key:}")
-    private String kimiApiKey;
-
-    @Value("${llm.deepseek.model:deepseek-chat}")
-    private String deepseekModel;
-
-    @Value("${llm.kimi.model:moonshot-v1-8k}")
-    private String kimiModel;
-
-    private final HttpClient httpClient;
+    private final LLMHttpTransport transport;
     private final ObjectMapper objectMapper;
+    private final ChatCompletionParser responseParser;
+    private final LLMUsageTracker usageTracker;
+    private final LLMResponseCache responseCache;
+    private final LLMRequestCoalescer coalescer;
+    private final LLMRateLimiter rateLimiter;
+    private final LLMProviderRouter router;
+    private final LLMModelProfiles profiles;
 
-    public LLMService() {
-        this.httpClient = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(30))
-            .build();
+    public LLMService(LLMUsageTracker usageTracker, LLMResponseCache responseCache, LLMRequestCoalescer coalescer,
+                      LLMRateLimiter rateLimiter, LLMProviderRouter router, LLMHttpTransport transport,
+                      LLMModelProfiles profiles) {
+        this.transport = transport;
         this.objectMapper = new ObjectMapper();
+        this.responseParser = new ChatCompletionParser(objectMapper);
+        this.usageTracker = usageTracker;
+        this.responseCache = responseCache;
+        this.coalescer = coalescer;
+        this.rateLimiter = rateLimiter;
+        this.router = router;
+        this.profiles = profiles;
     }
 
     /**
      * 调用LLM生成响应
      */
     public String chat(String systemPrompt, String userMessage) {
+        LLMResponse response = chatForResponse(systemPrompt, userMessage);
+        return response.getContent();
+    }
+
+    /**
+     * 后台摘要调用：相同的输入可直接复用缓存的响应，限流排队时让位于交互请求
+     */
+    public String chatForSummary(String systemPrompt, String userMessage) {
+        LLMRequest request = new LLMRequest(
+            List.of(Message.system(systemPrompt), Message.user(userMessage)), null, null, null, null);
+        request.setCacheable(true);
+        request.setPriority(LLMRequest.Priority.BACKGROUND);
+        request.setCaller(SUMMARY_CALLER);
+        return chat(request).getContent();
+    }
+
+    /**
+     * 调用LLM生成响应，同时返回 Token 使用情况
+     *
+     * @throws LLMException 所有可用 provider 都调用失败
+     */
+    public LLMResponse chatForResponse(String systemPrompt, String userMessage) {
+        return chat(new LLMRequest(
+            List.of(Message.system(systemPrompt), Message.user(userMessage)), null, null, null, null));
+    }
+
+    /**
+     * 按 LLMClient 协议调用 provider（未指定的 model/temperature/maxTokens 使用调用方模型配置的值）
+     *
+     * @throws LLMException 所有可用 provider 都调用失败
+     */
+    @Override
+    public LLMResponse chat(LLMRequest request) {
+        LLMModelProfile profile = profiles.forCaller(request.getCaller());
+        LLMProvider preferred = router.providerFor(profile);
+        String model = resolveModel(preferred, preferred, profile, request);
+        double temperature = temperatureOf(profile, request);
+        boolean cacheable = responseCache.accepts(temperature, request);
+        String requestKey = cacheable || coalescer.isEnabled()
+            ? LLMRequestKey.of(preferred.name(), model, temperature,
+                request.getMaxTokens() != null ? request.getMaxTokens() : profile.getMaxTokens(), request)
+            : null;
+
+        if (cacheable) {
+            String cached = responseCache.get(requestKey);
+            if (cached != null) {
+                log.info("LLM response served from cache");
+                return new LLMResponse(cached, null, true, null);
+            }
+        }
+
+        // 缓存键按首选 provider 计算：只缓存首选 provider 的回复，失败切换到其他 provider 的回复不写入
+        String cacheKey = cacheable ? requestKey : null;
+        LLMProviderRouter.ProviderCall call = (provider, req) -> callProvider(provider, req, preferred, profile, cacheKey);
+        LLMResponse response;
         try {
-            if ("deepseek".equalsIgnoreCase(provider)) {
-                return callDeepSeek(systemPrompt, userMessage);
-            } else if ("kimi".equalsIgnoreCase(provider)) {
-                return callKimi(systemPrompt, userMessage);
+            if (coalescer.isEnabled()) {
+                response = coalescer.execute(requestKey, () -> router.execute(preferred, request, call));
             } else {
-                log.warn("Unknown LLM provider: {}, falling back to DeepSeek", provider);
-                return callDeepSeek(systemPrompt, userMessage);
+                response = router.execute(preferred, request, call);
             }
+        } catch (AgentCancelledException | DeadlineExceededException | LLMException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("LLM call failed", e);
-            return "ERROR: LLM call failed - " + e.getMessage();
+            throw new LLMException("LLM call failed - " + e.getMessage(), e);
         }
+        return response;
     }
 
     /**
-     * 调用DeepSeek API
+     * 取得限流配额后调用 provider（max_tokens 按模型配置的上下文窗口收紧）
+     *
+     * @param cacheKey 响应缓存键（按首选 provider 计算），为 null 时不缓存
      */
-    private String callDeepSeek(String systemPrompt, String userMessage) throws Exception {
-        log.info("Calling DeepSeek API with model: {}", deepseekModel);
+    private LLMResponse callProvider(LLMProvider provider, LLMRequest request, LLMProvider preferred,
+                                     LLMModelProfile profile, String cacheKey) throws Exception {
+        int promptTokens = TokenEstimator.estimate(request.getMessages()) + TokenEstimator.estimateTools(request.getTools());
+        int maxTokens = profile.completionBudget(request.getMaxTokens(), promptTokens);
+        LLMRateLimiter.Permit permit = rateLimiter.acquire(provider.name(), request.getPriority(),
+            promptTokens + maxTokens);
+        LLMResponse response = callEndpoint(provider, request,
+            resolveModel(provider, preferred, profile, request), temperatureOf(profile, request), maxTokens,
+            profile.getTimeout());
 
-        Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", deepseekModel);
-        requestBody.put("messages", List.of(
-            Map.of("role", "system", "content", systemPrompt),
-            Map.of("role", "user", "content", userMessage)
-        ));
-        requestBody.put("temperature", 0.7);
-        requestBody.put("max_tokens", 2000);
-
-        String jsonBody = objectMapper.writeValueAsString(requestBody);
-
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create("https://api.deepseek.com/v1/chat/completions"))
-            .header("Content-Type", "application/json")
-            .header("Authorization", "Bearer " + deepseekApiKey)
-            .timeout(Duration.ofSeconds(60))
-            .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-            .build();
-
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() != 200) {
-            log.error("DeepSeek API error: status={}, body={}", response.statusCode(), response.body());
-            throw new RuntimeException("DeepSeek API returned status " + response.statusCode());
+        // 单价按模型配置的模型计算，切换到其他 provider 时模型不同，不估算费用
+        double cost = provider == preferred ? profile.costOf(response.getTokenUsage()) : 0;
+        usageTracker.record(provider.name(), request.getCaller(), response.getTokenUsage(), cost);
+        permit.complete(response.getTokenUsage());
+
+        // 只缓存首选 provider 的纯文本回复，工具调用依赖当时的工具执行结果
+        if (cacheKey != null && provider == preferred && response.getContent() != null
+            && (response.getToolCalls() == null || response.getToolCalls().isEmpty())) {
+            responseCache.put(cacheKey, response.getContent());
         }
+        return response;
+    }
+
+    @Override
+    public String getModelName() {
+        LLMModelProfile profile = profiles.defaultProfile();
+        LLMProvider preferred = router.providerFor(profile);
+        return resolveModel(preferred, preferred, profile, null);
+    }
 
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        String content = jsonResponse.get("choices").get(0).get("message").get("content").asText();
+    /**
+     * 实际使用的模型：请求或模型配置指定的模型只用于首选 provider，切换到其他 provider 时使用其配置的模型
+     */
+    private static String resolveModel(LLMProvider provider, LLMProvider preferred,
+                                       LLMModelProfile profile, LLMRequest request) {
+        if (provider != preferred) {
+            return provider.model();
+        }
+        if (request != null && request.getModel() != null) {
+            return request.getModel();
+        }
+        return profile.getModel() != null ? profile.getModel() : provider.model();
+    }
 
-        log.info("DeepSeek response: {}", content);
-        return content;
+    private static double temperatureOf(LLMModelProfile profile, LLMRequest request) {
+        return request.getTemperature() != null ? request.getTemperature() : profile.getTemperature();
     }
 
     /**
-     * 调用Kimi API
+     * 调用 OpenAI 兼容的 chat/completions 接口
      */
-    private String callKimi(String systemPrompt, String userMessage) throws Exception {
-        log.info("Calling Kimi API with model: {}", kimiModel);
+    private LLMResponse callEndpoint(LLMProvider provider, LLMRequest llmRequest, String model, double temperature,
+                                     int maxTokens, Duration timeout) throws Exception {
+        log.info("Calling {} API with model: {}", provider.name(), model);
+
+        byte[] jsonBody = objectMapper.writeValueAsBytes(buildRequestBody(llmRequest, model, temperature, maxTokens));
+        LLMResponse response;
+        try {
+            response = transport.postChatCompletion(provider, jsonBody, timeout, responseParser::parse);
+        } catch (LLMHttpTransport.HttpStatusException e) {
+            if (e.getStatus() == 429) {
+                rateLimiter.onThrottled(provider.name(), retryAfter(e.getRetryAfter()));
+            }
+            log.error("{} API error: status={}, body={}", provider.name(), e.getStatus(), e.getBody());
+            // 保留状态码：路由据此区分 provider 故障（429/5xx）和请求被拒绝（其余 4xx）
+            throw e;
+        }
+
+        log.info("{} response: {}", provider.name(), response.getContent());
+        return response;
+    }
+
+    /**
+     * 解析 Retry-After 响应头（秒数），缺失或无法解析时返回 null
+     */
+    private static Duration retryAfter(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 构建 OpenAI 兼容的请求体（含原生 function calling 的 tools 与 assistant 消息的 tool_calls）
+     */
+    private Map<String, Object> buildRequestBody(LLMRequest llmRequest, String model, double temperature,
+                                                 int maxTokens) throws JsonProcessingException {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (Message message : llmRequest.getMessages()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("role", message.getRole());
+            m.put("content", message.getContent());
+            if (message.getToolCallId() != null) {
+                m.put("tool_call_id", message.getToolCallId());
+            }
+            if (message.getToolCalls() != null && !message.getToolCalls().isEmpty()) {
+                m.put("tool_calls", toolCallsBody(message.getToolCalls()));
+            }
+            messages.add(m);
+        }
 
         Map<String, Object> requestBody = new HashMap<>();
-        requestBody.put("model", kimiModel);
-        requestBody.put("messages", List.of(
-            Map.of("role", "system", "content", systemPrompt),
-            Map.of("role", "user", "content", userMessage)
-        ));
-        requestBody.put("temperature", 0.7);
-        requestBody.put("max_tokens", 2000);
-
-        String jsonBody = objectMapper.writeValueAsString(requestBody);
-
-        HttpRequest request = HttpRequest.newBuilder()
-            .uri(URI.create("https://api.moonshot.cn/v1/chat/completions"))
-            .header("Content-Type", "application/json")
-            .header("Authorization", "Bearer " + kimiApiKey)
-            .timeout(Duration.ofSeconds(60))
-            .POST(HttpRequest.BodyPublishers.ofString(jsonBody))
-            .build();
-
-        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-
-        if (response.statusCode() != 200) {
-            log.error("Kimi API error: status={}, body={}", response.statusCode(), response.body());
-            throw new RuntimeException("Kimi API returned status " + response.statusCode());
+        requestBody.put("model", model);
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", temperature);
+        requestBody.put("max_tokens", maxTokens);
+        if (llmRequest.getTools() != null && !llmRequest.getTools().isEmpty()) {
+            requestBody.put("tools", toolsBody(llmRequest.getTools()));
         }
+        return requestBody;
+    }
+
+    /**
+     * [{"type":"function","function":{name, description, parameters}}]
+     */
+    private List<Map<String, Object>> toolsBody(List<ToolDefinition> tools) {
+        List<Map<String, Object>> result = new ArrayList<>(tools.size());
+        for (ToolDefinition tool : tools) {
+            Map<String, Object> function = new LinkedHashMap<>();
+            function.put("name", tool.getName());
+            function.put("description", tool.getDescription());
+            function.put("parameters", tool instanceof ToolCatalog.CatalogToolDefinition defined
+                ? defined.getParameters()
+                : parametersOf(tool));
+            result.add(Map.of("type", "function", "function", function));
+        }
+        return result;
+    }
+
+    /**
+     * 不是由 ToolCatalog 生成的工具定义：解析参数 Schema，不是合法的 JSON 对象时使用 {"type":"object"}
+     */
+    private JsonNode parametersOf(ToolDefinition tool) {
+        String schema = tool.getParameterSchema();
+        try {
+            JsonNode node = schema == null || schema.isBlank() ? null : objectMapper.readTree(schema);
+            if (node != null && node.isObject() && !node.isEmpty()) {
+                return node;
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid parameter schema of tool {}, using empty object schema: {}", tool.getName(), schema);
+        }
+        return objectMapper.createObjectNode().put("type", "object");
+    }
 
-        JsonNode jsonResponse = objectMapper.readTree(response.body());
-        String content = jsonResponse.get("choices").get(0).get("message").get("content").asText();
+    /**
+     * [{"id", "type":"function", "function":{name, arguments（JSON 字符串）}}]
+     */
+    private List<Map<String, Object>> toolCallsBody(List<ToolCall> toolCalls) throws JsonProcessingException {
+        List<Map<String, Object>> result = new ArrayList<>(toolCalls.size());
+        for (ToolCall toolCall : toolCalls) {
+            Map<String, Object> function = new LinkedHashMap<>();
+            function.put("name", toolCall.getName());
+            function.put("arguments", objectMapper.writeValueAsString(
+                toolCall.getArguments() != null ? toolCall.getArguments() : Map.of()));
 
-        log.info("Kimi response: {}", content);
-        return content;
+            Map<String, Object> call = new LinkedHashMap<>();
+            call.put("id", toolCall.getId());
+            call.put("type", "function");
+            call.put("function", function);
+            result.add(call);
+        }
+        return result;
     }
 }
@@ -0,0 +1,214 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.core.agent.RunContext;
+import com.nanobot.core.agent.TokenBudget;
+import com.nanobot.core.llm.LLMResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LLM Token 用量统计 - 按 provider 上报的 usage 累计，供定位高消耗 Prompt 和会话预算使用
+ *
+ * 核心机制：
+ * 1. 每次实际的 provider 调用（不含缓存命中和合并的跟随请求）记录一次 usage
+ * 2. 按 (provider, 调用方) 和按会话两个维度累计，计数器为 LongAdder，记录时无锁
+ * 3. 会话取自当前 RunContext；会话超过 session-retention 没有新调用时清理
+ * 4. 会话 Token 预算：剩余量 = 上限 - 该会话累计的 prompt + completion
+ *
+ * 按模型配置（LLMModelProfile）的单价估算的费用同时累计。
+ *
+ * 同时累计到 Micrometer 计数器 nanobot.llm.tokens（tag: provider, caller, type=prompt/cached/completion）
+ * 和 nanobot.llm.cost（tag: provider, caller），
+ * 明细通过 actuator 端点 llmusage 查看。统计只在本节点内存中，多节点部署时按节点分别计算。
+ */
+@Slf4j
+@Component
+public class LLMUsageTracker {
+
+    /** 未标记调用方的请求 */
+    public static final String DEFAULT_CALLER = "default";
+
+    private final MeterRegistry meterRegistry;
+    private final long sessionRetentionMs;
+
+    private final Map<CallerKey, Counters> callers = new ConcurrentHashMap<>();
+    private final Map<String, Counters> sessions = new ConcurrentHashMap<>();
+
+    public LLMUsageTracker(
+        MeterRegistry meterRegistry,
+        @Value("${llm.usage.session-retention:24h}") Duration sessionRetention
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.sessionRetentionMs = sessionRetention.toMillis();
+    }
+
+    /**
+     * 记录一次 provider 调用的用量（会话取自当前 RunContext）
+     *
+     * @param provider provider 名称
+     * @param caller 调用方（null 视为 default）
+     * @param usage provider 上报的用量（未上报时为 null，不记录）
+     * @param cost 按单价估算的费用
+     */
+    public void record(String provider, String caller, LLMResponse.TokenUsage usage, double cost) {
+        if (usage == null) {
+            return;
+        }
+        String effectiveCaller = caller != null ? caller : DEFAULT_CALLER;
+        callers.computeIfAbsent(new CallerKey(provider, effectiveCaller), key -> new Counters()).add(usage, cost);
+
+        String sessionId = RunContext.current().getSessionId();
+        if (sessionId != null) {
+            sessions.computeIfAbsent(sessionId, key -> new Counters()).add(usage, cost);
+        }
+
+        meterRegistry.counter("nanobot.llm.tokens", "provider", provider, "caller", effectiveCaller, "type", "prompt")
+            .increment(usage.getPromptTokens());
+        meterRegistry.counter("nanobot.llm.tokens", "provider", provider, "caller", effectiveCaller, "type", "cached")
+            .increment(usage.getCachedPromptTokens());
+        meterRegistry.counter("nanobot.llm.tokens", "provider", provider, "caller", effectiveCaller, "type", "completion")
+            .increment(usage.getCompletionTokens());
+        meterRegistry.counter("nanobot.llm.cost", "provider", provider, "caller", effectiveCaller).increment(cost);
+
+        log.info("{} usage ({}, session={}): prompt={} (cache hit {}), completion={}", provider, effectiveCaller,
+            sessionId, usage.getPromptTokens(), usage.getCachedPromptTokens(), usage.getCompletionTokens());
+    }
+
+    /**
+     * 会话的 Token 预算
+     *
+     * @param sessionId 会话 ID（为 null 时不限制）
+     * @param maxTokens 会话累计的 prompt + completion 上限（0 或负数表示不限制）
+     * @return 按该会话实时用量计算剩余量的预算
+     */
+    public TokenBudget budget(String sessionId, long maxTokens) {
+        if (sessionId == null || maxTokens <= 0) {
+            return TokenBudget.UNLIMITED;
+        }
+        return () -> {
+            Counters counters = sessions.get(sessionId);
+            return counters == null ? maxTokens : maxTokens - counters.totalTokens();
+        };
+    }
+
+    /**
+     * 会话的累计用量（没有记录时为 null）
+     */
+    public Usage sessionUsage(String sessionId) {
+        Counters counters = sessions.get(sessionId);
+        return counters != null ? counters.snapshot() : null;
+    }
+
+    /**
+     * 按 provider、调用方的累计用量（key 为 "provider/caller"，按 Token 总数降序）
+     */
+    public Map<String, Usage> callerUsage() {
+        Map<String, Usage> result = new LinkedHashMap<>();
+        callers.entrySet().stream()
+            .map(e -> Map.entry(e.getKey().provider() + "/" + e.getKey().caller(), e.getValue().snapshot()))
+            .sorted(Comparator.comparingLong((Map.Entry<String, Usage> e) -> e.getValue().totalTokens()).reversed())
+            .forEach(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    /**
+     * Token 总数最高的会话（按 Token 总数降序）
+     *
+     * @param limit 最多返回的会话数
+     */
+    public Map<String, Usage> topSessions(int limit) {
+        Map<String, Usage> result = new LinkedHashMap<>();
+        sessions.entrySet().stream()
+            .map(e -> Map.entry(e.getKey(), e.getValue().snapshot()))
+            .sorted(Comparator.comparingLong((Map.Entry<String, Usage> e) -> e.getValue().totalTokens()).reversed())
+            .limit(limit)
+            .forEach(e -> result.put(e.getKey(), e.getValue()));
+        return result;
+    }
+
+    /**
+     * 正在统计的会话数
+     */
+    public int sessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * 清理超过保留期没有新调用的会话
+     */
+    @Scheduled(fixedDelayString = "${llm.usage.cleanup-interval-ms:600000}")
+    public void evictIdleSessions() {
+        long expireBefore = System.currentTimeMillis() - sessionRetentionMs;
+        int before = sessions.size();
+        sessions.values().removeIf(counters -> counters.lastUpdated < expireBefore);
+        int evicted = before - sessions.size();
+        if (evicted > 0) {
+            log.debug("Evicted usage of {} idle sessions", evicted);
+        }
+    }
+
+    // ========== 内部数据类 ==========
+
+    /**
+     * 累计用量快照
+     *
+     * @param calls 调用次数
+     * @param promptTokens Prompt Token 数（含缓存命中）
+     * @param cachedPromptTokens 命中服务端上下文缓存的 Prompt Token 数
+     * @param completionTokens 生成的 Token 数
+     * @param cost 按单价估算的费用
+     */
+    public record Usage(long calls, long promptTokens, long cachedPromptTokens, long completionTokens, double cost) {
+
+        /**
+         * prompt + completion
+         */
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    private record CallerKey(String provider, String caller) {}
+
+    /**
+     * 一个维度的累计计数器
+     */
+    private static final class Counters {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder cachedPromptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final DoubleAdder cost = new DoubleAdder();
+        private volatile long lastUpdated = System.currentTimeMillis();
+
+        void add(LLMResponse.TokenUsage usage, double callCost) {
+            calls.increment();
+            promptTokens.add(usage.getPromptTokens());
+            cachedPromptTokens.add(usage.getCachedPromptTokens());
+            completionTokens.add(usage.getCompletionTokens());
+            cost.add(callCost);
+            lastUpdated = System.currentTimeMillis();
+        }
+
+        long totalTokens() {
+            return promptTokens.sum() + completionTokens.sum();
+        }
+
+        Usage snapshot() {
+            return new Usage(calls.sum(), promptTokens.sum(), cachedPromptTokens.sum(), completionTokens.sum(),
+                cost.sum());
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.nanobot.admin.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.nanobot.admin.tool.ObservationReaderTool;
+import com.nanobot.admin.tool.ObservationStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 工具结果（Observation）处理管道 - 控制写入本轮执行记录的工具结果大小
+ *
+ * 工具结果会在本轮后续每一步重复发送给 LLM，因此按以下顺序压缩：
+ * 1. 未超过 max-chars：原样保留
+ * 2. JSON 裁剪：数组只保留前 N 项、长字符串截断、过深的嵌套折叠、去掉 null 字段
+ * 3. 首尾摘录：仍超过 max-chars 时保留开头 70% + 结尾 30%，中间标注省略的字符数
+ * 4. 卸载（可选）：原文超过 offload-threshold 时存入 ObservationStore，在结果后附上句柄，
+ *    LLM 可通过 read_observation 分段读取被省略的部分
+ *
+ * read_observation 的结果本身是已卸载原文的一段，不再裁剪或卸载，只按 max-chars 截断。
+ */
+@Slf4j
+@Component
+public class ObservationProcessor {
+
+    /**
+     * 卸载说明的格式，offloaded() 据此识别本处理器签发的句柄
+     */
+    private static final Pattern OFFLOAD_NOTICE = Pattern.compile(
+        "\\n\\[完整结果共 \\d+ 字符，已保存为 (obs-[0-9a-f]+)，如需查看省略部分请调用 "
+            + ObservationReaderTool.TOOL_NAME + "]$");
+
+    private final ObjectMapper objectMapper;
+    private final ObservationStore observationStore;
+    private final int maxChars;
+    private final boolean jsonPruning;
+    private final int maxArrayItems;
+    private final int maxStringChars;
+    private final int maxDepth;
+    private final boolean offloadEnabled;
+    private final int offloadThreshold;
+
+    public ObservationProcessor(
+        ObjectMapper objectMapper,
+        ObservationStore observationStore,
+        @Value("${agent.observation.max-chars:4000}") int maxChars,
+        @Value("${agent.observation.json-pruning:true}") boolean jsonPruning,
+        @Value("${agent.observation.max-array-items:10}") int maxArrayItems,
+        @Value("${agent.observation.max-string-chars:500}") int maxStringChars,
+        @Value("${agent.observation.max-depth:6}") int maxDepth,
+        @Value("${agent.observation.offload.enabled:true}") boolean offloadEnabled,
+        @Value("${agent.observation.offload.threshold-chars:16000}") int offloadThreshold
+    ) {
+        this.objectMapper = objectMapper;
+        this.observationStore = observationStore;
+        this.maxChars = maxChars;
+        this.jsonPruning = jsonPruning;
+        this.maxArrayItems = maxArrayItems;
+        this.maxStringChars = maxStringChars;
+        this.maxDepth = maxDepth;
+        this.offloadEnabled = offloadEnabled;
+        this.offloadThreshold = offloadThreshold;
+    }
+
+    /**
+     * 处理一条工具结果
+     *
+     * @param toolName 工具名称
+     * @param result 原始结果
+     * @return 写入执行记录的结果
+     */
+    public String process(String toolName, String result) {
+        if (result == null || result.length() <= maxChars) {
+            return result;
+        }
+        if (ObservationReaderTool.TOOL_NAME.equals(toolName)) {
+            return result.substring(0, maxChars) + "\n...[已截断，请减小 length 后分段读取]";
+        }
+
+        // JSON 裁剪后仍超限时再做首尾摘录
+        String compacted = jsonPruning ? pruneJson(result) : result;
+        compacted = excerpt(compacted);
+
+        // 裁剪和摘录都会丢失内容：原文足够大时卸载，让 LLM 可以按需取回
+        String handle = offloadEnabled && result.length() >= offloadThreshold
+            ? observationStore.save(result)
+            : null;
+
+        log.info("Compacted observation of {}: {} -> {} chars{}", toolName, result.length(), compacted.length(),
+            handle != null ? ", offloaded as " + handle : "");
+
+        if (handle == null) {
+            return compacted;
+        }
+        return compacted + "\n[完整结果共 " + result.length() + " 字符，已保存为 " + handle
+            + "，如需查看省略部分请调用 " + ObservationReaderTool.TOOL_NAME + "]";
+    }
+
+    /**
+     * 判断处理后的结果是否带有本处理器签发且仍有效的卸载句柄
+     *
+     * 只看结果末尾的卸载说明并核对 ObservationStore，工具输出中偶然出现 read_observation 字样不算。
+     *
+     * @param observation process() 的返回值
+     * @return 带有可读取的句柄时返回 true
+     */
+    public boolean offloaded(String observation) {
+        if (observation == null) {
+            return false;
+        }
+        Matcher matcher = OFFLOAD_NOTICE.matcher(observation);
+        return matcher.find() && observationStore.get(matcher.group(1)) != null;
+    }
+
+    // ========== 首尾摘录 ==========
+
+    private String excerpt(String text) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int head = maxChars * 7 / 10;
+        int tail = maxChars - head;
+        int omitted = text.length() - head - tail;
+        return text.substring(0, head)
+            + "\n...[省略 " + omitted + " 字符]...\n"
+            + text.substring(text.length() - tail);
+    }
+
+    // ========== JSON 裁剪 ==========
+
+    /**
+     * 裁剪 JSON 结果；不是 JSON 时原样返回
+     */
+    private String pruneJson(String text) {
+        String trimmed = text.trim();
+        if (!(trimmed.startsWith("{") || trimmed.startsWith("["))) {
+            return text;
+        }
+        try {
+            JsonNode root = objectMapper.readTree(trimmed);
+            return objectMapper.writeValueAsString(prune(root, 0));
+        } catch (JsonProcessingException e) {
+            return text;
+        }
+    }
+
+    private JsonNode prune(JsonNode node, int depth) {
+        if (node.isContainerNode() && depth >= maxDepth) {
+            return TextNode.valueOf(node.isArray() ? "[... " + node.size() + " items]" : "{...}");
+        }
+
+        if (node.isObject()) {
+            ObjectNode pruned = objectMapper.createObjectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (!field.getValue().isNull()) {
+                    pruned.set(field.getKey(), prune(field.getValue(), depth + 1));
+                }
+            }
+            return pruned;
+        }
+
+        if (node.isArray()) {
+            ArrayNode pruned = objectMapper.createArrayNode();
+            int kept = Math.min(node.size(), maxArrayItems);
+            for (int i = 0; i < kept; i++) {
+                pruned.add(prune(node.get(i), depth + 1));
+            }
+            if (node.size() > kept) {
+                pruned.add("... (+" + (node.size() - kept) + " more items)");
+            }
+            return pruned;
+        }
+
+        if (node.isTextual() && node.textValue().length() > maxStringChars) {
+            String value = node.textValue();
+            return TextNode.valueOf(value.substring(0, maxStringChars)
+                + "...(+" + (value.length() - maxStringChars) + " chars)");
+        }
+
+        return node;
+    }
+}
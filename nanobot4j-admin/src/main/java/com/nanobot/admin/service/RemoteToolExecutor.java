@@ -2,6 +2,10 @@ package com.nanobot.admin.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nanobot.admin.domain.ServiceInstance;
+import com.nanobot.core.agent.AgentCancelledException;
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.RunContext;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
@@ -14,6 +18,9 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * 远程工具执行器 - 通过 HTTP RPC 调用 Client 端的工具
+ *
+ * 在 Agent 执行上下文中调用时：取消时中止请求；整个调用不超过本轮剩余预算，
+ * 剩余预算通过 X-Nanobot-Timeout-Ms 请求头传给 Client 端。
  */
 @Slf4j
 @Service
@@ -58,6 +65,9 @@ public class RemoteToolExecutor {
         request.setToolName(toolName);
         request.setParams(params);
 
+        CancellationToken cancellation = RunContext.current().getCancellationToken();
+        Deadline deadline = RunContext.current().getDeadline();
+        deadline.throwIfExpired();
         try {
             // 4. 发起 HTTP POST 请求
             String requestBody = objectMapper.writeValueAsString(request);
@@ -66,13 +76,21 @@ public class RemoteToolExecutor {
                     MediaType.parse("application/json; charset=utf-8")
             );
 
-            Request httpRequest = new Request.Builder()
+            // 剩余预算通过请求头传给 Client 端，整个调用（连接 + 读写）也不超过剩余预算
+            Request.Builder requestBuilder = new Request.Builder()
                     .url(url)
-                    .post(body)
-                    .build();
+                    .post(body);
+            if (deadline.isBounded()) {
+                requestBuilder.header(Deadline.HEADER, String.valueOf(deadline.remainingMillis()));
+            }
 
-            // 5. 同步等待响应
-            try (Response response = httpClient.newCall(httpRequest).execute()) {
+            // 5. 同步等待响应（Agent 执行被取消时中止请求）
+            Call call = httpClient.newCall(requestBuilder.build());
+            if (deadline.isBounded()) {
+                call.timeout().timeout(Math.max(1, deadline.remainingMillis()), TimeUnit.MILLISECONDS);
+            }
+            try (CancellationToken.Registration ignored = cancellation.onCancel(call::cancel);
+                 Response response = call.execute()) {
                 if (!response.isSuccessful()) {
                     log.error("Remote tool execution failed with HTTP {}", response.code());
                     return "错误：远程调用失败 (HTTP " + response.code() + ")";
@@ -97,6 +115,10 @@ public class RemoteToolExecutor {
             }
 
         } catch (IOException e) {
+            if (cancellation.isCancelled()) {
+                throw new AgentCancelledException(cancellation.getReason());
+            }
+            deadline.throwIfExpired();
             log.error("Failed to execute remote tool: {}", toolName, e);
             return "错误：远程调用异常 - " + e.getMessage();
         }
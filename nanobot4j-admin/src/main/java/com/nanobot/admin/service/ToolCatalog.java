@@ -0,0 +1,322 @@
+package com.nanobot.admin.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.admin.domain.ServiceInstance;
+import com.nanobot.admin.tool.DynamicToolRegistry;
+import com.nanobot.admin.tool.ObservationReaderTool;
+import com.nanobot.admin.tool.ToolCreatorTool;
+import com.nanobot.core.tool.ToolDefinition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具目录 - 带版本号的可用工具快照
+ *
+ * 核心机制：
+ * 1. 合并内建工具（create_tool、read_observation）+ 动态工具 + 远程工具，按名称排序；同名工具只保留一个，
+ *    与 AgentRunner 的分发优先级一致（内建 > 动态 > 远程），多个实例提供同名远程工具时保留地址最小的一个，
+ *    各副本的描述或参数 Schema 不一致时告警
+ * 2. 以 InstanceRegistry 与 DynamicToolRegistry 的版本号作为缓存键，版本不变时直接复用快照
+ * 3. 快照中预先渲染好 Prompt 片段（文本协议）和原生 function calling 的工具定义（参数 Schema 已解析校验，
+ *    请求体直接使用解析结果；不合法的 Schema 在构建目录时告警并替换为 {"type":"object"}）
+ * 4. 单个工具的渲染结果和工具定义按内容缓存，某个实例上下线时只需处理变化的工具
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ToolCatalog {
+
+    private final InstanceRegistry instanceRegistry;
+    private final DynamicToolRegistry dynamicToolRegistry;
+    private final ToolCreatorTool toolCreatorTool;
+    private final ObservationReaderTool observationReaderTool;
+    private final ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+
+    /** 单个工具的 Prompt 片段缓存（重建快照时清理已下线的工具） */
+    private final Map<ToolEntry, String> fragments = new ConcurrentHashMap<>();
+
+    /** 单个工具的原生工具定义缓存（重建快照时清理已下线的工具） */
+    private final Map<ToolEntry, ToolDefinition> definitions = new ConcurrentHashMap<>();
+
+    /**
+     * 获取当前工具目录快照，注册表未变化时返回缓存实例
+     */
+    public Snapshot current() {
+        long instanceVersion = instanceRegistry.getVersion();
+        long dynamicVersion = dynamicToolRegistry.getVersion();
+
+        Snapshot current = snapshot;
+        if (current != null && current.matches(instanceVersion, dynamicVersion)) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = snapshot;
+            if (current != null && current.matches(instanceVersion, dynamicVersion)) {
+                return current;
+            }
+            // 先读版本再读注册表：构建期间发生的变更会让版本号不匹配，下次调用时重建
+            current = build(instanceVersion, dynamicVersion);
+            snapshot = current;
+            return current;
+        }
+    }
+
+    private Snapshot build(long instanceVersion, long dynamicVersion) {
+        // 按分发优先级加入，同名工具只保留先加入的一个
+        Map<String, ToolEntry> byName = new LinkedHashMap<>();
+
+        // 1. 内建工具（始终注入）
+        for (ToolCreatorTool.ToolMetadata meta : List.of(toolCreatorTool.getMetadata(), observationReaderTool.getMetadata())) {
+            add(byName, new ToolEntry(
+                meta.name,
+                meta.description,
+                meta.parameterSchema,
+                "internal"
+            ));
+        }
+
+        // 2. 已注册的动态工具
+        for (String toolName : dynamicToolRegistry.getAllToolNames()) {
+            var dynamicTool = dynamicToolRegistry.getTool(toolName);
+            if (dynamicTool == null) continue;
+            add(byName, new ToolEntry(
+                toolName,
+                dynamicTool.getDescription(),
+                "{}",
+                "dynamic"
+            ));
+        }
+
+        // 3. 远程工具（已注册的 SSE 实例，按地址排序，同名时保留地址最小的实例）
+        List<ToolEntry> remote = new ArrayList<>();
+        for (ServiceInstance instance : instanceRegistry.getOnlineInstances()) {
+            if (instance.getTools() == null) continue;
+            for (ServiceInstance.ToolInfo info : instance.getTools()) {
+                remote.add(new ToolEntry(
+                    info.getName(),
+                    info.getDescription(),
+                    info.getParameterSchema(),
+                    instance.getAddress()
+                ));
+            }
+        }
+        remote.sort(Comparator.comparing(ToolEntry::instanceAddress, Comparator.nullsFirst(Comparator.naturalOrder())));
+        for (ToolEntry tool : remote) {
+            add(byName, tool);
+        }
+
+        List<ToolEntry> tools = new ArrayList<>(byName.values());
+        tools.sort(Comparator.comparing(ToolEntry::name));
+
+        String promptFragment = renderFragment(tools);
+        fragments.keySet().retainAll(tools);
+        definitions.keySet().retainAll(tools);
+
+        log.info("Tool catalog rebuilt (instances v{}, dynamic v{}): {} tools, {} chars",
+            instanceVersion, dynamicVersion, tools.size(), promptFragment.length());
+        return new Snapshot(instanceVersion, dynamicVersion, List.copyOf(tools), promptFragment, definitionsOf(tools));
+    }
+
+    /**
+     * 加入一个工具；同名工具已存在时丢弃，描述或参数 Schema 与已有的不一致时告警
+     */
+    private static void add(Map<String, ToolEntry> byName, ToolEntry tool) {
+        ToolEntry existing = byName.putIfAbsent(tool.name(), tool);
+        if (existing == null) {
+            return;
+        }
+        if (!Objects.equals(existing.description(), tool.description())
+                || !Objects.equals(existing.parameterSchema(), tool.parameterSchema())) {
+            log.warn("Tool {} from {} differs from the one from {} in description or parameter schema, using the latter",
+                tool.name(), tool.instanceAddress(), existing.instanceAddress());
+        }
+    }
+
+    /**
+     * 用目录中的一部分工具组成工具集（如 ToolSelector 的检索结果），复用单个工具的渲染缓存
+     *
+     * @param tools 工具列表（保持传入顺序）
+     * @return 工具集
+     */
+    public ToolSet subset(List<ToolEntry> tools) {
+        return new ToolSet(List.copyOf(tools), renderFragment(tools), definitionsOf(tools));
+    }
+
+    private List<ToolDefinition> definitionsOf(List<ToolEntry> tools) {
+        List<ToolDefinition> result = new ArrayList<>(tools.size());
+        for (ToolEntry tool : tools) {
+            result.add(definitions.computeIfAbsent(tool, this::define));
+        }
+        return List.copyOf(result);
+    }
+
+    private String renderFragment(List<ToolEntry> tools) {
+        StringBuilder sb = new StringBuilder("# 可用工具\n");
+        for (ToolEntry tool : tools) {
+            sb.append(fragments.computeIfAbsent(tool, ToolCatalog::render));
+        }
+        sb.append("\n");
+        return sb.toString();
+    }
+
+    private static String render(ToolEntry tool) {
+        return "- **" + tool.name() + "**：" + tool.description() + "\n"
+            + "  参数格式：" + tool.parameterSchema() + "\n";
+    }
+
+    /**
+     * 原生 function calling 的工具定义：参数 Schema 不是合法的 JSON 对象时使用 {"type":"object"}
+     */
+    private ToolDefinition define(ToolEntry tool) {
+        JsonNode parameters = parseSchema(tool);
+        try {
+            return new CatalogToolDefinition(tool.name(), tool.description(),
+                objectMapper.writeValueAsString(parameters), parameters);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode parameter schema of " + tool.name(), e);
+        }
+    }
+
+    private JsonNode parseSchema(ToolEntry tool) {
+        String schema = tool.parameterSchema();
+        if (schema == null || schema.isBlank() || "{}".equals(schema.trim())) {
+            // 无参数的工具（动态工具）
+            return objectMapper.createObjectNode().put("type", "object");
+        }
+        try {
+            JsonNode node = objectMapper.readTree(schema);
+            if (node != null && node.isObject() && !node.isEmpty()) {
+                return node;
+            }
+            log.warn("Parameter schema of tool {} ({}) is not a JSON object, using {\"type\":\"object\"}: {}",
+                tool.name(), tool.instanceAddress(), schema);
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid parameter schema of tool {} ({}), using {\"type\":\"object\"}: {}",
+                tool.name(), tool.instanceAddress(), e.getOriginalMessage());
+        }
+        return objectMapper.createObjectNode().put("type", "object");
+    }
+
+    // ========== 内部数据类 ==========
+
+    /**
+     * 目录生成的工具定义：携带已解析的参数 Schema，LLMService 构建请求体时不再重复解析
+     */
+    static final class CatalogToolDefinition extends ToolDefinition {
+
+        private final JsonNode parameters;
+
+        private CatalogToolDefinition(String name, String description, String parameterSchema, JsonNode parameters) {
+            super(name, description, parameterSchema, null);
+            this.parameters = parameters;
+        }
+
+        /**
+         * 已解析的参数 Schema（只读）
+         */
+        JsonNode getParameters() {
+            return parameters;
+        }
+    }
+
+    /**
+     * 目录中的单个工具
+     *
+     * @param name 工具名称
+     * @param description 工具描述
+     * @param parameterSchema 参数 JSON Schema
+     * @param instanceAddress 所在实例地址（内建工具为 "internal"，动态工具为 "dynamic"）
+     */
+    public record ToolEntry(String name, String description, String parameterSchema, String instanceAddress) {}
+
+    /**
+     * 注入 Prompt 的一组工具
+     *
+     * @param tools 工具列表
+     * @param promptFragment 预渲染的 System Prompt 工具片段（含 "# 可用工具" 标题）
+     * @param definitions 原生 function calling 的工具定义（与 tools 顺序一致）
+     */
+    public record ToolSet(List<ToolEntry> tools, String promptFragment, List<ToolDefinition> definitions) {
+
+        /**
+         * 工具名称列表（与 tools 顺序一致）
+         */
+        public List<String> toolNames() {
+            return tools.stream().map(ToolEntry::name).toList();
+        }
+    }
+
+    /**
+     * 不可变的工具目录快照
+     */
+    public final class Snapshot {
+
+        private final long instanceVersion;
+        private final long dynamicVersion;
+        private final List<ToolEntry> tools;
+        private final String promptFragment;
+        private final ToolSet toolSet;
+
+        private Snapshot(long instanceVersion, long dynamicVersion, List<ToolEntry> tools, String promptFragment,
+                         List<ToolDefinition> definitions) {
+            this.instanceVersion = instanceVersion;
+            this.dynamicVersion = dynamicVersion;
+            this.tools = tools;
+            this.promptFragment = promptFragment;
+            this.toolSet = new ToolSet(tools, promptFragment, definitions);
+        }
+
+        private boolean matches(long instanceVersion, long dynamicVersion) {
+            return this.instanceVersion == instanceVersion && this.dynamicVersion == dynamicVersion;
+        }
+
+        /**
+         * 按名称排序的工具列表（名称唯一）
+         */
+        public List<ToolEntry> getTools() {
+            return tools;
+        }
+
+        /**
+         * 工具名称列表（与 getTools 顺序一致）
+         */
+        public List<String> getToolNames() {
+            return tools.stream().map(ToolEntry::name).toList();
+        }
+
+        /**
+         * 预渲染的 System Prompt 工具片段（含 "# 可用工具" 标题）
+         */
+        public String getPromptFragment() {
+            return promptFragment;
+        }
+
+        /**
+         * 包含全部工具的工具集
+         */
+        public ToolSet getToolSet() {
+            return toolSet;
+        }
+
+        /**
+         * 快照版本（两个注册表版本号组合），用于日志与比较
+         */
+        public String getVersion() {
+            return instanceVersion + "." + dynamicVersion;
+        }
+    }
+}
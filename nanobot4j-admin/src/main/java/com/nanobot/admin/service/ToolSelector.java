@@ -0,0 +1,260 @@
+package com.nanobot.admin.service;
+
+import com.nanobot.admin.memory.EmbeddingFunction;
+import com.nanobot.admin.memory.HashingEmbeddingFunction;
+import com.nanobot.admin.tool.ToolCreatorTool;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工具检索器 - 按用户问题从工具目录中挑选最相关的工具注入 Prompt
+ *
+ * 核心机制：
+ * 1. BM25：对工具名称（按下划线/驼峰拆词，权重 ×2）和描述建立倒排索引，每个目录快照只建一次；
+ *    目录中的工具名称唯一（多个实例提供的同名工具只保留一个，见 ToolCatalog），
+ *    每个名称只对应一篇文档，副本数不会影响文档频率，也不会在 top-k 中占多个名额
+ * 2. 向量打分（可选）：容器中存在 EmbeddingFunction Bean 时，与 BM25 归一化得分加权融合
+ * 3. 结果：得分最高的 top-k 个工具 + create_tool + 本轮已使用/创建的工具
+ * 4. 兜底：工具数不超过 min-catalog-size，或没有任何工具命中时，注入全部工具
+ */
+@Slf4j
+@Component
+public class ToolSelector {
+
+    /** BM25 参数 */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ToolCatalog toolCatalog;
+    private final EmbeddingFunction embeddingFunction;
+    private final boolean enabled;
+    private final int topK;
+    private final int minCatalogSize;
+    private final double embeddingWeight;
+    private final double minEmbeddingScore;
+
+    /** 当前快照的索引（快照变化时重建） */
+    private volatile Bm25Index index;
+
+    /** 工具描述向量缓存（跨快照复用，重建索引时清理已下线的工具） */
+    private final Map<ToolCatalog.ToolEntry, float[]> vectors = new ConcurrentHashMap<>();
+
+    public ToolSelector(
+        ToolCatalog toolCatalog,
+        ObjectProvider<EmbeddingFunction> embeddingFunction,
+        @Value("${agent.tool-selection.enabled:true}") boolean enabled,
+        @Value("${agent.tool-selection.top-k:8}") int topK,
+        @Value("${agent.tool-selection.min-catalog-size:20}") int minCatalogSize,
+        @Value("${agent.tool-selection.embedding-weight:0.5}") double embeddingWeight,
+        @Value("${agent.tool-selection.min-embedding-score:0.3}") double minEmbeddingScore
+    ) {
+        this.toolCatalog = toolCatalog;
+        this.embeddingFunction = embeddingFunction.getIfAvailable();
+        this.enabled = enabled;
+        this.topK = topK;
+        this.minCatalogSize = minCatalogSize;
+        this.embeddingWeight = embeddingWeight;
+        this.minEmbeddingScore = minEmbeddingScore;
+    }
+
+    /**
+     * 为当前问题选择工具
+     *
+     * @param snapshot 工具目录快照
+     * @param query 用户问题
+     * @param pinned 必须保留的工具名称（如本轮已调用或刚创建的工具）
+     * @return 注入 Prompt 的工具集（保持目录中的排序）
+     */
+    public ToolCatalog.ToolSet select(ToolCatalog.Snapshot snapshot, String query, Collection<String> pinned) {
+        List<ToolCatalog.ToolEntry> tools = snapshot.getTools();
+        if (!enabled || tools.size() <= Math.max(minCatalogSize, topK + 1)) {
+            return snapshot.getToolSet();
+        }
+
+        double[] scores = score(indexFor(snapshot), query);
+
+        // 取得分最高的 top-k 个工具名称（得分为 0 的不算命中）
+        boolean[] selected = new boolean[tools.size()];
+        int hits = 0;
+        for (int k = 0; k < topK; k++) {
+            int best = -1;
+            for (int i = 0; i < scores.length; i++) {
+                if (!selected[i] && scores[i] > 0 && (best < 0 || scores[i] > scores[best])) {
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            selected[best] = true;
+            hits++;
+        }
+
+        if (hits == 0) {
+            log.debug("No tool matched query, falling back to full catalog ({} tools)", tools.size());
+            return snapshot.getToolSet();
+        }
+
+        List<ToolCatalog.ToolEntry> result = new ArrayList<>();
+        for (int i = 0; i < tools.size(); i++) {
+            ToolCatalog.ToolEntry tool = tools.get(i);
+            if (selected[i] || ToolCreatorTool.TOOL_NAME.equals(tool.name()) || pinned.contains(tool.name())) {
+                result.add(tool);
+            }
+        }
+
+        log.debug("Selected {} of {} tools: {}", result.size(), tools.size(),
+            result.stream().map(ToolCatalog.ToolEntry::name).toList());
+        return toolCatalog.subset(result);
+    }
+
+    // ========== 打分 ==========
+
+    private double[] score(Bm25Index index, String query) {
+        double[] bm25 = index.score(tokenize(query));
+        if (embeddingFunction == null) {
+            return bm25;
+        }
+
+        double maxBm25 = 0;
+        for (double s : bm25) {
+            maxBm25 = Math.max(maxBm25, s);
+        }
+
+        // 融合：BM25 按本次查询的最高分归一化，余弦相似度低于阈值的视为不相关
+        float[] queryVector = embeddingFunction.embed(query);
+        double[] scores = new double[bm25.length];
+        for (int i = 0; i < scores.length; i++) {
+            double lexical = maxBm25 > 0 ? bm25[i] / maxBm25 : 0;
+            double semantic = cosine(queryVector, index.vectors[i]);
+            semantic = semantic >= minEmbeddingScore ? semantic : 0;
+            scores[i] = (1 - embeddingWeight) * lexical + embeddingWeight * semantic;
+        }
+        return scores;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0 || normB == 0 ? 0 : dot / Math.sqrt(normA * normB);
+    }
+
+    // ========== 索引 ==========
+
+    private Bm25Index indexFor(ToolCatalog.Snapshot snapshot) {
+        Bm25Index current = index;
+        if (current != null && current.snapshot == snapshot) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = index;
+            if (current == null || current.snapshot != snapshot) {
+                current = new Bm25Index(snapshot);
+                index = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 工具文档分词：名称按下划线/驼峰拆开并重复一次（提高名称权重），再加上描述
+     */
+    private static List<String> document(ToolCatalog.ToolEntry tool) {
+        String name = tool.name().replaceAll("([a-z0-9])([A-Z])", "$1 $2");
+        List<String> nameTokens = tokenize(name);
+        List<String> tokens = new ArrayList<>(nameTokens);
+        tokens.addAll(nameTokens);
+        tokens.addAll(tokenize(tool.description()));
+        return tokens;
+    }
+
+    private static List<String> tokenize(String text) {
+        return HashingEmbeddingFunction.tokenize(text);
+    }
+
+    /**
+     * 某个目录快照上的 BM25 倒排索引
+     */
+    private final class Bm25Index {
+
+        private final ToolCatalog.Snapshot snapshot;
+        private final Map<String, List<int[]>> postings = new HashMap<>();
+        private final int[] lengths;
+        private final double averageLength;
+        private final float[][] vectors;
+
+        Bm25Index(ToolCatalog.Snapshot snapshot) {
+            this.snapshot = snapshot;
+            List<ToolCatalog.ToolEntry> tools = snapshot.getTools();
+            this.lengths = new int[tools.size()];
+
+            long totalLength = 0;
+            for (int doc = 0; doc < tools.size(); doc++) {
+                Map<String, Integer> termFrequencies = new HashMap<>();
+                List<String> tokens = document(tools.get(doc));
+                for (String token : tokens) {
+                    termFrequencies.merge(token, 1, Integer::sum);
+                }
+                for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                    postings.computeIfAbsent(entry.getKey(), k -> new ArrayList<>())
+                        .add(new int[]{doc, entry.getValue()});
+                }
+                lengths[doc] = tokens.size();
+                totalLength += tokens.size();
+            }
+            this.averageLength = tools.isEmpty() ? 0 : (double) totalLength / tools.size();
+
+            if (embeddingFunction != null) {
+                ToolSelector.this.vectors.keySet().retainAll(tools);
+                this.vectors = new float[tools.size()][];
+                for (int doc = 0; doc < tools.size(); doc++) {
+                    ToolCatalog.ToolEntry tool = tools.get(doc);
+                    this.vectors[doc] = ToolSelector.this.vectors.computeIfAbsent(tool,
+                        t -> embeddingFunction.embed(t.name() + " " + t.description()));
+                }
+            } else {
+                this.vectors = null;
+            }
+
+            log.debug("Built tool index over {} tools ({} terms)", tools.size(), postings.size());
+        }
+
+        double[] score(List<String> queryTokens) {
+            double[] scores = new double[lengths.length];
+            for (String token : queryTokens) {
+                List<int[]> docs = postings.get(token);
+                if (docs == null) {
+                    continue;
+                }
+                // 经典 Robertson IDF：出现在一半以上工具中的词（如 the、获取）不参与打分
+                double idf = Math.log((lengths.length - docs.size() + 0.5) / (docs.size() + 0.5));
+                if (idf <= 0) {
+                    continue;
+                }
+                for (int[] posting : docs) {
+                    int doc = posting[0];
+                    int tf = posting[1];
+                    double norm = tf + K1 * (1 - B + B * lengths[doc] / averageLength);
+                    scores[doc] += idf * tf * (K1 + 1) / norm;
+                }
+            }
+            return scores;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.nanobot.admin.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 流式执行注册表 - 管理本节点上正在执行的 LiveRun，供断线重连查找
+ */
+@Slf4j
+@Component
+public class AgentRunRegistry {
+
+    private final RunEventLog eventLog;
+    private final ObjectMapper objectMapper;
+    private final LiveRun.Options options;
+    private final Map<String, LiveRun> runs = new ConcurrentHashMap<>();
+
+    /** 断线宽限与发送间隔计时器 */
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "agent-run-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** 发送线程（每个 Run 同一时间最多占用一个发送任务和一个事件日志写入任务，慢客户端只阻塞自己的发送） */
+    private final ExecutorService flushExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "agent-sse-flush-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    public AgentRunRegistry(
+        RunEventLog eventLog,
+        ObjectMapper objectMapper,
+        @Value("${agent.stream.resume-grace-ms:30000}") long resumeGraceMs,
+        @Value("${agent.stream.outbound.flush-interval-ms:50}") long flushIntervalMs,
+        @Value("${agent.stream.outbound.max-pending:200}") int maxPending,
+        @Value("${agent.stream.outbound.slow-client-policy:merge-thinking}") LiveRun.SlowClientPolicy slowClientPolicy,
+        @Value("${agent.stream.outbound.coalesce-thinking:true}") boolean coalesceThinking,
+        @Value("${agent.stream.replay.capacity:1000}") int replayCapacity
+    ) {
+        this.eventLog = eventLog;
+        this.objectMapper = objectMapper;
+        this.options = new LiveRun.Options(resumeGraceMs, flushIntervalMs, maxPending, slowClientPolicy, coalesceThinking,
+            replayCapacity);
+    }
+
+    /**
+     * 登记一轮新的执行
+     *
+     * @param sessionId 会话 ID
+     * @return 执行（结束时调用 finish 自动注销）
+     */
+    public LiveRun start(String sessionId) {
+        String runId = UUID.randomUUID().toString().replace("-", "");
+        LiveRun run = new LiveRun(runId, sessionId, eventLog, new SseEventWriter(objectMapper.getFactory()),
+            timer, flushExecutor, options, () -> runs.remove(runId));
+        runs.put(runId, run);
+        return run;
+    }
+
+    /**
+     * 查找本节点上正在执行的 Run
+     *
+     * @param runId 执行 ID
+     * @return 执行（不存在或已结束时为 null）
+     */
+    public LiveRun get(String runId) {
+        return runs.get(runId);
+    }
+
+    /**
+     * 事件日志（重放已结束或其他节点上的执行）
+     */
+    public RunEventLog getEventLog() {
+        return eventLog;
+    }
+
+    /**
+     * 正在执行的 Run 数
+     */
+    public int liveCount() {
+        return runs.size();
+    }
+
+    /**
+     * 有客户端连接的 Run 数
+     */
+    public int attachedCount() {
+        return (int) runs.values().stream().filter(LiveRun::isAttached).count();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        flushExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,543 @@
+package com.nanobot.admin.stream;
+
+import com.nanobot.core.agent.AgentEventSink;
+import com.nanobot.core.agent.AgentStreamEvent;
+import com.nanobot.core.agent.CancellationToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 正在执行的一轮流式 Agent - 与 SSE 连接解耦
+ *
+ * 1. 每个事件分配单调递增的 ID，放入发送队列（如有连接）和事件日志队列；
+ *    事件日志由发送线程批量写入，Agent 线程不等待 RunEventLog（Redis）的读写，写入失败也不影响执行
+ * 2. 连接断开后执行继续进行；客户端带 Last-Event-ID 重连时先重放缺失的事件，再接收后续事件
+ * 3. 断开后 resume-grace 时间内没有重连则取消执行，避免无人接收的执行继续消耗 LLM 调用；
+ *    客户端重连到其他节点、通过共享事件日志跟随时（RunEventLog.isFollowed），执行继续
+ * 4. 事件由 SseEventWriter 编码一次，同一份 SSE 帧既写入事件日志，也推送给连接
+ * 5. 发送与 Agent 线程解耦：队列每 flush-interval 由发送线程合并为一次写出；
+ *    连续的 THINKING 事件在分配 ID 前合并为一个；客户端跟不上（队列超过 max-pending）时
+ *    按 slow-client-policy 把排队中的连续 THINKING 事件合并为一个，或暂停 Agent 线程直到队列排空
+ */
+@Slf4j
+public final class LiveRun implements AgentEventSink {
+
+    /**
+     * 客户端跟不上时的处理策略
+     */
+    public enum SlowClientPolicy {
+        /**
+         * 把排队中的连续 THINKING 事件合并为一个（内容不丢失，使用最后一个事件的 ID，
+         * 事件日志中仍是合并前的事件）
+         */
+        MERGE_THINKING,
+        /** 暂停 Agent 线程，直到队列排空、连接断开或执行被取消 */
+        PAUSE
+    }
+
+    /**
+     * 发送参数
+     *
+     * @param resumeGraceMs 断线后等待重连的时间
+     * @param flushIntervalMs 发送队列的合并写出间隔
+     * @param maxPending 发送队列上限（事件数），超过后按 slowClientPolicy 处理
+     * @param slowClientPolicy 客户端跟不上时的处理策略
+     * @param coalesceThinking 是否合并连续的 THINKING 事件
+     * @param logBacklog 尚未写入事件日志的事件上限（与事件日志容量相同，更早的事件写入后也会被裁掉）
+     */
+    record Options(long resumeGraceMs, long flushIntervalMs, int maxPending,
+                   SlowClientPolicy slowClientPolicy, boolean coalesceThinking, int logBacklog) {}
+
+    private final String runId;
+    private final String sessionId;
+    private final CancellationToken cancellation = new CancellationToken();
+    private final RunEventLog eventLog;
+    private final SseEventWriter writer;
+    private final ScheduledExecutorService timer;
+    private final Executor flushExecutor;
+    private final Options options;
+    private final Runnable onFinished;
+
+    private long lastEventId;
+    private String lastEventType;
+    private ResponseBodyEmitter emitter;
+    private ScheduledFuture<?> graceTimer;
+    private boolean finished;
+
+    /** 尚未分配 ID 的 THINKING 事件（等待与后续 THINKING 合并） */
+    private AgentStreamEvent pendingThinking;
+    /** 等待发送给当前连接的事件 */
+    private final ArrayDeque<Outbound> outbound = new ArrayDeque<>();
+    private boolean flushScheduled;
+    private boolean flushing;
+    /** 客户端跟不上时合并掉的 THINKING 事件数（本次写出 / 本轮执行累计） */
+    private int mergedSinceFlush;
+    private long mergedEvents;
+    /** 正在从事件日志读取重放事件（读取期间不写出，避免新事件先于重放事件到达） */
+    private boolean replaying;
+
+    /** 已分配 ID、尚未写入事件日志的事件 */
+    private final ArrayDeque<RunEventLog.StoredEvent> unlogged = new ArrayDeque<>();
+    /** 正在写入事件日志的批次（写入期间重连时从这里补齐） */
+    private List<RunEventLog.StoredEvent> logging = List.of();
+    private boolean logScheduled;
+    private boolean logCompleted;
+    private long unloggedEvents;
+
+    LiveRun(String runId, String sessionId, RunEventLog eventLog, SseEventWriter writer,
+            ScheduledExecutorService timer, Executor flushExecutor, Options options, Runnable onFinished) {
+        this.runId = runId;
+        this.sessionId = sessionId;
+        this.eventLog = eventLog;
+        this.writer = writer;
+        this.timer = timer;
+        this.flushExecutor = flushExecutor;
+        this.options = options;
+        this.onFinished = onFinished;
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public CancellationToken getCancellation() {
+        return cancellation;
+    }
+
+    /**
+     * 是否有客户端连接
+     */
+    public synchronized boolean isAttached() {
+        return emitter != null;
+    }
+
+    @Override
+    public synchronized void emit(AgentStreamEvent event) {
+        if (finished) {
+            return;
+        }
+
+        if (options.coalesceThinking() && event.type() == AgentStreamEvent.EventType.THINKING) {
+            pendingThinking = pendingThinking == null ? event : merge(pendingThinking, event);
+        } else {
+            commitPendingThinking();
+            commit(event);
+        }
+        if (emitter == null) {
+            // 无连接：事件只写入日志，重连时从日志重放
+            return;
+        }
+        scheduleFlush(options.flushIntervalMs());
+        if (outbound.size() > options.maxPending()) {
+            onSlowClient();
+        }
+    }
+
+    /**
+     * 连接（或重连）客户端：先重放 lastEventId 之后的事件，再接收后续事件；已有连接会被替换
+     *
+     * @param newEmitter SSE 连接
+     * @param lastEventId 客户端最后收到的事件 ID（新执行为 0）
+     */
+    public void attach(ResponseBodyEmitter newEmitter, long lastEventId) {
+        long upTo;
+        synchronized (this) {
+            if (emitter != null && emitter != newEmitter) {
+                completeQuietly(emitter);
+            }
+            cancelGraceTimer();
+            commitPendingThinking();
+            // 此后的新事件直接进入发送队列，重放范围为 (lastEventId, upTo]
+            upTo = this.lastEventId;
+            outbound.clear();
+            emitter = newEmitter;
+            replaying = true;
+            notifyAll();
+        }
+
+        // 事件日志可能在 Redis：读取期间不持有锁，Agent 线程继续入队
+        List<RunEventLog.StoredEvent> logged;
+        try {
+            logged = eventLog.readAfter(runId, lastEventId);
+        } catch (RuntimeException e) {
+            log.warn("[SSE] run {} failed to read event log, replaying unwritten events only: {}", runId, e.getMessage());
+            logged = List.of();
+        }
+
+        synchronized (this) {
+            if (emitter != newEmitter) {
+                // 读取期间连接已被替换或断开
+                return;
+            }
+            // 还没写入事件日志的事件从本地队列补齐
+            TreeMap<Long, RunEventLog.StoredEvent> missed = new TreeMap<>();
+            addReplay(missed, logged, lastEventId, upTo);
+            addReplay(missed, logging, lastEventId, upTo);
+            addReplay(missed, unlogged, lastEventId, upTo);
+            if (!missed.isEmpty() && missed.firstKey() > lastEventId + 1) {
+                log.warn("[SSE] run {} replay gap: client at {}, oldest buffered {}", runId, lastEventId, missed.firstKey());
+            }
+            List<RunEventLog.StoredEvent> replay = new ArrayList<>(missed.values());
+            for (int i = replay.size() - 1; i >= 0; i--) {
+                outbound.addFirst(new Outbound(replay.get(i), null));
+            }
+            replaying = false;
+            scheduleFlush(0);
+            notifyAll();
+            log.info("[SSE] client attached to run {} after event {} (replaying {})", runId, lastEventId, replay.size());
+        }
+    }
+
+    private static void addReplay(TreeMap<Long, RunEventLog.StoredEvent> missed,
+                                  Iterable<RunEventLog.StoredEvent> events, long after, long upTo) {
+        for (RunEventLog.StoredEvent event : events) {
+            if (event.id() > after && event.id() <= upTo) {
+                missed.putIfAbsent(event.id(), event);
+            }
+        }
+    }
+
+    /**
+     * 连接断开（SSE 完成、超时或出错回调）
+     *
+     * @param closed 断开的连接（不是当前连接时忽略）
+     */
+    public synchronized void detach(ResponseBodyEmitter closed) {
+        if (emitter == closed) {
+            detachLocked();
+        }
+    }
+
+    /**
+     * 执行结束：补发 DONE（如尚未发送），发送队列写完后结束当前连接；
+     * 事件全部写入事件日志后才从注册表注销，注销后的重连可以从事件日志完整重放
+     */
+    public synchronized void finish() {
+        if (finished) {
+            return;
+        }
+        commitPendingThinking();
+        if (!"DONE".equals(lastEventType)) {
+            commit(AgentStreamEvent.done());
+        }
+        finished = true;
+        cancelGraceTimer();
+        if (mergedEvents > 0) {
+            log.info("[SSE] run {} merged {} thinking events in total for a slow client", runId, mergedEvents);
+        }
+        scheduleLogWrite();
+        scheduleFlush(0);
+        notifyAll();
+    }
+
+    // ========== 事件入队 ==========
+
+    /**
+     * 分配 ID、编码并放入事件日志队列；有连接时放入发送队列
+     */
+    private void commit(AgentStreamEvent event) {
+        long id = ++lastEventId;
+        RunEventLog.StoredEvent stored = new RunEventLog.StoredEvent(id, event.type().name(), writer.encode(id, event));
+        lastEventType = stored.type();
+        unlogged.addLast(stored);
+        if (unlogged.size() > options.logBacklog()) {
+            // 事件日志长时间不可用：超过容量的事件写入后也会被裁掉，直接丢弃
+            unlogged.pollFirst();
+            unloggedEvents++;
+        }
+        scheduleLogWrite();
+        if (emitter != null) {
+            outbound.addLast(new Outbound(stored, event));
+        }
+    }
+
+    private void commitPendingThinking() {
+        if (pendingThinking != null) {
+            AgentStreamEvent thinking = pendingThinking;
+            pendingThinking = null;
+            commit(thinking);
+        }
+    }
+
+    private static AgentStreamEvent merge(AgentStreamEvent first, AgentStreamEvent next) {
+        return AgentStreamEvent.builder()
+            .type(AgentStreamEvent.EventType.THINKING)
+            .content(first.content() + "\n" + next.content())
+            .timestamp(first.timestamp())
+            .build();
+    }
+
+    /**
+     * 发送队列超过上限：合并排队中的连续 THINKING 事件，或等待发送线程追上
+     */
+    private void onSlowClient() {
+        if (options.slowClientPolicy() == SlowClientPolicy.MERGE_THINKING) {
+            mergeQueuedThinking();
+            return;
+        }
+
+        long waitMs = Math.max(10, Math.min(options.flushIntervalMs(), 100));
+        while (emitter != null && outbound.size() > options.maxPending() && !cancellation.isCancelled()) {
+            try {
+                wait(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把发送队列中相邻的 THINKING 事件合并为一个，使用最后一个事件的 ID 重新编码；
+     * 客户端的 Last-Event-ID 因此仍然连续，重连时不会重复或遗漏
+     */
+    private void mergeQueuedThinking() {
+        ArrayDeque<Outbound> merged = new ArrayDeque<>(outbound.size());
+        Outbound current = null;
+        int count = 0;
+        for (Outbound next : outbound) {
+            if (current != null && current.isThinking() && next.isThinking()) {
+                AgentStreamEvent event = merge(current.event(), next.event());
+                long id = next.stored().id();
+                current = new Outbound(new RunEventLog.StoredEvent(id, next.stored().type(), writer.encode(id, event)), event);
+                count++;
+                continue;
+            }
+            if (current != null) {
+                merged.addLast(current);
+            }
+            current = next;
+        }
+        if (current != null) {
+            merged.addLast(current);
+        }
+        if (count > 0) {
+            outbound.clear();
+            outbound.addAll(merged);
+            mergedSinceFlush += count;
+            mergedEvents += count;
+        }
+    }
+
+    /**
+     * 发送队列中的事件（从事件日志补齐的重放事件没有原始事件，不参与合并）
+     */
+    private record Outbound(RunEventLog.StoredEvent stored, AgentStreamEvent event) {
+
+        boolean isThinking() {
+            return event != null && event.type() == AgentStreamEvent.EventType.THINKING;
+        }
+    }
+
+    // ========== 事件日志 ==========
+
+    private void scheduleLogWrite() {
+        if (logScheduled || logCompleted) {
+            return;
+        }
+        logScheduled = true;
+        flushExecutor.execute(this::writeLog);
+    }
+
+    /**
+     * 把事件日志队列批量写入 RunEventLog（在发送线程执行，写入期间不持有锁）
+     *
+     * 事件日志只用于重连重放，写入失败时记录日志并丢弃该批事件，不影响执行和当前连接。
+     */
+    private void writeLog() {
+        while (true) {
+            List<RunEventLog.StoredEvent> batch;
+            synchronized (this) {
+                if (unlogged.isEmpty()) {
+                    logging = List.of();
+                    logScheduled = false;
+                    if (!finished || logCompleted) {
+                        return;
+                    }
+                    logCompleted = true;
+                    break;
+                }
+                batch = new ArrayList<>(unlogged);
+                unlogged.clear();
+                logging = batch;
+            }
+
+            try {
+                eventLog.appendAll(runId, batch);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    unloggedEvents += batch.size();
+                }
+                log.warn("[SSE] run {} failed to write {} events to the event log: {}", runId, batch.size(), e.getMessage());
+            }
+        }
+
+        // 执行已结束且事件全部写入：设置保留时间并注销
+        try {
+            eventLog.complete(runId);
+        } catch (RuntimeException e) {
+            log.warn("[SSE] run {} failed to complete the event log: {}", runId, e.getMessage());
+        }
+        if (unloggedEvents > 0) {
+            log.warn("[SSE] run {} could not write {} events to the event log, replay of them is unavailable",
+                runId, unloggedEvents);
+        }
+        onFinished.run();
+    }
+
+    // ========== 发送 ==========
+
+    private void scheduleFlush(long delayMs) {
+        if (flushScheduled || flushing) {
+            // 正在写出的批次结束后会重新检查队列
+            return;
+        }
+        flushScheduled = true;
+        timer.schedule(() -> flushExecutor.execute(this::flush), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 把发送队列合并为一次写出（在发送线程执行，写出期间不持有锁，Agent 线程可以继续入队）
+     */
+    private void flush() {
+        ResponseBodyEmitter target;
+        byte[] batch;
+        synchronized (this) {
+            flushScheduled = false;
+            commitPendingThinking();
+            if (emitter == null || replaying) {
+                // 重放读取完成后会重新调度
+                return;
+            }
+            if (outbound.isEmpty()) {
+                completeIfDone();
+                return;
+            }
+            target = emitter;
+            List<RunEventLog.StoredEvent> events = new ArrayList<>(outbound.size());
+            for (Outbound pending : outbound) {
+                events.add(pending.stored());
+            }
+            batch = SseEventWriter.join(events);
+            outbound.clear();
+            if (mergedSinceFlush > 0) {
+                log.info("[SSE] run {} is behind, merged {} queued thinking events into this flush", runId, mergedSinceFlush);
+                mergedSinceFlush = 0;
+            }
+            flushing = true;
+            notifyAll();
+        }
+
+        boolean sent = send(target, batch);
+
+        synchronized (this) {
+            flushing = false;
+            if (!sent && emitter == target) {
+                log.info("[SSE] client of run {} gone at event {}, waiting {} ms for resume",
+                    runId, lastEventId, options.resumeGraceMs());
+                detachLocked();
+            } else if (!outbound.isEmpty() || pendingThinking != null) {
+                // 写出期间又有新事件：客户端已落后一个间隔，立即继续
+                scheduleFlush(0);
+            } else {
+                completeIfDone();
+            }
+            notifyAll();
+        }
+    }
+
+    private void completeIfDone() {
+        if (finished && emitter != null) {
+            completeQuietly(emitter);
+            emitter = null;
+        }
+    }
+
+    private void detachLocked() {
+        emitter = null;
+        replaying = false;
+        outbound.clear();
+        notifyAll();
+        if (finished || graceTimer != null) {
+            return;
+        }
+        scheduleGraceTimer();
+    }
+
+    private void scheduleGraceTimer() {
+        graceTimer = timer.schedule(() -> flushExecutor.execute(this::onGraceExpired),
+            options.resumeGraceMs(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 断线宽限到期：客户端重连到其他节点、从共享事件日志跟随时不取消，稍后再检查
+     */
+    private void onGraceExpired() {
+        synchronized (this) {
+            graceTimer = null;
+            if (emitter != null || finished) {
+                return;
+            }
+        }
+
+        // 跟随标记在 Redis 中：查询期间不持有锁
+        boolean followed = false;
+        try {
+            followed = eventLog.isFollowed(runId);
+        } catch (RuntimeException e) {
+            log.warn("[SSE] run {} failed to check followers: {}", runId, e.getMessage());
+        }
+
+        synchronized (this) {
+            if (emitter != null || finished || graceTimer != null) {
+                // 查询期间已重连（或再次断开并重新计时）
+                return;
+            }
+            if (followed) {
+                log.debug("[SSE] run {} is followed from another node, keeping it running", runId);
+                scheduleGraceTimer();
+                return;
+            }
+            cancellation.cancel("client not resumed within " + options.resumeGraceMs() + " ms");
+        }
+    }
+
+    private void cancelGraceTimer() {
+        if (graceTimer != null) {
+            graceTimer.cancel(false);
+            graceTimer = null;
+        }
+    }
+
+    private boolean send(ResponseBodyEmitter target, byte[] batch) {
+        try {
+            target.send(batch, MediaType.TEXT_EVENT_STREAM);
+            log.debug("[SSE] run {} flushed {} bytes", runId, batch.length);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            log.debug("[SSE] run {} failed to flush: {}", runId, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void completeQuietly(ResponseBodyEmitter target) {
+        try {
+            target.complete();
+        } catch (Exception ignored) { }
+    }
+}
@@ -0,0 +1,99 @@
+package com.nanobot.admin.stream;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内事件日志 - 每轮执行一个有界环形缓冲区，执行结束后保留 retention 时长
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "agent.stream.replay", name = "store", havingValue = "local", matchIfMissing = true)
+public class LocalRunEventLog implements RunEventLog {
+
+    private final int capacity;
+    private final long retentionMillis;
+    private final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    public LocalRunEventLog(
+        @Value("${agent.stream.replay.capacity:1000}") int capacity,
+        @Value("${agent.stream.replay.retention:5m}") Duration retention
+    ) {
+        this.capacity = capacity;
+        this.retentionMillis = retention.toMillis();
+    }
+
+    @Override
+    public void append(String runId, StoredEvent event) {
+        Buffer buffer = buffers.computeIfAbsent(runId, k -> new Buffer());
+        synchronized (buffer) {
+            if (buffer.events.size() >= capacity) {
+                buffer.events.pollFirst();
+            }
+            buffer.events.addLast(event);
+        }
+    }
+
+    @Override
+    public List<StoredEvent> readAfter(String runId, long lastEventId) {
+        Buffer buffer = buffers.get(runId);
+        if (buffer == null) {
+            return List.of();
+        }
+        List<StoredEvent> result = new ArrayList<>();
+        synchronized (buffer) {
+            for (StoredEvent event : buffer.events) {
+                if (event.id() > lastEventId) {
+                    result.add(event);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(String runId) {
+        return buffers.containsKey(runId);
+    }
+
+    @Override
+    public void complete(String runId) {
+        Buffer buffer = buffers.get(runId);
+        if (buffer != null) {
+            buffer.completedAt = System.currentTimeMillis();
+        }
+    }
+
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
+    /**
+     * 清理超过保留期的已结束执行
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        int before = buffers.size();
+        buffers.values().removeIf(b -> b.completedAt > 0 && b.completedAt < cutoff);
+        if (buffers.size() < before) {
+            log.debug("Evicted {} finished run event buffers", before - buffers.size());
+        }
+    }
+
+    private static final class Buffer {
+        private final ArrayDeque<StoredEvent> events = new ArrayDeque<>();
+        private volatile long completedAt;
+    }
+}
@@ -0,0 +1,138 @@
+package com.nanobot.admin.stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Redis 实现的事件日志 - 断线后可以重连到任意节点重放
+ *
+ * 存储结构：
+ * - Key: "agent:run:events:{runId}"
+ * - Type: List（JSON 序列化的 StoredEvent，LTRIM 保留最近 capacity 条）
+ * - TTL: 每次追加时续期 retention，执行结束后自然过期
+ * - 跟随标记 "agent:run:followed:{runId}"：其他节点上的客户端跟随时定期续期，过期时间 follow-ttl
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "agent.stream.replay", name = "store", havingValue = "redis")
+public class RedisRunEventLog implements RunEventLog {
+
+    private static final String KEY_PREFIX = "agent:run:events:";
+    private static final String FOLLOWED_PREFIX = "agent:run:followed:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final int capacity;
+    private final Duration retention;
+    private final Duration followTtl;
+
+    public RedisRunEventLog(
+        StringRedisTemplate redisTemplate,
+        ObjectMapper objectMapper,
+        @Value("${agent.stream.replay.capacity:1000}") int capacity,
+        @Value("${agent.stream.replay.retention:5m}") Duration retention,
+        @Value("${agent.stream.replay.follow-ttl:10s}") Duration followTtl
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.capacity = capacity;
+        this.retention = retention;
+        this.followTtl = followTtl;
+    }
+
+    private String buildKey(String runId) {
+        return KEY_PREFIX + runId;
+    }
+
+    @Override
+    public void append(String runId, StoredEvent event) {
+        appendAll(runId, List.of(event));
+    }
+
+    @Override
+    public void appendAll(String runId, List<StoredEvent> events) {
+        String key = buildKey(runId);
+        List<String> values = new ArrayList<>(events.size());
+        for (StoredEvent event : events) {
+            try {
+                values.add(objectMapper.writeValueAsString(event));
+            } catch (JsonProcessingException e) {
+                log.error("Failed to serialize event {} of run {}", event.id(), runId, e);
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+
+        // RPUSH + LTRIM + EXPIRE 在一次往返内完成
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object execute(RedisOperations operations) throws DataAccessException {
+                operations.opsForList().rightPushAll(key, values);
+                operations.opsForList().trim(key, -capacity, -1);
+                operations.expire(key, retention);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public List<StoredEvent> readAfter(String runId, long lastEventId) {
+        List<String> values = redisTemplate.opsForList().range(buildKey(runId), 0, -1);
+        if (values == null || values.isEmpty()) {
+            return List.of();
+        }
+        List<StoredEvent> result = new ArrayList<>(values.size());
+        for (String value : values) {
+            try {
+                StoredEvent event = objectMapper.readValue(value, StoredEvent.class);
+                if (event.id() > lastEventId) {
+                    result.add(event);
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Skipping corrupt event of run {}", runId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(String runId) {
+        Boolean exists = redisTemplate.hasKey(buildKey(runId));
+        return exists != null && exists;
+    }
+
+    @Override
+    public void complete(String runId) {
+        redisTemplate.expire(buildKey(runId), retention);
+    }
+
+    @Override
+    public void markFollowed(String runId) {
+        redisTemplate.opsForValue().set(FOLLOWED_PREFIX + runId, "1", followTtl);
+    }
+
+    @Override
+    public boolean isFollowed(String runId) {
+        Boolean exists = redisTemplate.hasKey(FOLLOWED_PREFIX + runId);
+        return exists != null && exists;
+    }
+
+    @Override
+    public boolean isShared() {
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.nanobot.admin.stream;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
+/**
+ * Agent 执行事件日志 - 每轮执行一个有界环形缓冲区，断线重连时按 Last-Event-ID 重放
+ *
+ * 实现：
+ * - LocalRunEventLog：进程内存储（默认）
+ * - RedisRunEventLog：Redis 存储，其他节点也能重放、跟随仍在执行的 Run
+ */
+public interface RunEventLog {
+
+    /**
+     * 追加事件（超过容量时丢弃最早的事件）
+     * @param runId 执行 ID
+     * @param event 事件
+     */
+    void append(String runId, StoredEvent event);
+
+    /**
+     * 按顺序追加一批事件
+     * @param runId 执行 ID
+     * @param events 按 ID 升序排列的事件
+     */
+    default void appendAll(String runId, List<StoredEvent> events) {
+        for (StoredEvent event : events) {
+            append(runId, event);
+        }
+    }
+
+    /**
+     * 读取指定 ID 之后的事件
+     * @param runId 执行 ID
+     * @param lastEventId 客户端最后收到的事件 ID（0 表示从头开始）
+     * @return 按 ID 升序排列的事件
+     */
+    List<StoredEvent> readAfter(String runId, long lastEventId);
+
+    /**
+     * 是否存在该执行的事件
+     * @param runId 执行 ID
+     * @return 是否存在
+     */
+    boolean contains(String runId);
+
+    /**
+     * 执行结束：事件再保留一段时间（retention）后清理
+     * @param runId 执行 ID
+     */
+    void complete(String runId);
+
+    /**
+     * 标记有客户端正在从其他节点跟随该执行（跟随期间定期调用，标记在一段时间后自动过期）
+     * @param runId 执行 ID
+     */
+    default void markFollowed(String runId) {
+    }
+
+    /**
+     * 是否有客户端正在从其他节点跟随该执行（执行所在节点据此决定断线后是否继续执行）
+     * @param runId 执行 ID
+     * @return 是否有跟随者
+     */
+    default boolean isFollowed(String runId) {
+        return false;
+    }
+
+    /**
+     * 事件是否对其他节点可见
+     * @return 是否跨节点共享
+     */
+    boolean isShared();
+
+    /**
+     * 已编码的事件
+     *
+     * @param id 单调递增的事件 ID（每轮执行从 1 开始）
+     * @param type 事件类型（AgentStreamEvent.EventType 名称）
+     * @param frame SseEventWriter 编码的完整 SSE 帧（UTF-8），重放时原样写出
+     */
+    record StoredEvent(long id, String type, byte[] frame) {
+
+        /**
+         * 是否为结束事件（DONE）
+         */
+        @JsonIgnore
+        public boolean isTerminal() {
+            return "DONE".equals(type);
+        }
+    }
+}
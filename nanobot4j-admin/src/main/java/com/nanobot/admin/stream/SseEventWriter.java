@@ -0,0 +1,192 @@
+package com.nanobot.admin.stream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.nanobot.core.agent.AgentStreamEvent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * SSE 事件编码器 - 把 AgentStreamEvent 直接编码为完整的 SSE 帧（UTF-8 字节）
+ *
+ * 帧格式：{@code id:<id>\nevent:agent-event\ndata:<json>\n\n}
+ *
+ * 1. 每轮执行一个实例，复用同一个字节缓冲区和 JsonGenerator（非线程安全，由 LiveRun 加锁调用）
+ * 2. 帧前缀、字段名和事件类型预先编码，字符串字段由 JsonGenerator 直接转义为 UTF-8
+ * 3. 每个事件只产生一个 byte[]（同时写入 RunEventLog 和推送给客户端），不经过中间 String；
+ *    连接为 text/event-stream 的 ResponseBodyEmitter，帧由 ByteArrayHttpMessageConverter 原样写出
+ *
+ * JSON 字段与 AgentStreamEvent 的 Jackson 序列化结果相同（忽略 null 字段）；
+ * emoji 等补充平面字符按 JSON Unicode 转义（代理对）输出，解析结果一致。
+ */
+public final class SseEventWriter {
+
+    /** SSE 事件名 */
+    public static final String EVENT_NAME = "agent-event";
+
+    private static final byte[] ID_PREFIX = "id:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] EVENT_AND_DATA_PREFIX =
+        ("\nevent:" + EVENT_NAME + "\ndata:").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FRAME_END = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private static final SerializableString TYPE = new SerializedString("type");
+    private static final SerializableString CONTENT = new SerializedString("content");
+    private static final SerializableString TOOL_NAME = new SerializedString("toolName");
+    private static final SerializableString TOOL_ARGS = new SerializedString("toolArgs");
+    private static final SerializableString TOOL_RESULT = new SerializedString("toolResult");
+    private static final SerializableString TIMESTAMP = new SerializedString("timestamp");
+
+    private static final Map<AgentStreamEvent.EventType, SerializableString> TYPE_VALUES =
+        new EnumMap<>(AgentStreamEvent.EventType.class);
+
+    static {
+        for (AgentStreamEvent.EventType type : AgentStreamEvent.EventType.values()) {
+            TYPE_VALUES.put(type, new SerializedString(type.name()));
+        }
+    }
+
+    private final FrameBuffer buffer = new FrameBuffer(512);
+    private final JsonGenerator generator;
+
+    public SseEventWriter(JsonFactory jsonFactory) {
+        try {
+            this.generator = jsonFactory.createGenerator(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // 多个根对象之间不插入分隔符
+        this.generator.setRootValueSeparator(null);
+    }
+
+    /**
+     * 编码一个事件
+     *
+     * @param id 事件 ID
+     * @param event 事件
+     * @return 完整的 SSE 帧
+     */
+    public byte[] encode(long id, AgentStreamEvent event) {
+        buffer.reset();
+        buffer.write(ID_PREFIX);
+        buffer.writeDecimal(id);
+        buffer.write(EVENT_AND_DATA_PREFIX);
+        try {
+            // 字符串值中的换行会被转义为 \n，整个 JSON 始终在一行 data 内
+            generator.writeStartObject();
+            generator.writeFieldName(TYPE);
+            generator.writeString(TYPE_VALUES.get(event.type()));
+            writeOptional(CONTENT, event.content());
+            writeOptional(TOOL_NAME, event.toolName());
+            writeOptional(TOOL_ARGS, event.toolArgs());
+            writeOptional(TOOL_RESULT, event.toolResult());
+            if (event.timestamp() != null) {
+                generator.writeFieldName(TIMESTAMP);
+                generator.writeNumber(event.timestamp());
+            }
+            generator.writeEndObject();
+            generator.flush();
+        } catch (IOException e) {
+            // 写入内存缓冲区不会发生 IO 错误
+            throw new UncheckedIOException(e);
+        }
+        buffer.write(FRAME_END);
+        return buffer.toByteArray();
+    }
+
+    private void writeOptional(SerializableString name, String value) throws IOException {
+        if (value != null) {
+            generator.writeFieldName(name);
+            generator.writeString(value);
+        }
+    }
+
+    /**
+     * 把多个事件的帧拼接为一次写出的数据
+     *
+     * @param events 按 ID 升序排列的事件
+     * @return 拼接后的 SSE 帧
+     */
+    public static byte[] join(Collection<RunEventLog.StoredEvent> events) {
+        int length = 0;
+        for (RunEventLog.StoredEvent event : events) {
+            length += event.frame().length;
+        }
+        byte[] joined = new byte[length];
+        int offset = 0;
+        for (RunEventLog.StoredEvent event : events) {
+            System.arraycopy(event.frame(), 0, joined, offset, event.frame().length);
+            offset += event.frame().length;
+        }
+        return joined;
+    }
+
+    /**
+     * 可复用的字节缓冲区（reset 后保留已分配的容量）
+     */
+    private static final class FrameBuffer extends OutputStream {
+
+        private byte[] bytes;
+        private int count;
+
+        FrameBuffer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b) {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        /**
+         * 写入非负整数的十进制 ASCII 表示
+         */
+        void writeDecimal(long value) {
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            ensureCapacity(count + digits);
+            for (int i = count + digits - 1; i >= count; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            count += digits;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, count);
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.nanobot.admin.tool;
 
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.RunContext;
 import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +17,7 @@ import java.util.concurrent.*;
  * 2. 支持参数传递（通过 Binding）
  * 3. 超时控制（5 秒）
  * 4. 异常隔离（不会导致主线程崩溃）
+ * 5. 协作式取消：所属 Agent 执行被取消时中断脚本线程，等待时间不超过本轮执行剩余预算
  *
  * 安全机制：
  * - 使用 ExecutorService 执行，支持超时中断
@@ -64,16 +67,33 @@ public class DynamicGroovyTool {
             // 使用 Future 实现超时控制
             Future<String> future = executor.submit(() -> executeScript(parameters));
 
-            // 等待结果，最多 TIMEOUT_SECONDS 秒
-            String result = future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            // 等待结果，最多 TIMEOUT_SECONDS 秒（不超过本轮执行剩余预算）；Agent 执行被取消时中断脚本线程
+            RunContext context = RunContext.current();
+            long timeoutMillis = Math.min(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS), context.getDeadline().remainingMillis());
+            String result;
+            try (CancellationToken.Registration ignored =
+                     context.getCancellationToken().onCancel(() -> future.cancel(true))) {
+                result = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                throw e;
+            }
 
             log.info("Tool {} executed successfully", toolName);
             return result;
 
         } catch (TimeoutException e) {
+            if (RunContext.current().getDeadline().isExpired()) {
+                log.error("Tool {} execution stopped at run deadline", toolName);
+                return "Error: Script execution stopped, run deadline exceeded";
+            }
             log.error("Tool {} execution timeout after {} seconds", toolName, TIMEOUT_SECONDS);
             return "Error: Script execution timeout after " + TIMEOUT_SECONDS + " seconds";
 
+        } catch (CancellationException e) {
+            log.info("Tool {} execution cancelled", toolName);
+            return "Error: Script execution cancelled";
+
         } catch (InterruptedException e) {
             log.error("Tool {} execution interrupted", toolName);
             Thread.currentThread().interrupt();
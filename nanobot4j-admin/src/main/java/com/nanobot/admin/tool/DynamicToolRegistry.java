@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 动态工具注册表
@@ -25,6 +26,11 @@ public class DynamicToolRegistry {
      */
     private final Map<String, DynamicGroovyTool> tools = new ConcurrentHashMap<>();
 
+    /**
+     * 版本号：工具注册或移除时递增，供 ToolCatalog 判断缓存是否失效
+     */
+    private final AtomicLong version = new AtomicLong();
+
     /**
      * 注册一个动态工具
      *
@@ -33,6 +39,7 @@ public class DynamicToolRegistry {
     public void registerTool(DynamicGroovyTool tool) {
         String toolName = tool.getToolName();
         tools.put(toolName, tool);
+        version.incrementAndGet();
         log.info("Registered dynamic tool: {} - {}", toolName, tool.getDescription());
     }
 
@@ -92,6 +99,15 @@ public class DynamicToolRegistry {
         return tools.size();
     }
 
+    /**
+     * 获取当前版本号
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
     /**
      * 移除工具
      *
@@ -100,6 +116,7 @@ public class DynamicToolRegistry {
     public void removeTool(String toolName) {
         DynamicGroovyTool removed = tools.remove(toolName);
         if (removed != null) {
+            version.incrementAndGet();
             log.info("Removed dynamic tool: {}", toolName);
         }
     }
@@ -110,6 +127,7 @@ public class DynamicToolRegistry {
     public void clearAll() {
         int count = tools.size();
         tools.clear();
+        version.incrementAndGet();
         log.info("Cleared all {} dynamic tools", count);
     }
 }
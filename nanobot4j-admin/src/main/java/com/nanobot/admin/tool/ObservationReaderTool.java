@@ -0,0 +1,130 @@
+package com.nanobot.admin.tool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 工具结果读取器 - 内建工具 read_observation
+ *
+ * 工具结果过大被卸载到 ObservationStore 时，LLM 只看到摘录和句柄；
+ * 需要更多内容时调用本工具按字符区间分段读取。
+ *
+ * 参数格式：
+ * {
+ *   "handle": "obs-1a2b3c4d",
+ *   "offset": 0,
+ *   "length": 4000
+ * }
+ *
+ * 读取结果同样计入 agent.observation.max-chars：单次读取的字符数不超过该上限（扣除区间说明的长度）。
+ */
+@Slf4j
+@Component
+public class ObservationReaderTool {
+
+    private final ObservationStore observationStore;
+    private final int maxLength;
+
+    /**
+     * 工具名称
+     */
+    public static final String TOOL_NAME = "read_observation";
+
+    /**
+     * 为区间说明（"[obs-xxxxxxxx 字符 a-b / 共 n]"）预留的字符数
+     */
+    private static final int HEADER_RESERVE = 64;
+
+    /**
+     * 工具描述（%d 为单次读取的最大字符数）
+     */
+    private static final String DESCRIPTION =
+        "读取被截断的工具结果全文。参数：handle(结果句柄，如 obs-1a2b3c4d), " +
+        "offset(起始字符位置，默认 0), length(读取字符数，默认且最大 %d)。";
+
+    /**
+     * 参数 Schema（JSON Schema 格式）
+     */
+    public static final String PARAMETER_SCHEMA = """
+        {
+          "type": "object",
+          "properties": {
+            "handle": {
+              "type": "string",
+              "description": "工具结果句柄"
+            },
+            "offset": {
+              "type": "integer",
+              "description": "起始字符位置"
+            },
+            "length": {
+              "type": "integer",
+              "description": "读取字符数"
+            }
+          },
+          "required": ["handle"]
+        }
+        """;
+
+    public ObservationReaderTool(
+        ObservationStore observationStore,
+        @Value("${agent.observation.max-chars:4000}") int maxChars
+    ) {
+        this.observationStore = observationStore;
+        this.maxLength = Math.max(1, maxChars - HEADER_RESERVE);
+    }
+
+    /**
+     * 读取一段内容
+     *
+     * @param parameters 参数 Map
+     * @return 内容片段（带区间说明）
+     */
+    public String execute(Map<String, Object> parameters) {
+        Object handle = parameters.get("handle");
+        if (handle == null) {
+            return "Error: Missing required parameter: handle";
+        }
+
+        String content = observationStore.get(handle.toString().trim());
+        if (content == null) {
+            return "Error: Observation '" + handle + "' not found or expired";
+        }
+
+        int offset;
+        int length;
+        try {
+            offset = toInt(parameters.get("offset"), 0);
+            length = Math.min(toInt(parameters.get("length"), maxLength), maxLength);
+        } catch (NumberFormatException e) {
+            return "Error: offset and length must be integers";
+        }
+
+        int start = Math.max(0, Math.min(offset, content.length()));
+        int end = Math.min(content.length(), start + Math.max(0, length));
+        log.debug("Reading observation {} [{}, {})", handle, start, end);
+
+        return "[" + handle + " 字符 " + start + "-" + end + " / 共 " + content.length() + "]\n"
+            + content.substring(start, end);
+    }
+
+    private int toInt(Object value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        return Integer.parseInt(value.toString().trim());
+    }
+
+    /**
+     * 获取工具元数据（用于注册到 Agent）
+     */
+    public ToolCreatorTool.ToolMetadata getMetadata() {
+        return new ToolCreatorTool.ToolMetadata(TOOL_NAME, DESCRIPTION.formatted(maxLength), PARAMETER_SCHEMA);
+    }
+}
@@ -0,0 +1,94 @@
+package com.nanobot.admin.tool;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 工具结果引用存储 - 保存被卸载的大体积工具结果
+ *
+ * ObservationProcessor 把超大的工具结果放到这里，只给 LLM 一个短句柄（obs-xxxxxxxx）；
+ * LLM 需要细节时通过 read_observation 工具分段读取。
+ *
+ * 存储结构：
+ * - 进程内 ConcurrentHashMap，按 TTL 过期
+ * - 总字符数超过上限时拒绝新写入（调用方退化为只保留摘录）
+ */
+@Slf4j
+@Component
+public class ObservationStore {
+
+    private final Map<String, Entry> observations = new ConcurrentHashMap<>();
+    private final AtomicLong totalChars = new AtomicLong();
+    private final long ttlMillis;
+    private final long maxTotalChars;
+
+    public ObservationStore(
+        @Value("${agent.observation.store.ttl:30m}") Duration ttl,
+        @Value("${agent.observation.store.max-total-chars:50000000}") long maxTotalChars
+    ) {
+        this.ttlMillis = ttl.toMillis();
+        this.maxTotalChars = maxTotalChars;
+    }
+
+    /**
+     * 保存内容
+     *
+     * @param content 完整内容
+     * @return 句柄；存储已满时返回 null
+     */
+    public String save(String content) {
+        if (totalChars.addAndGet(content.length()) > maxTotalChars) {
+            totalChars.addAndGet(-content.length());
+            log.warn("Observation store is full ({} chars), skipping offload", totalChars.get());
+            return null;
+        }
+
+        String handle = "obs-" + UUID.randomUUID().toString().substring(0, 8);
+        observations.put(handle, new Entry(content, System.currentTimeMillis() + ttlMillis));
+        log.debug("Offloaded observation {}: {} chars", handle, content.length());
+        return handle;
+    }
+
+    /**
+     * 读取内容
+     *
+     * @param handle 句柄
+     * @return 完整内容，不存在或已过期时返回 null
+     */
+    public String get(String handle) {
+        Entry entry = observations.get(handle);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        return entry.content();
+    }
+
+    /**
+     * 定期清理过期内容（每分钟）
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        observations.values().removeIf(entry -> {
+            if (entry.isExpired(now)) {
+                totalChars.addAndGet(-entry.content().length());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private record Entry(String content, long expireAt) {
+        boolean isExpired(long now) {
+            return now > expireAt;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.nanobot.core.agent;
+
+/**
+ * Agent 执行被取消（如 SSE 客户端断开、超时）
+ */
+public class AgentCancelledException extends RuntimeException {
+
+    public AgentCancelledException(String reason) {
+        super("Agent run cancelled: " + reason);
+    }
+}
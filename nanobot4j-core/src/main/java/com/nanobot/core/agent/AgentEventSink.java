@@ -0,0 +1,19 @@
+package com.nanobot.core.agent;
+
+/**
+ * Agent 事件接收器 - ReActEngine 通过它输出执行过程
+ *
+ * 常见实现：
+ * - SSE 推流（admin 模块）
+ * - AggregatingEventSink：聚合为一次性 JSON 响应
+ * - RecordingEventSink：记录全部事件，用于测试与基准测试
+ */
+@FunctionalInterface
+public interface AgentEventSink {
+
+    /**
+     * 接收一个事件
+     * @param event Agent 事件
+     */
+    void emit(AgentStreamEvent event);
+}
@@ -1,10 +1,10 @@
-package com.nanobot.admin.domain;
+package com.nanobot.core.agent;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 
 /**
- * Agent 流式事件 - 用于 SSE 推送
+ * Agent 执行事件 - 由 ReActEngine 产生，经 AgentEventSink 推送（SSE、聚合为 JSON 响应、测试记录等）
  *
  * 事件类型说明：
  * - THINKING: 大模型思考中
@@ -13,6 +13,7 @@ import lombok.Builder;
  * - FINAL_ANSWER: 最终答案
  * - DONE: 任务结束
  * - ERROR: 异常
+ * - WARNING: 防循环警告
  */
 @Builder
 @JsonInclude(JsonInclude.Include.NON_NULL)
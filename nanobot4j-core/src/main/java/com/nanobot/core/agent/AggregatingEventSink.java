@@ -0,0 +1,91 @@
+package com.nanobot.core.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聚合型事件接收器 - 把执行过程汇总为思考步骤、工具调用和最终答案，用于同步（非流式）接口
+ */
+public class AggregatingEventSink implements AgentEventSink {
+
+    private final ObjectMapper objectMapper;
+    private final List<String> thoughts = new ArrayList<>();
+    private final List<Map<String, Object>> toolCalls = new ArrayList<>();
+    private String finalAnswer;
+    private String error;
+
+    public AggregatingEventSink(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public synchronized void emit(AgentStreamEvent event) {
+        switch (event.type()) {
+            case THINKING -> thoughts.add(event.content());
+            case TOOL_CALL -> {
+                thoughts.add("🔧 调用工具: " + event.toolName());
+                Map<String, Object> call = new LinkedHashMap<>();
+                call.put("tool", event.toolName());
+                call.put("params", parseArgs(event.toolArgs()));
+                call.put("timestamp", event.timestamp());
+                toolCalls.add(call);
+            }
+            case TOOL_RESULT -> thoughts.add("📊 工具返回: " + event.toolResult());
+            case WARNING -> thoughts.add("⚠️ " + event.content());
+            case ERROR -> {
+                thoughts.add("❌ " + event.content());
+                error = event.content();
+            }
+            case FINAL_ANSWER -> {
+                thoughts.add("✅ 任务完成");
+                finalAnswer = event.content();
+            }
+            case DONE -> { }
+        }
+    }
+
+    private Object parseArgs(String toolArgs) {
+        if (toolArgs == null) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(toolArgs, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            return toolArgs;
+        }
+    }
+
+    /**
+     * 思考步骤（含工具调用、工具结果、警告）
+     */
+    public synchronized List<String> getThoughts() {
+        return new ArrayList<>(thoughts);
+    }
+
+    /**
+     * 工具调用记录：{tool, params, timestamp}
+     */
+    public synchronized List<Map<String, Object>> getToolCalls() {
+        return new ArrayList<>(toolCalls);
+    }
+
+    /**
+     * 最终答案（未完成时为 null）
+     */
+    public synchronized String getFinalAnswer() {
+        return finalAnswer;
+    }
+
+    /**
+     * 最后一条错误信息（没有错误时为 null）
+     */
+    public synchronized String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,102 @@
+package com.nanobot.core.agent;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 协作式取消令牌 - 每轮 Agent 执行一个
+ *
+ * 1. 执行方在阶段之间调用 throwIfCancelled() 检查
+ * 2. 阻塞中的 LLM 请求、远程工具调用通过 onCancel() 注册中止回调，取消时立即执行
+ * 3. 取消是一次性的，重复调用 cancel() 无效
+ */
+@Slf4j
+public final class CancellationToken {
+
+    /** 永不取消的令牌（未绑定 RunContext 时使用） */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private final List<Runnable> callbacks = new ArrayList<>();
+    private volatile String reason;
+
+    /**
+     * 取消执行
+     * @param reason 取消原因（用于日志和异常信息）
+     */
+    public void cancel(String reason) {
+        List<Runnable> toRun;
+        synchronized (this) {
+            if (this == NONE || this.reason != null) {
+                return;
+            }
+            this.reason = reason;
+            toRun = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        log.debug("Agent run cancelled: {}", reason);
+        toRun.forEach(CancellationToken::runQuietly);
+    }
+
+    /**
+     * 是否已取消
+     */
+    public boolean isCancelled() {
+        return reason != null;
+    }
+
+    /**
+     * 取消原因（未取消时为 null）
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * 已取消时抛出 AgentCancelledException
+     */
+    public void throwIfCancelled() {
+        String r = reason;
+        if (r != null) {
+            throw new AgentCancelledException(r);
+        }
+    }
+
+    /**
+     * 注册取消回调；已取消时立即执行
+     *
+     * @param callback 回调（如中止 HTTP 请求）
+     * @return 注册句柄，阻塞操作结束后关闭以移除回调
+     */
+    public Registration onCancel(Runnable callback) {
+        synchronized (this) {
+            if (reason == null) {
+                callbacks.add(callback);
+                return () -> {
+                    synchronized (this) {
+                        callbacks.remove(callback);
+                    }
+                };
+            }
+        }
+        runQuietly(callback);
+        return () -> { };
+    }
+
+    private static void runQuietly(Runnable callback) {
+        try {
+            callback.run();
+        } catch (Exception e) {
+            log.warn("Cancellation callback failed", e);
+        }
+    }
+
+    /**
+     * 取消回调注册句柄
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
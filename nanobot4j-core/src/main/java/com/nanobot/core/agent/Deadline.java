@@ -0,0 +1,75 @@
+package com.nanobot.core.agent;
+
+import java.time.Duration;
+
+/**
+ * 执行时限 - 一轮 Agent 执行的总时间预算
+ *
+ * LLM 请求、远程工具调用、脚本执行都使用 min(自身超时, 剩余预算)，
+ * 远程调用通过 {@link #HEADER} 请求头把剩余预算传给 Client 端。
+ */
+public final class Deadline {
+
+    /** 传递剩余预算（毫秒）的 HTTP 请求头 */
+    public static final String HEADER = "X-Nanobot-Timeout-Ms";
+
+    /** 无时限 */
+    public static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 从现在起经过指定时长后到期
+     * @param timeout 时间预算
+     * @return 时限
+     */
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    /**
+     * 是否有时限
+     */
+    public boolean isBounded() {
+        return this != NONE;
+    }
+
+    /**
+     * 剩余预算（已到期时为 0，无时限时为 Long.MAX_VALUE 毫秒）
+     */
+    public long remainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, Duration.ofNanos(deadlineNanos - System.nanoTime()).toMillis());
+    }
+
+    /**
+     * 是否已到期
+     */
+    public boolean isExpired() {
+        return isBounded() && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * 用剩余预算收紧某次调用自身的超时
+     * @param timeout 调用自身的超时
+     * @return min(timeout, 剩余预算)
+     */
+    public Duration cap(Duration timeout) {
+        return Duration.ofMillis(Math.min(timeout.toMillis(), remainingMillis()));
+    }
+
+    /**
+     * 已到期时抛出 DeadlineExceededException
+     */
+    public void throwIfExpired() {
+        if (isExpired()) {
+            throw new DeadlineExceededException();
+        }
+    }
+}
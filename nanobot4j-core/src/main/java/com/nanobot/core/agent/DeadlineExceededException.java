@@ -0,0 +1,11 @@
+package com.nanobot.core.agent;
+
+/**
+ * Agent 执行超过时限
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException() {
+        super("Agent run deadline exceeded");
+    }
+}
@@ -0,0 +1,21 @@
+package com.nanobot.core.agent;
+
+/**
+ * 工具结果过滤器 - 在工具结果写入执行记录、推送给事件接收器之前对其进行处理（如压缩超大结果）
+ */
+@FunctionalInterface
+public interface ObservationFilter {
+
+    /**
+     * 不做任何处理
+     */
+    ObservationFilter IDENTITY = (toolName, observation) -> observation;
+
+    /**
+     * 处理工具结果
+     * @param toolName 工具名称
+     * @param observation 原始结果
+     * @return 处理后的结果
+     */
+    String apply(String toolName, String observation);
+}
@@ -0,0 +1,237 @@
+package com.nanobot.core.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.llm.LLMClient;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolDefinition;
+import com.nanobot.core.tool.ToolExecutor;
+import com.nanobot.core.tool.ToolResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReAct 执行引擎 - 思考 -> 行动 -> 观察 的步骤状态机
+ *
+ * 只依赖 LLMClient / ToolExecutor / ReActPromptBuilder 抽象，执行过程通过 AgentEventSink 输出，
+ * 因此 SSE 流式接口、同步 JSON 接口和测试可以共用同一套循环：
+ * 1. 熔断器：超过最大步数强制退出并输出 ERROR 事件
+ * 2. 防死循环：连续两次对同一工具、同一参数产生相同错误时注入系统警告
+ * 3. 工具结果在写入执行记录前经过 ObservationFilter（如压缩超大结果）
+ * 4. 协作式取消与时限：每一步开始前、LLM 返回后和工具返回后检查 RunContext，
+ *    已取消时抛出 AgentCancelledException，超过执行时限时抛出 DeadlineExceededException；
+ *    每一步开始前 RunContext 的 Token 预算已用尽时输出 ERROR 事件并提前结束
+ * 5. 工具协议：PromptBuilder 提供工具定义时使用 provider 原生 function calling（工具调用与结果以
+ *    assistant / tool 消息追加到对话中，不调用工具的回复即最终答案），否则使用文本协议 TOOL_CALL / FINAL_ANSWER
+ *
+ * 引擎本身无状态，可被多个线程共享；DONE 事件由调用方在收尾工作完成后发送。
+ */
+@Slf4j
+public class ReActEngine {
+
+    /** 引擎发出的 LLM 请求的调用方标识 */
+    public static final String CALLER = "agent";
+
+    /** 第二步起发送给 LLM 的用户消息 */
+    public static final String CONTINUE_PROMPT = "请根据上面的工具返回结果，继续分析并给出最终答案。";
+
+    private final LLMClient llmClient;
+    private final int maxSteps;
+    private final ObservationFilter observationFilter;
+    private final ReActParser parser;
+    private final ObjectMapper objectMapper;
+
+    public ReActEngine(LLMClient llmClient, int maxSteps, ObservationFilter observationFilter, ObjectMapper objectMapper) {
+        this.llmClient = llmClient;
+        this.maxSteps = maxSteps;
+        this.observationFilter = observationFilter != null ? observationFilter : ObservationFilter.IDENTITY;
+        this.parser = new ReActParser(objectMapper);
+        this.objectMapper = objectMapper;
+    }
+
+    public ReActEngine(LLMClient llmClient, int maxSteps) {
+        this(llmClient, maxSteps, ObservationFilter.IDENTITY, new ObjectMapper());
+    }
+
+    /**
+     * 执行一轮 ReAct 循环
+     *
+     * @param userMessage 用户消息
+     * @param promptBuilder System Prompt 构建器
+     * @param toolExecutor 工具执行器
+     * @param sink 事件接收器
+     * @return 执行结果
+     */
+    public ReActResult run(String userMessage, ReActPromptBuilder promptBuilder,
+                           ToolExecutor toolExecutor, AgentEventSink sink) {
+        ReActRun run = new ReActRun(userMessage);
+        RunContext context = RunContext.current();
+        RepeatedErrorGuard errorGuard = new RepeatedErrorGuard();
+        // 原生协议下 System Prompt 之后的对话消息（用户消息、assistant 工具调用、tool 结果），只在末尾追加
+        List<Message> turns = new ArrayList<>();
+        turns.add(Message.user(userMessage));
+
+        for (int step = 0; step < maxSteps; step++) {
+            context.checkpoint();
+            if (context.getTokenBudget().isExhausted()) {
+                log.warn("[ReAct] token budget exhausted before step {}", step + 1);
+                sink.emit(AgentStreamEvent.error("💰 Token 预算已用尽：本会话的 Token 用量已达上限，停止执行。"));
+                return new ReActResult(null, step, false);
+            }
+            log.info("[ReAct] step={}/{}", step + 1, maxSteps);
+            run.setStep(step);
+
+            // 1. 调用 LLM（文本协议：第一步发送用户消息，之后发送"继续"；原生协议：发送完整对话）
+            String systemPrompt = promptBuilder.buildSystemPrompt(run);
+            List<ToolDefinition> tools = promptBuilder.toolDefinitions();
+            boolean nativeTools = tools != null;
+            List<Message> messages = new ArrayList<>(turns.size() + 1);
+            messages.add(Message.system(systemPrompt));
+            if (nativeTools) {
+                messages.addAll(turns);
+            } else {
+                messages.add(Message.user(step == 0 ? userMessage : CONTINUE_PROMPT));
+            }
+            LLMRequest request = new LLMRequest(messages, tools, null, null, null);
+            request.setCaller(CALLER);
+            LLMResponse response = llmClient.chat(request);
+            if (response.getTokenUsage() != null) {
+                log.debug("[ReAct] step={} prompt tokens={}, cache hit={}", step,
+                    response.getTokenUsage().getPromptTokens(), response.getTokenUsage().getCachedPromptTokens());
+            }
+            log.debug("[ReAct] step={} llmResponse={}", step, response.getContent());
+            context.checkpoint();
+
+            // 2. 解析并推送 <thinking>
+            ReActParser.ParsedStep parsed = parser.parse(response.getContent());
+            if (!parsed.thinking().isEmpty()) {
+                sink.emit(AgentStreamEvent.thinking("🧠 " + parsed.thinking()));
+            }
+
+            // 3. FINAL_ANSWER
+            if (parsed.isFinalAnswer()) {
+                sink.emit(AgentStreamEvent.finalAnswer(parsed.answer()));
+                return new ReActResult(parsed.answer(), step + 1, true);
+            }
+
+            List<ToolCall> toolCalls = toolCallsOf(response, parsed, nativeTools, step);
+
+            // 4. 没有工具调用：原生协议下即最终答案；文本协议下为中间思考，记入执行记录继续
+            if (toolCalls.isEmpty()) {
+                if (nativeTools && !parsed.action().isEmpty()) {
+                    sink.emit(AgentStreamEvent.finalAnswer(parsed.action()));
+                    return new ReActResult(parsed.action(), step + 1, true);
+                }
+                run.record("Agent: " + parsed.action());
+                if (nativeTools) {
+                    turns.add(Message.user(CONTINUE_PROMPT));
+                }
+                continue;
+            }
+
+            // 5. TOOL_CALL（原生协议下可能一次返回多个，按顺序执行，每个调用都回填一条 tool 消息）
+            if (nativeTools) {
+                turns.add(Message.assistant(response.getContent(), toolCalls));
+            }
+            for (ToolCall toolCall : toolCalls) {
+                String observation = callTool(toolExecutor, toolCall, errorGuard, run, promptBuilder, sink);
+                if (nativeTools) {
+                    turns.add(Message.tool(toolCall.getId(), toolCall.getName(), observation));
+                }
+            }
+        }
+
+        // 熔断器触发
+        log.warn("[ReAct] circuit breaker triggered after {} steps", maxSteps);
+        sink.emit(AgentStreamEvent.error("⚡ 熔断器触发：已达最大步数 " + maxSteps +
+            " 步，强制退出。请简化任务或拆分后重试。"));
+        return new ReActResult(null, maxSteps, false);
+    }
+
+    /**
+     * 本步的工具调用：原生 tool_calls 优先，其次是文本协议的 TOOL_CALL（原生协议下也兼容）
+     *
+     * 没有 ID 的调用按步骤编号补齐，原生协议要求 tool 消息回填相同的 ID。
+     */
+    private static List<ToolCall> toolCallsOf(LLMResponse response, ReActParser.ParsedStep parsed,
+                                              boolean nativeTools, int step) {
+        List<ToolCall> toolCalls = new ArrayList<>();
+        if (nativeTools && response.getToolCalls() != null) {
+            toolCalls.addAll(response.getToolCalls());
+        }
+        if (toolCalls.isEmpty() && parsed.hasToolCall()) {
+            toolCalls.add(parsed.toolCall());
+        }
+        for (int i = 0; i < toolCalls.size(); i++) {
+            ToolCall toolCall = toolCalls.get(i);
+            if (toolCall.getId() == null || toolCall.getId().isBlank()) {
+                toolCall.setId(i == 0 ? "call-" + (step + 1) : "call-" + (step + 1) + "-" + (i + 1));
+            }
+            if (toolCall.getArguments() == null) {
+                toolCall.setArguments(Map.of());
+            }
+        }
+        return toolCalls;
+    }
+
+    /**
+     * 执行一次工具调用：推送事件、防死循环检测、结果过滤并写入执行记录
+     *
+     * @return 写入执行记录的工具结果
+     */
+    private String callTool(ToolExecutor toolExecutor, ToolCall toolCall, RepeatedErrorGuard errorGuard,
+                            ReActRun run, ReActPromptBuilder promptBuilder, AgentEventSink sink) {
+        String toolArgsJson = toJson(toolCall);
+        sink.emit(AgentStreamEvent.toolCall(toolCall.getName(), toolArgsJson));
+
+        String observation = execute(toolExecutor, toolCall);
+        RunContext.current().checkpoint();
+
+        // 防死循环检测
+        String sysWarning = errorGuard.check(toolCall.getName(), toolArgsJson, observation);
+        if (sysWarning != null) {
+            sink.emit(AgentStreamEvent.warning(sysWarning));
+            observation = sysWarning;
+        }
+
+        observation = observationFilter.apply(toolCall.getName(), observation);
+        sink.emit(AgentStreamEvent.toolResult(toolCall.getName(), observation));
+
+        run.record("Tool Call: " + toolCall.getName() + " args=" + toolArgsJson);
+        run.record("Observation: " + observation);
+        promptBuilder.onObservation(toolCall, observation);
+        return observation;
+    }
+
+    /**
+     * 执行工具，失败统一转换为 "Error: ..." 文本
+     */
+    private String execute(ToolExecutor toolExecutor, ToolCall toolCall) {
+        try {
+            ToolResult result = toolExecutor.execute(toolCall);
+            if (result == null) {
+                return "Error: tool returned no result";
+            }
+            return result.isSuccess() ? String.valueOf(result.getData()) : "Error: " + result.getError();
+        } catch (AgentCancelledException | DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("[ReAct] tool execution error: tool={}", toolCall.getName(), e);
+            return "Error: " + e.getMessage();
+        }
+    }
+
+    private String toJson(ToolCall toolCall) {
+        try {
+            return objectMapper.writeValueAsString(toolCall.getArguments());
+        } catch (JsonProcessingException e) {
+            return String.valueOf(toolCall.getArguments());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.nanobot.core.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.llm.ToolCall;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ReAct 输出解析器
+ *
+ * 协议：
+ * <pre>
+ * &lt;thinking&gt;推理过程&lt;/thinking&gt;
+ * TOOL_CALL: {"name": "工具名", "args": {参数字典}}
+ * 或
+ * FINAL_ANSWER: 完整答案
+ * </pre>
+ */
+@Slf4j
+public class ReActParser {
+
+    public static final String TOOL_CALL_MARKER = "TOOL_CALL:";
+    public static final String FINAL_ANSWER_MARKER = "FINAL_ANSWER:";
+    private static final Pattern THINKING_PATTERN =
+        Pattern.compile("<thinking>(.*?)</thinking>", Pattern.DOTALL);
+
+    private final ObjectMapper objectMapper;
+
+    public ReActParser(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 解析一次 LLM 输出
+     * @param response LLM 输出文本
+     * @return 解析结果
+     */
+    public ParsedStep parse(String response) {
+        String text = response == null ? "" : response;
+
+        Matcher m = THINKING_PATTERN.matcher(text);
+        String thinking = m.find() ? m.group(1).trim() : "";
+        String action = THINKING_PATTERN.matcher(text).replaceAll("").trim();
+
+        if (action.contains(FINAL_ANSWER_MARKER)) {
+            String answer = action.substring(action.indexOf(FINAL_ANSWER_MARKER) + FINAL_ANSWER_MARKER.length()).trim();
+            return new ParsedStep(thinking, action, answer, null);
+        }
+
+        if (action.contains(TOOL_CALL_MARKER)) {
+            String jsonPart = action.substring(action.indexOf(TOOL_CALL_MARKER) + TOOL_CALL_MARKER.length()).trim();
+            try {
+                // 只截取第一个 JSON 对象（防止 LLM 输出多余内容）
+                JsonNode node = objectMapper.readTree(extractFirstJson(jsonPart));
+
+                Map<String, Object> args = new LinkedHashMap<>();
+                JsonNode argsNode = node.get("args");
+                if (argsNode != null) {
+                    argsNode.fields().forEachRemaining(entry -> {
+                        JsonNode v = entry.getValue();
+                        if (v.isNumber())       args.put(entry.getKey(), v.numberValue());
+                        else if (v.isBoolean()) args.put(entry.getKey(), v.booleanValue());
+                        else if (v.isNull())    args.put(entry.getKey(), null);
+                        else                    args.put(entry.getKey(), v.asText());
+                    });
+                }
+                return new ParsedStep(thinking, action, null, new ToolCall(null, node.get("name").asText(), args));
+            } catch (Exception e) {
+                log.error("[ReAct] failed to parse tool call", e);
+            }
+        }
+
+        return new ParsedStep(thinking, action, null, null);
+    }
+
+    /**
+     * 从字符串中提取第一个完整 JSON 对象（防止 LLM 在 JSON 后附加说明文字）
+     */
+    static String extractFirstJson(String text) {
+        int depth = 0;
+        int start = text.indexOf('{');
+        if (start == -1) return text;
+
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') depth++;
+            else if (c == '}') {
+                depth--;
+                if (depth == 0) return text.substring(start, i + 1);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 一次 LLM 输出的解析结果
+     *
+     * @param thinking &lt;thinking&gt; 中的推理过程（没有时为空字符串）
+     * @param action 去掉 &lt;thinking&gt; 后的动作部分
+     * @param answer 最终答案（不是 FINAL_ANSWER 时为 null）
+     * @param toolCall 工具调用（不是 TOOL_CALL 或解析失败时为 null）
+     */
+    public record ParsedStep(String thinking, String action, String answer, ToolCall toolCall) {
+
+        public boolean isFinalAnswer() {
+            return answer != null;
+        }
+
+        public boolean hasToolCall() {
+            return toolCall != null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.nanobot.core.agent;
+
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolDefinition;
+
+import java.util.List;
+
+/**
+ * ReAct System Prompt 构建器 - 由调用方提供，决定注入哪些工具、记忆和执行记录
+ */
+public interface ReActPromptBuilder {
+
+    /**
+     * 构建当前步骤的 System Prompt
+     * @param run 本轮执行状态
+     * @return System Prompt
+     */
+    String buildSystemPrompt(ReActRun run);
+
+    /**
+     * 当前步骤以原生 function calling 提供给 LLM 的工具定义
+     *
+     * 返回 null 时使用文本协议（TOOL_CALL: {...}，工具由 System Prompt 描述）；
+     * 返回列表（可为空）时引擎使用原生协议：工具调用与结果以 assistant / tool 消息传递，
+     * System Prompt 无需再包含工具说明和本轮执行记录。每一步都会重新调用。
+     *
+     * @return 工具定义，或 null
+     */
+    default List<ToolDefinition> toolDefinitions() {
+        return null;
+    }
+
+    /**
+     * 工具执行完成后回调（如刷新可用工具集）
+     * @param toolCall 工具调用
+     * @param observation 写入执行记录的工具结果
+     */
+    default void onObservation(ToolCall toolCall, String observation) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.nanobot.core.agent;
+
+/**
+ * 一轮 ReAct 执行的结果
+ *
+ * @param finalAnswer 最终答案（未完成时为 null）
+ * @param steps 实际执行的步数
+ * @param completed 是否在步数上限内得到最终答案
+ */
+public record ReActResult(String finalAnswer, int steps, boolean completed) {
+}
@@ -0,0 +1,56 @@
+package com.nanobot.core.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 一轮 ReAct 执行的状态（只在执行线程内使用）
+ *
+ * 由引擎（ReActEngine 或其他模块中的引擎实现）创建并推进，PromptBuilder 只读。
+ */
+public class ReActRun {
+
+    private final String userMessage;
+    private final List<String> history = new ArrayList<>();
+    private int step;
+
+    public ReActRun(String userMessage) {
+        this.userMessage = userMessage;
+    }
+
+    /**
+     * 用户消息
+     */
+    public String getUserMessage() {
+        return userMessage;
+    }
+
+    /**
+     * 当前步骤（从 0 开始）
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * 本轮执行记录：工具调用、工具结果、中间文本，按发生顺序只追加
+     */
+    public List<String> getHistory() {
+        return Collections.unmodifiableList(history);
+    }
+
+    /**
+     * 推进到指定步骤（由引擎调用）
+     */
+    public void setStep(int step) {
+        this.step = step;
+    }
+
+    /**
+     * 追加一条执行记录（由引擎调用）
+     */
+    public void record(String entry) {
+        history.add(entry);
+    }
+}
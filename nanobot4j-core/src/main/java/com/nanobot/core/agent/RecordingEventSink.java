@@ -0,0 +1,44 @@
+package com.nanobot.core.agent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 记录型事件接收器 - 按顺序保存全部事件，用于测试和脱离 Web 层的基准测试
+ */
+public class RecordingEventSink implements AgentEventSink {
+
+    private final List<AgentStreamEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void emit(AgentStreamEvent event) {
+        events.add(event);
+    }
+
+    /**
+     * 获取已记录的事件（快照）
+     * @return 事件列表
+     */
+    public List<AgentStreamEvent> getEvents() {
+        synchronized (events) {
+            return List.copyOf(events);
+        }
+    }
+
+    /**
+     * 获取指定类型的事件
+     * @param type 事件类型
+     * @return 事件列表
+     */
+    public List<AgentStreamEvent> getEvents(AgentStreamEvent.EventType type) {
+        return getEvents().stream().filter(e -> e.type() == type).toList();
+    }
+
+    /**
+     * 清空已记录的事件
+     */
+    public void clear() {
+        events.clear();
+    }
+}
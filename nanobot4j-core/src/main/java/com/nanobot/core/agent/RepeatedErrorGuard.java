@@ -0,0 +1,49 @@
+package com.nanobot.core.agent;
+
+/**
+ * 防死循环检测 - 连续两次对同一工具、同一参数产生相同错误时生成系统警告
+ *
+ * 每轮执行新建一个实例（非线程安全），供同步引擎和响应式引擎共用。
+ */
+public class RepeatedErrorGuard {
+
+    private String lastErrorKey;
+    private int repeatErrorCount;
+
+    /**
+     * 记录一次工具结果
+     *
+     * @param toolName 工具名称
+     * @param toolArgsJson 工具参数 JSON
+     * @param observation 工具结果（"Error:" 开头视为失败）
+     * @return 需要注入的系统警告；未触发时返回 null
+     */
+    public String check(String toolName, String toolArgsJson, String observation) {
+        if (!observation.startsWith("Error:")) {
+            lastErrorKey = null;
+            repeatErrorCount = 0;
+            return null;
+        }
+
+        String errorKey = toolName + "|" + toolArgsJson;
+        if (errorKey.equals(lastErrorKey)) {
+            repeatErrorCount++;
+        } else {
+            lastErrorKey = errorKey;
+            repeatErrorCount = 1;
+        }
+
+        if (repeatErrorCount < 2) {
+            return null;
+        }
+
+        // 注入系统警告，强制 LLM 换策略
+        String warning =
+            "【系统警告】你陷入了重复的错误执行路径（连续 " + repeatErrorCount +
+            " 次对工具 '" + toolName +
+            "' 产生相同错误）。请立即使用完全不同的策略，" +
+            "或调用 create_tool 编写新工具，或直接向用户求助。";
+        repeatErrorCount = 0; // 重置，给 LLM 一次改正机会
+        return warning;
+    }
+}
@@ -0,0 +1,112 @@
+package com.nanobot.core.agent;
+
+/**
+ * Agent 执行上下文 - 绑定到执行线程，LLM 客户端和工具执行器无需改变方法签名即可获取取消令牌、执行时限、
+ * 所属会话（用于按会话统计 Token 用量）和 Token 预算
+ *
+ * 用法：
+ * <pre>
+ * try (RunContext.Scope ignored = new RunContext(token, Deadline.after(timeout)).attach()) {
+ *     engine.run(...);
+ * }
+ * </pre>
+ */
+public final class RunContext {
+
+    private static final ThreadLocal<RunContext> CURRENT = new ThreadLocal<>();
+    private static final RunContext EMPTY = new RunContext(CancellationToken.NONE, Deadline.NONE);
+
+    private final CancellationToken cancellationToken;
+    private final Deadline deadline;
+    private final String sessionId;
+    private final TokenBudget tokenBudget;
+
+    public RunContext(CancellationToken cancellationToken, Deadline deadline, String sessionId, TokenBudget tokenBudget) {
+        this.cancellationToken = cancellationToken;
+        this.deadline = deadline;
+        this.sessionId = sessionId;
+        this.tokenBudget = tokenBudget != null ? tokenBudget : TokenBudget.UNLIMITED;
+    }
+
+    public RunContext(CancellationToken cancellationToken, Deadline deadline) {
+        this(cancellationToken, deadline, null, TokenBudget.UNLIMITED);
+    }
+
+    public RunContext(CancellationToken cancellationToken) {
+        this(cancellationToken, Deadline.NONE);
+    }
+
+    /**
+     * 当前线程的执行上下文（未绑定时返回永不取消的空上下文）
+     */
+    public static RunContext current() {
+        RunContext context = CURRENT.get();
+        return context != null ? context : EMPTY;
+    }
+
+    /**
+     * 取消令牌
+     */
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * 执行时限
+     */
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * 所属会话 ID（无会话时为 null）
+     */
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * Token 预算（未设置时为 UNLIMITED）
+     */
+    public TokenBudget getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * 派生上下文：替换取消令牌（如在其他线程上执行的子任务），保留时限、会话和 Token 预算
+     */
+    public RunContext withCancellationToken(CancellationToken cancellationToken) {
+        return new RunContext(cancellationToken, deadline, sessionId, tokenBudget);
+    }
+
+    /**
+     * 检查点：已取消时抛出 AgentCancelledException，已超时时抛出 DeadlineExceededException
+     */
+    public void checkpoint() {
+        cancellationToken.throwIfCancelled();
+        deadline.throwIfExpired();
+    }
+
+    /**
+     * 绑定到当前线程，关闭返回的 Scope 时恢复之前的上下文
+     */
+    public Scope attach() {
+        RunContext previous = CURRENT.get();
+        CURRENT.set(this);
+        return () -> {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * 上下文绑定范围
+     */
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.nanobot.core.agent;
+
+/**
+ * Token 预算 - 一个会话还能消耗的 Token 数（provider 上报的 prompt + completion）
+ *
+ * 随 RunContext 传给引擎，每一步开始前检查，用尽时提前结束 ReAct 循环。
+ * 剩余量由实现按实际用量实时计算（如按会话累计的用量统计）。
+ */
+@FunctionalInterface
+public interface TokenBudget {
+
+    /** 不限制 */
+    TokenBudget UNLIMITED = () -> Long.MAX_VALUE;
+
+    /**
+     * 剩余 Token 数（可能为负：最后一次调用超出预算）
+     */
+    long remaining();
+
+    /**
+     * 预算是否已用尽
+     */
+    default boolean isExhausted() {
+        return remaining() <= 0;
+    }
+}
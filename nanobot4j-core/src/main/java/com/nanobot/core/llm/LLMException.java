@@ -0,0 +1,17 @@
+package com.nanobot.core.llm;
+
+/**
+ * LLM 调用失败（所有可用 provider 都失败或不可用）
+ *
+ * 由 LLMClient 抛出，而不是把错误信息作为模型输出返回。
+ */
+public class LLMException extends RuntimeException {
+
+    public LLMException(String message) {
+        super(message);
+    }
+
+    public LLMException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
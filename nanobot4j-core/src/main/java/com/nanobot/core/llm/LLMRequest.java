@@ -1,5 +1,6 @@
 package com.nanobot.core.llm;
 
+import com.nanobot.core.tool.ToolDefinition;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,9 +21,9 @@ public class LLMRequest {
     private List<Message> messages;
 
     /**
-     * 可用的工具列表
+     * 以原生 function calling 提供给 LLM 的工具（null 或空列表时不发送工具定义）
      */
-    private List<ToolCall> tools;
+    private List<ToolDefinition> tools;
 
     /**
      * 模型名称
@@ -38,4 +39,33 @@ public class LLMRequest {
      * 最大 Token 数
      */
     private Integer maxTokens;
+
+    /**
+     * 是否允许复用相同请求的缓存响应（温度为 0 的请求无需设置；由实现决定是否启用缓存）
+     */
+    private boolean cacheable;
+
+    /**
+     * 调度优先级（null 视为 INTERACTIVE；由实现决定排队时是否区分）
+     */
+    private Priority priority;
+
+    /**
+     * 调用方（如 agent、summary），用于按调用方统计 Token 用量（null 视为 default）
+     */
+    private String caller;
+
+    public LLMRequest(List<Message> messages, List<ToolDefinition> tools, String model, Double temperature, Integer maxTokens) {
+        this(messages, tools, model, temperature, maxTokens, false, null, null);
+    }
+
+    /**
+     * 调度优先级：需要限流排队时交互请求优先于后台请求
+     */
+    public enum Priority {
+        /** 用户正在等待结果的请求（如 Agent 推理步骤） */
+        INTERACTIVE,
+        /** 后台请求（如记忆摘要） */
+        BACKGROUND
+    }
 }
@@ -41,5 +41,10 @@ public class LLMResponse {
         private int promptTokens;
         private int completionTokens;
         private int totalTokens;
+
+        /**
+         * 命中服务端上下文缓存的 Prompt Token 数（包含在 promptTokens 中，未上报时为 0）
+         */
+        private int cachedPromptTokens;
     }
 }
@@ -3,6 +3,8 @@ package com.nanobot.core.llm;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 /**
  * 消息
  */
@@ -30,6 +32,11 @@ public class Message {
      */
     private String toolName;
 
+    /**
+     * LLM 通过原生 function calling 发起的工具调用（如果是 assistant 角色）
+     */
+    private List<ToolCall> toolCalls;
+
     public Message(String role, String content, String toolCallId, String toolName) {
         this.role = role;
         this.content = content;
@@ -49,6 +56,12 @@ public class Message {
         return new Message("assistant", content, null, null);
     }
 
+    public static Message assistant(String content, List<ToolCall> toolCalls) {
+        Message message = new Message("assistant", content, null, null);
+        message.setToolCalls(toolCalls);
+        return message;
+    }
+
     public static Message tool(String toolCallId, String toolName, String content) {
         return new Message("tool", content, toolCallId, toolName);
     }
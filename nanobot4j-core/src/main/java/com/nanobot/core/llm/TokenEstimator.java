@@ -0,0 +1,64 @@
+package com.nanobot.core.llm;
+
+import com.nanobot.core.tool.ToolDefinition;
+
+/**
+ * Token 数粗略估算（不依赖具体模型的分词器）
+ */
+public final class TokenEstimator {
+
+    /** 每条消息的角色、分隔符等固定开销 */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的 Token 数：中日韩字符按 1 个 Token，其余字符按 4 个字符 1 个 Token
+     */
+    public static int estimate(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isIdeographic(text.charAt(i))) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 估算消息列表作为 Prompt 的 Token 数
+     */
+    public static int estimate(Iterable<Message> messages) {
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimate(message.getContent()) + MESSAGE_OVERHEAD_TOKENS;
+            if (message.getToolCalls() != null) {
+                for (ToolCall toolCall : message.getToolCalls()) {
+                    tokens += estimate(toolCall.getName()) + estimate(String.valueOf(toolCall.getArguments()));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算工具定义（名称、描述、参数 Schema）占用的 Prompt Token 数
+     */
+    public static int estimateTools(Iterable<ToolDefinition> tools) {
+        int tokens = 0;
+        if (tools != null) {
+            for (ToolDefinition tool : tools) {
+                tokens += estimate(tool.getName()) + estimate(tool.getDescription())
+                    + estimate(tool.getParameterSchema()) + MESSAGE_OVERHEAD_TOKENS;
+            }
+        }
+        return tokens;
+    }
+}
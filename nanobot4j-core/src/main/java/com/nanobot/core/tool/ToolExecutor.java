@@ -0,0 +1,40 @@
+package com.nanobot.core.tool;
+
+import com.nanobot.core.llm.ToolCall;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 工具执行器 - 按名称分发工具调用
+ */
+@FunctionalInterface
+public interface ToolExecutor {
+
+    /**
+     * 执行工具调用
+     * @param toolCall 工具调用
+     * @return 执行结果
+     */
+    ToolResult execute(ToolCall toolCall);
+
+    /**
+     * 基于一组 Tool 创建执行器，未知工具返回失败结果
+     * @param tools 工具列表
+     * @return 工具执行器
+     */
+    static ToolExecutor of(Collection<? extends Tool> tools) {
+        Map<String, Tool> byName = new LinkedHashMap<>();
+        for (Tool tool : tools) {
+            byName.put(tool.getName(), tool);
+        }
+        return toolCall -> {
+            Tool tool = byName.get(toolCall.getName());
+            if (tool == null) {
+                return ToolResult.failure("Unknown tool: " + toolCall.getName());
+            }
+            return tool.execute(toolCall.getArguments());
+        };
+    }
+}
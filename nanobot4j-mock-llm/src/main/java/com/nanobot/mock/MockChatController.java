@@ -0,0 +1,201 @@
+package com.nanobot.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OpenAI 兼容的 chat/completions 端点（同时响应 /v1 前缀和无前缀的路径）
+ *
+ * - 普通请求：延迟后返回完整的 chat.completion
+ * - stream=true：首个分块在延迟后发出，之后按 chunk-interval-ms 发出 chat.completion.chunk，
+ *   最后一个分块带 finish_reason 和 usage，以 data: [DONE] 结束
+ * - 注入的错误：延迟后返回 OpenAI 风格的错误体（429 带 Retry-After）
+ *
+ * 延迟由 Reactor 定时器实现，不占用线程，可以模拟大量并发的慢请求。
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class MockChatController {
+
+    private final MockResponder responder;
+    private final MockLlmProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder injectedErrors = new LongAdder();
+
+    @PostMapping({"/v1/chat/completions", "/chat/completions"})
+    public Mono<ResponseEntity<Flux<String>>> chatCompletions(@RequestBody String body) {
+        requests.increment();
+        MockResponder.Plan plan;
+        try {
+            plan = responder.plan(body);
+        } catch (JsonProcessingException e) {
+            return Mono.just(json(HttpStatus.BAD_REQUEST, error("invalid_request_error", "Invalid JSON body")));
+        }
+
+        ResponseEntity<Flux<String>> response;
+        if (plan.status() != 200) {
+            injectedErrors.increment();
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(plan.status()).contentType(MediaType.APPLICATION_JSON);
+            if (plan.status() == 429) {
+                builder.header("Retry-After", String.valueOf(properties.getErrors().getRetryAfterSeconds()));
+            }
+            response = builder.body(Flux.just(error(plan.status() == 429 ? "rate_limit_error" : "server_error",
+                "Mock injected error")));
+        } else if (plan.stream()) {
+            // 首个分块的延迟由 delaySubscription 实现，响应头立即返回
+            response = ResponseEntity.ok().contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(streamChunks(plan).delaySubscription(plan.delay()));
+            return Mono.just(response);
+        } else {
+            response = json(HttpStatus.OK, completion(plan));
+        }
+        return Mono.just(response).delayElement(plan.delay());
+    }
+
+    @GetMapping({"/v1/models", "/models"})
+    public Map<String, Object> models() {
+        return Map.of("object", "list",
+            "data", List.of(Map.of("id", properties.getModel(), "object", "model", "owned_by", "nanobot4j-mock")));
+    }
+
+    /**
+     * 请求计数（压测时核对客户端实际发出的请求数）
+     */
+    @GetMapping("/mock/stats")
+    public Map<String, Object> stats() {
+        return Map.of("requests", requests.sum(), "injectedErrors", injectedErrors.sum());
+    }
+
+    // ========== 响应体 ==========
+
+    private String completion(MockResponder.Plan plan) {
+        ObjectNode root = envelope("chat.completion");
+        ObjectNode choice = root.putArray("choices").addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", plan.content());
+        if (!plan.toolCalls().isEmpty()) {
+            writeToolCalls(message.putArray("tool_calls"), plan.toolCalls());
+        }
+        choice.put("finish_reason", plan.toolCalls().isEmpty() ? "stop" : "tool_calls");
+        writeUsage(root, plan);
+        return toJson(root);
+    }
+
+    private Flux<String> streamChunks(MockResponder.Plan plan) {
+        List<String> chunks = new ArrayList<>();
+        String id = "chatcmpl-" + UUID.randomUUID();
+
+        String content = plan.content() != null ? plan.content() : "";
+        int size = Math.max(1, properties.getStream().getChunkChars());
+        ObjectNode first = chunk(id);
+        first.withObject("/choices/0/delta").put("role", "assistant");
+        chunks.add(toJson(first));
+        for (int i = 0; i < content.length(); i += size) {
+            ObjectNode chunk = chunk(id);
+            chunk.withObject("/choices/0/delta").put("content", content.substring(i, Math.min(content.length(), i + size)));
+            chunks.add(toJson(chunk));
+        }
+        if (!plan.toolCalls().isEmpty()) {
+            ObjectNode chunk = chunk(id);
+            ArrayNode toolCalls = chunk.withObject("/choices/0/delta").putArray("tool_calls");
+            writeToolCalls(toolCalls, plan.toolCalls());
+            for (int i = 0; i < toolCalls.size(); i++) {
+                ((ObjectNode) toolCalls.get(i)).put("index", i);
+            }
+            chunks.add(toJson(chunk));
+        }
+        ObjectNode last = chunk(id);
+        ((ObjectNode) last.withArray("choices").get(0))
+            .put("finish_reason", plan.toolCalls().isEmpty() ? "stop" : "tool_calls");
+        writeUsage(last, plan);
+        chunks.add(toJson(last));
+        chunks.add("[DONE]");
+
+        // 首个分块（role）立即发出，其余分块按间隔发出
+        return Flux.concat(Flux.just(chunks.get(0)),
+            Flux.fromIterable(chunks.subList(1, chunks.size()))
+                .delayElements(Duration.ofMillis(properties.getStream().getChunkIntervalMs())));
+    }
+
+    private ObjectNode chunk(String id) {
+        ObjectNode chunk = envelope("chat.completion.chunk");
+        chunk.put("id", id);
+        ObjectNode choice = chunk.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.putNull("finish_reason");
+        return chunk;
+    }
+
+    private ObjectNode envelope(String object) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", "chatcmpl-" + UUID.randomUUID());
+        root.put("object", object);
+        root.put("created", System.currentTimeMillis() / 1000);
+        root.put("model", properties.getModel());
+        return root;
+    }
+
+    private static void writeToolCalls(ArrayNode array, List<MockResponder.ToolCallReply> toolCalls) {
+        for (MockResponder.ToolCallReply toolCall : toolCalls) {
+            ObjectNode call = array.addObject();
+            call.put("id", toolCall.id());
+            call.put("type", "function");
+            ObjectNode function = call.putObject("function");
+            function.put("name", toolCall.name());
+            function.put("arguments", toolCall.arguments());
+        }
+    }
+
+    private static void writeUsage(ObjectNode root, MockResponder.Plan plan) {
+        ObjectNode usage = root.putObject("usage");
+        usage.put("prompt_tokens", plan.promptTokens());
+        usage.put("completion_tokens", plan.completionTokens());
+        usage.put("total_tokens", plan.promptTokens() + plan.completionTokens());
+    }
+
+    private String error(String type, String message) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode error = root.putObject("error");
+        error.put("message", message);
+        error.put("type", type);
+        return toJson(root);
+    }
+
+    private static ResponseEntity<Flux<String>> json(HttpStatus status, String body) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(Flux.just(body));
+    }
+
+    private String toJson(ObjectNode node) {
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
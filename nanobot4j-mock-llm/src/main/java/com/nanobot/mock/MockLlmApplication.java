@@ -0,0 +1,21 @@
+package com.nanobot.mock;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+
+/**
+ * Mock LLM Application - OpenAI 兼容的本地 LLM 桩服务
+ *
+ * 用于无网络环境下压测和回归 Admin 的 Agent 循环：把 provider 的 base-url 指向本服务
+ * （如 --llm.provider=openai --llm.openai-compatible.base-url=http://localhost:8099/v1），
+ * 响应内容、延迟分布、流式分块和错误注入由 mock-llm.* 配置。
+ */
+@SpringBootApplication
+@EnableConfigurationProperties(MockLlmProperties.class)
+public class MockLlmApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(MockLlmApplication.class, args);
+    }
+}
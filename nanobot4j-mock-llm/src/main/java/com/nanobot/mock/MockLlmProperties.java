@@ -0,0 +1,173 @@
+package com.nanobot.mock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mock LLM 配置属性
+ */
+@Data
+@ConfigurationProperties(prefix = "mock-llm")
+public class MockLlmProperties {
+
+    /**
+     * 随机种子：与请求体的哈希组合，相同的请求得到相同的延迟和错误注入结果
+     */
+    private long seed = 42;
+
+    /**
+     * 响应中的模型名
+     */
+    private String model = "mock-llm";
+
+    /**
+     * 没有规则匹配时的回复（支持 {{input}}、{{last}}、{{tool}} 占位符）
+     */
+    private String defaultReply = "FINAL_ANSWER: mock reply to: {{input}}";
+
+    /**
+     * 脚本规则：按顺序匹配，第一条匹配的规则决定回复
+     */
+    private List<Rule> rules = new ArrayList<>();
+
+    /**
+     * 响应延迟（流式请求为首个分块的延迟）
+     */
+    private Latency latency = new Latency();
+
+    /**
+     * 流式响应（请求 stream=true）
+     */
+    private Stream stream = new Stream();
+
+    /**
+     * 错误注入
+     */
+    private Errors errors = new Errors();
+
+    @Data
+    public static class Rule {
+        /**
+         * 匹配条件（未设置的条件视为满足）
+         */
+        private Match match = new Match();
+
+        /**
+         * 回复内容（支持占位符）
+         */
+        private String content;
+
+        /**
+         * 原生 function calling 的工具调用
+         */
+        private List<ToolCallSpec> toolCalls = new ArrayList<>();
+    }
+
+    @Data
+    public static class Match {
+        /**
+         * 最后一条消息的角色（如 user、tool）
+         */
+        private String lastRole;
+
+        /**
+         * 最后一条 user 消息包含的文本
+         */
+        private String inputContains;
+
+        /**
+         * 请求是否带工具定义
+         */
+        private Boolean hasTools;
+    }
+
+    @Data
+    public static class ToolCallSpec {
+        /**
+         * 工具名称（{{tool}} 表示请求中的第一个工具）
+         */
+        private String name;
+
+        /**
+         * 参数 JSON（支持占位符）
+         */
+        private String arguments = "{}";
+    }
+
+    @Data
+    public static class Latency {
+        /**
+         * 分布：fixed、uniform、normal、lognormal
+         */
+        private String distribution = "fixed";
+
+        /**
+         * 均值（fixed 时即延迟；lognormal 时为分布的中位数）
+         */
+        private long meanMs = 0;
+
+        /**
+         * 标准差（normal）或对数标准差 x 1000（lognormal，如 500 表示 sigma=0.5）
+         */
+        private long stddevMs = 0;
+
+        /**
+         * 下限（uniform 的区间下限，其余分布的截断下限）
+         */
+        private long minMs = 0;
+
+        /**
+         * 上限（uniform 的区间上限，其余分布的截断上限）
+         */
+        private long maxMs = 60000;
+    }
+
+    @Data
+    public static class Stream {
+        /**
+         * 每个分块的字符数
+         */
+        private int chunkChars = 8;
+
+        /**
+         * 分块之间的间隔
+         */
+        private long chunkIntervalMs = 20;
+    }
+
+    @Data
+    public static class Errors {
+        /**
+         * 返回 HTTP 错误的比例（0 ~ 1）
+         */
+        private double rate = 0;
+
+        /**
+         * 注入错误的状态码
+         */
+        private int status = 500;
+
+        /**
+         * 返回 429 的比例（0 ~ 1）
+         */
+        private double throttleRate = 0;
+
+        /**
+         * 429 响应的 Retry-After（秒）
+         */
+        private int retryAfterSeconds = 1;
+
+        /**
+         * 响应前额外停顿的比例（0 ~ 1），用于触发客户端超时和对冲请求
+         */
+        private double stallRate = 0;
+
+        /**
+         * 停顿时长
+         */
+        private long stallMs = 30000;
+    }
+}
@@ -0,0 +1,209 @@
+package com.nanobot.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.llm.TokenEstimator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Mock 响应生成器 - 根据请求体和 mock-llm.* 配置决定本次响应
+ *
+ * 确定性：随机数由 seed、请求体的哈希和该请求体的第几次出现共同决定。同一种子下，
+ * 相同请求体的第 n 次请求总是得到相同的错误注入结果、延迟和工具调用 ID，
+ * 而客户端对注入的 429/5xx 原样重试时会重新抽样，不会每次都命中同一个错误。
+ * 并发发送的相同请求之间次序不定，但整体的抽样结果在每次运行中相同。
+ * 计数按请求体哈希保存在内存中，服务重启后从头开始。
+ *
+ * 每次按固定顺序抽样：错误注入 -> 停顿 -> 延迟 -> 工具调用 ID。
+ */
+@Component
+@RequiredArgsConstructor
+public class MockResponder {
+
+    private final MockLlmProperties properties;
+    private final ObjectMapper objectMapper;
+
+    /** 每种请求体（按哈希）已出现的次数 */
+    private final Map<Integer, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * 生成本次响应的计划
+     *
+     * @param body 请求体（OpenAI chat/completions 格式）
+     * @return 响应计划
+     * @throws JsonProcessingException 请求体不是合法 JSON
+     */
+    public Plan plan(String body) throws JsonProcessingException {
+        JsonNode request = objectMapper.readTree(body);
+        int hash = body.hashCode();
+        int attempt = attempts.computeIfAbsent(hash, h -> new AtomicInteger()).getAndIncrement();
+        Random random = new Random(mix((properties.getSeed() * 31 + hash) * 31 + attempt));
+
+        // 1. 错误注入
+        MockLlmProperties.Errors errors = properties.getErrors();
+        double p = random.nextDouble();
+        int status = 200;
+        if (p < errors.getRate()) {
+            status = errors.getStatus();
+        } else if (p < errors.getRate() + errors.getThrottleRate()) {
+            status = 429;
+        }
+
+        // 2. 停顿 + 延迟
+        long delayMs = random.nextDouble() < errors.getStallRate() ? errors.getStallMs() : 0;
+        delayMs += sampleLatency(properties.getLatency(), random);
+
+        // 3. 回复
+        Conversation conversation = Conversation.of(request);
+        MockLlmProperties.Rule rule = properties.getRules().stream()
+            .filter(r -> matches(r.getMatch(), conversation))
+            .findFirst()
+            .orElse(null);
+
+        String content = rule == null ? render(properties.getDefaultReply(), conversation, false)
+            : rule.getContent() != null ? render(rule.getContent(), conversation, false) : null;
+        List<ToolCallReply> toolCalls = new ArrayList<>();
+        if (rule != null) {
+            for (MockLlmProperties.ToolCallSpec spec : rule.getToolCalls()) {
+                toolCalls.add(new ToolCallReply(
+                    "call_" + Integer.toHexString(random.nextInt()),
+                    render(spec.getName(), conversation, false),
+                    render(spec.getArguments(), conversation, true)));
+            }
+        }
+
+        int completionTokens = TokenEstimator.estimate(content);
+        for (ToolCallReply toolCall : toolCalls) {
+            completionTokens += TokenEstimator.estimate(toolCall.name()) + TokenEstimator.estimate(toolCall.arguments());
+        }
+        return new Plan(status, Duration.ofMillis(delayMs), content, toolCalls,
+            conversation.promptTokens(), completionTokens, request.path("stream").asBoolean(false));
+    }
+
+    /**
+     * 打散种子（MurmurHash3 fmix64）：java.util.Random 对相邻种子的首个输出几乎相同，
+     * 不打散时重试（种子只差 1）仍会命中同一个注入错误
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static boolean matches(MockLlmProperties.Match match, Conversation conversation) {
+        if (match == null) {
+            return true;
+        }
+        if (match.getLastRole() != null && !match.getLastRole().equals(conversation.lastRole())) {
+            return false;
+        }
+        if (match.getInputContains() != null && !conversation.input().contains(match.getInputContains())) {
+            return false;
+        }
+        return match.getHasTools() == null || match.getHasTools() == !conversation.tools().isEmpty();
+    }
+
+    /**
+     * 替换占位符：{{input}} 最后一条 user 消息，{{last}} 最后一条消息，{{tool}} 请求中的第一个工具
+     *
+     * @param json 是否写入 JSON 字符串（替换值按 JSON 转义）
+     */
+    private String render(String template, Conversation conversation, boolean json) {
+        if (template == null) {
+            return null;
+        }
+        String tool = conversation.tools().isEmpty() ? "" : conversation.tools().get(0);
+        return template
+            .replace("{{input}}", json ? escape(conversation.input()) : conversation.input())
+            .replace("{{last}}", json ? escape(conversation.last()) : conversation.last())
+            .replace("{{tool}}", json ? escape(tool) : tool);
+    }
+
+    private String escape(String value) {
+        try {
+            String quoted = objectMapper.writeValueAsString(value);
+            return quoted.substring(1, quoted.length() - 1);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 按配置的分布抽样延迟（截断到 [min-ms, max-ms]）
+     */
+    static long sampleLatency(MockLlmProperties.Latency latency, Random random) {
+        double value = switch (latency.getDistribution()) {
+            case "uniform" -> latency.getMinMs() + random.nextDouble() * (latency.getMaxMs() - latency.getMinMs());
+            case "normal" -> latency.getMeanMs() + random.nextGaussian() * latency.getStddevMs();
+            case "lognormal" -> latency.getMeanMs() * Math.exp(random.nextGaussian() * latency.getStddevMs() / 1000.0);
+            default -> latency.getMeanMs();
+        };
+        return Math.max(latency.getMinMs(), Math.min(latency.getMaxMs(), Math.round(value)));
+    }
+
+    // ========== 内部数据类 ==========
+
+    /**
+     * 一次响应的计划
+     *
+     * @param status HTTP 状态码（200 以外为注入的错误）
+     * @param delay 响应前的延迟（流式请求为首个分块的延迟）
+     * @param content 回复内容（只有工具调用时为 null）
+     * @param toolCalls 工具调用
+     * @param promptTokens 估算的 Prompt Token 数
+     * @param completionTokens 估算的生成 Token 数
+     * @param stream 是否流式响应
+     */
+    public record Plan(int status, Duration delay, String content, List<ToolCallReply> toolCalls,
+                       int promptTokens, int completionTokens, boolean stream) {}
+
+    /**
+     * 回复中的工具调用
+     *
+     * @param id 调用 ID
+     * @param name 工具名称
+     * @param arguments 参数 JSON 字符串
+     */
+    public record ToolCallReply(String id, String name, String arguments) {}
+
+    /**
+     * 请求中与脚本匹配相关的部分
+     */
+    private record Conversation(String input, String last, String lastRole, List<String> tools, int promptTokens) {
+
+        static Conversation of(JsonNode request) {
+            String input = "";
+            String last = "";
+            String lastRole = null;
+            int promptTokens = 0;
+            for (JsonNode message : request.path("messages")) {
+                String content = message.path("content").asText("");
+                lastRole = message.path("role").asText(null);
+                last = content;
+                if ("user".equals(lastRole)) {
+                    input = content;
+                }
+                promptTokens += TokenEstimator.estimate(content) + 4;
+            }
+
+            List<String> tools = new ArrayList<>();
+            for (JsonNode tool : request.path("tools")) {
+                String name = tool.path("function").path("name").asText("");
+                tools.add(name);
+                promptTokens += TokenEstimator.estimate(name)
+                    + TokenEstimator.estimate(tool.path("function").toString()) + 4;
+            }
+            return new Conversation(input, last, lastRole, tools, promptTokens);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.nanobot.reactive;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+
+/**
+ * Reactive Agent Application - WebFlux 非阻塞 Agent 端点
+ *
+ * 与 Admin 的 SseEmitter 端点对照使用：工具从 Admin 注册中心发现，LLM 与工具调用全部走 WebClient。
+ */
+@SpringBootApplication
+public class ReactiveApplication {
+
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveApplication.class, args);
+    }
+}
@@ -0,0 +1,68 @@
+package com.nanobot.reactive.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.agent.AgentStreamEvent;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.ObservationFilter;
+import com.nanobot.reactive.llm.ReactiveLLMClient;
+import com.nanobot.reactive.tool.RemoteToolCatalog;
+import com.nanobot.reactive.tool.RemoteToolClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * 响应式 Agent 服务 - 拉取工具目录、执行 ReactiveReActEngine，并在结尾追加 DONE 事件
+ *
+ * 单轮无状态执行：不读写会话记忆。
+ */
+@Slf4j
+@Service
+public class ReactiveAgentService {
+
+    private final ReactiveReActEngine engine;
+    private final RemoteToolCatalog toolCatalog;
+    private final RemoteToolClient toolClient;
+    private final Duration runTimeout;
+
+    public ReactiveAgentService(
+        ReactiveLLMClient llmClient,
+        RemoteToolCatalog toolCatalog,
+        RemoteToolClient toolClient,
+        ObjectMapper objectMapper,
+        @Value("${agent.max-steps:15}") int maxSteps,
+        @Value("${agent.deadline.run-timeout-ms:180000}") long runTimeoutMs
+    ) {
+        this.engine = new ReactiveReActEngine(llmClient, maxSteps, ObservationFilter.IDENTITY, objectMapper);
+        this.toolCatalog = toolCatalog;
+        this.toolClient = toolClient;
+        this.runTimeout = Duration.ofMillis(runTimeoutMs);
+    }
+
+    /**
+     * 执行一轮对话（订阅时开始，取消订阅时中止）
+     *
+     * @param userMessage 用户消息
+     * @return 事件流，总是以 DONE 结束
+     */
+    public Flux<AgentStreamEvent> chat(String userMessage) {
+        return Mono.fromSupplier(() -> Deadline.after(runTimeout))
+            .zipWith(toolCatalog.tools())
+            .flatMapMany(tuple -> {
+                Deadline deadline = tuple.getT1();
+                log.info("[ReAct] reactive run started with {} tools", tuple.getT2().size());
+                return engine.run(userMessage, new ReactivePromptBuilder(tuple.getT2()),
+                    toolClient.executorFor(tuple.getT2(), deadline), deadline);
+            })
+            .onErrorResume(e -> {
+                log.error("[ReAct] reactive run failed", e);
+                return Flux.just(AgentStreamEvent.error("执行出错: " + e.getMessage()));
+            })
+            .concatWith(Mono.fromSupplier(AgentStreamEvent::done))
+            .doOnCancel(() -> log.info("[ReAct] reactive run cancelled by client"));
+    }
+}
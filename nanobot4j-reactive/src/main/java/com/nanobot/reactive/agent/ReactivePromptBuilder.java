@@ -0,0 +1,87 @@
+package com.nanobot.reactive.agent;
+
+import com.nanobot.core.agent.ReActParser;
+import com.nanobot.core.agent.ReActPromptBuilder;
+import com.nanobot.core.agent.ReActRun;
+import com.nanobot.reactive.tool.RemoteTool;
+
+import java.util.List;
+
+/**
+ * 单轮执行的 System Prompt 构建器（每轮新建）
+ *
+ * 输出协议与 Admin 相同（由 core 的 ReActParser 解析）；本模块只接入远程工具，
+ * 不提供 create_tool、动态工具和会话记忆。
+ */
+class ReactivePromptBuilder implements ReActPromptBuilder {
+
+    /**
+     * 静态前缀：角色定义 + 输出协议
+     */
+    static final String PROMPT_PREFIX = """
+        # 角色
+        你是 Nanobot，一个 ReAct Agent。
+
+        # 核心原则
+        1. 你必须逐步推理，每次只执行一个动作（TOOL_CALL 或 FINAL_ANSWER）。
+        2. 遇到工具报错时，必须先用 <thinking> 反思原因，再换策略，禁止无脑重试。
+
+        # 输出协议（严格遵守）
+
+        ## 每一步必须先输出思考
+        在任何 TOOL_CALL 或 FINAL_ANSWER 之前，必须先输出：
+        ```
+        <thinking>
+        [你的推理过程：分析当前状态、选择工具的理由、上一步错误的反思]
+        </thinking>
+        ```
+
+        ## 调用工具
+        ```
+        %s {"name": "工具名", "args": {参数字典}}
+        ```
+
+        ## 给出最终答案
+        ```
+        %s 你的完整答案
+        ```
+
+        ## 禁止事项
+        - 禁止在一次输出中同时出现多个 TOOL_CALL
+        - 禁止省略 <thinking> 标签
+
+        """.formatted(ReActParser.TOOL_CALL_MARKER, ReActParser.FINAL_ANSWER_MARKER);
+
+    private final String toolFragment;
+
+    ReactivePromptBuilder(List<RemoteTool> tools) {
+        StringBuilder sb = new StringBuilder("# 可用工具\n");
+        if (tools.isEmpty()) {
+            sb.append("（当前没有可用工具，请直接回答）\n");
+        }
+        for (RemoteTool tool : tools) {
+            sb.append("- **").append(tool.name()).append("**：").append(tool.description()).append("\n")
+                .append("  参数格式：").append(tool.parameterSchema()).append("\n");
+        }
+        sb.append("\n");
+        this.toolFragment = sb.toString();
+    }
+
+    @Override
+    public String buildSystemPrompt(ReActRun run) {
+        StringBuilder sb = new StringBuilder(PROMPT_PREFIX.length() + toolFragment.length() + 2048);
+        sb.append(PROMPT_PREFIX).append(toolFragment);
+
+        List<String> history = run.getHistory();
+        if (!history.isEmpty()) {
+            sb.append("# 本轮执行记录\n");
+            for (String entry : history) {
+                sb.append(entry).append("\n");
+            }
+            sb.append("\n");
+        }
+
+        sb.append("请根据以上信息，输出你的 <thinking> 和下一步动作。");
+        return sb.toString();
+    }
+}
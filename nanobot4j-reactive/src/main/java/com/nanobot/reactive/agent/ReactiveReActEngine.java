@@ -0,0 +1,237 @@
+package com.nanobot.reactive.agent;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nanobot.core.agent.AgentStreamEvent;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.agent.ObservationFilter;
+import com.nanobot.core.agent.ReActEngine;
+import com.nanobot.core.agent.ReActParser;
+import com.nanobot.core.agent.ReActPromptBuilder;
+import com.nanobot.core.agent.ReActRun;
+import com.nanobot.core.agent.RepeatedErrorGuard;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.Message;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolResult;
+import com.nanobot.reactive.llm.ReactiveLLMClient;
+import com.nanobot.reactive.tool.ReactiveToolExecutor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 响应式 ReAct 执行引擎 - 与 core 的 ReActEngine 语义相同，LLM 与工具调用不占用线程
+ *
+ * 状态机用 Flux.expand 展开：每个节点是一次 LLM 调用（思考）或一次工具调用（观察），
+ * 节点产生的事件经 flatMapIterable(prefetch = 1) 逐个交给下游：
+ * 1. 背压：下游没有请求时不会展开新节点，慢消费者最多让执行领先一个节点
+ * 2. 取消：客户端断开即取消订阅，进行中的 WebClient 请求随之中止
+ * 3. 时限：每个节点开始前检查 Deadline，LLM/工具调用的等待时间不超过剩余预算，
+ *    超时时输出 ERROR 事件结束
+ * 4. 熔断器与防死循环与 ReActEngine 相同（共用 ReActParser、RepeatedErrorGuard）
+ *
+ * 引擎本身无状态；每次订阅都会新建一轮执行。DONE 事件由调用方追加。
+ */
+@Slf4j
+public class ReactiveReActEngine {
+
+    private final ReactiveLLMClient llmClient;
+    private final int maxSteps;
+    private final ObservationFilter observationFilter;
+    private final ReActParser parser;
+    private final ObjectMapper objectMapper;
+
+    public ReactiveReActEngine(ReactiveLLMClient llmClient, int maxSteps,
+                               ObservationFilter observationFilter, ObjectMapper objectMapper) {
+        this.llmClient = llmClient;
+        this.maxSteps = maxSteps;
+        this.observationFilter = observationFilter != null ? observationFilter : ObservationFilter.IDENTITY;
+        this.parser = new ReActParser(objectMapper);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 执行一轮 ReAct 循环
+     *
+     * @param userMessage 用户消息
+     * @param promptBuilder System Prompt 构建器
+     * @param toolExecutor 工具执行器
+     * @param deadline 本轮执行时限
+     * @return 事件流（不含 DONE）
+     */
+    public Flux<AgentStreamEvent> run(String userMessage, ReActPromptBuilder promptBuilder,
+                                      ReactiveToolExecutor toolExecutor, Deadline deadline) {
+        return Flux.defer(() -> {
+            Execution execution = new Execution(userMessage, promptBuilder, toolExecutor, deadline);
+            return execution.think(0)
+                .expand(execution::next)
+                .flatMapIterable(Node::events, 1);
+        }).onErrorResume(DeadlineExceededException.class, e -> {
+            log.warn("[ReAct] run deadline exceeded");
+            return Flux.just(AgentStreamEvent.error("⏱ 执行超时：已超过本轮执行时限，请简化任务或拆分后重试。"));
+        });
+    }
+
+    /**
+     * 状态机节点
+     *
+     * @param step 所属步骤（从 0 开始）
+     * @param events 节点产生的事件
+     * @param pendingCall 待执行的工具调用（思考节点决定调用工具时非空）
+     * @param pendingArgs 待执行工具调用的参数 JSON
+     * @param finished 是否为最后一个节点
+     */
+    private record Node(int step, List<AgentStreamEvent> events, ToolCall pendingCall,
+                       String pendingArgs, boolean finished) {
+
+        static Node finished(int step, List<AgentStreamEvent> events) {
+            return new Node(step, events, null, null, true);
+        }
+
+        static Node next(int step, List<AgentStreamEvent> events) {
+            return new Node(step, events, null, null, false);
+        }
+    }
+
+    /**
+     * 一轮执行的可变状态（同一订阅内的节点按顺序执行，不会并发访问）
+     */
+    private final class Execution {
+
+        private final ReActRun run;
+        private final String userMessage;
+        private final ReActPromptBuilder promptBuilder;
+        private final ReactiveToolExecutor toolExecutor;
+        private final Deadline deadline;
+        private final RepeatedErrorGuard errorGuard = new RepeatedErrorGuard();
+
+        Execution(String userMessage, ReActPromptBuilder promptBuilder,
+                  ReactiveToolExecutor toolExecutor, Deadline deadline) {
+            this.run = new ReActRun(userMessage);
+            this.userMessage = userMessage;
+            this.promptBuilder = promptBuilder;
+            this.toolExecutor = toolExecutor;
+            this.deadline = deadline;
+        }
+
+        Mono<Node> next(Node node) {
+            if (node.finished()) {
+                return Mono.empty();
+            }
+            return node.pendingCall() != null ? observe(node) : think(node.step() + 1);
+        }
+
+        /**
+         * 思考节点：调用 LLM 并解析输出
+         */
+        Mono<Node> think(int step) {
+            if (step >= maxSteps) {
+                // 熔断器触发
+                log.warn("[ReAct] circuit breaker triggered after {} steps", maxSteps);
+                return Mono.just(Node.finished(step, List.of(AgentStreamEvent.error(
+                    "⚡ 熔断器触发：已达最大步数 " + maxSteps + " 步，强制退出。请简化任务或拆分后重试。"))));
+            }
+
+            return Mono.defer(() -> {
+                deadline.throwIfExpired();
+                log.info("[ReAct] step={}/{}", step + 1, maxSteps);
+                run.setStep(step);
+
+                // 第一步发送用户消息，之后发送"继续"
+                String systemPrompt = promptBuilder.buildSystemPrompt(run);
+                String userTurn = step == 0 ? userMessage : ReActEngine.CONTINUE_PROMPT;
+                LLMRequest request = new LLMRequest(
+                    List.of(Message.system(systemPrompt), Message.user(userTurn)), null, null, null, null);
+                return withinDeadline(llmClient.chat(request));
+            }).map(response -> {
+                log.debug("[ReAct] step={} llmResponse={}", step, response.getContent());
+                ReActParser.ParsedStep parsed = parser.parse(response.getContent());
+
+                List<AgentStreamEvent> events = new ArrayList<>(2);
+                if (!parsed.thinking().isEmpty()) {
+                    events.add(AgentStreamEvent.thinking("🧠 " + parsed.thinking()));
+                }
+
+                if (parsed.isFinalAnswer()) {
+                    events.add(AgentStreamEvent.finalAnswer(parsed.answer()));
+                    return Node.finished(step, events);
+                }
+
+                // 纯文本（中间思考），记入执行记录继续
+                if (!parsed.hasToolCall()) {
+                    run.record("Agent: " + parsed.action());
+                    return Node.next(step, events);
+                }
+
+                ToolCall toolCall = parsed.toolCall();
+                toolCall.setId("call-" + (step + 1));
+                String toolArgsJson = toJson(toolCall);
+                events.add(AgentStreamEvent.toolCall(toolCall.getName(), toolArgsJson));
+                return new Node(step, events, toolCall, toolArgsJson, false);
+            });
+        }
+
+        /**
+         * 观察节点：执行工具并记录结果
+         */
+        Mono<Node> observe(Node node) {
+            ToolCall toolCall = node.pendingCall();
+            return Mono.defer(() -> {
+                deadline.throwIfExpired();
+                return withinDeadline(toolExecutor.execute(toolCall));
+            }).map(ReactiveReActEngine::toObservation)
+                .onErrorResume(e -> !(e instanceof DeadlineExceededException), e -> {
+                    log.error("[ReAct] tool execution error: tool={}", toolCall.getName(), e);
+                    return Mono.just("Error: " + e.getMessage());
+                })
+                .map(observation -> {
+                    List<AgentStreamEvent> events = new ArrayList<>(2);
+
+                    // 防死循环检测
+                    String sysWarning = errorGuard.check(toolCall.getName(), node.pendingArgs(), observation);
+                    if (sysWarning != null) {
+                        events.add(AgentStreamEvent.warning(sysWarning));
+                        observation = sysWarning;
+                    }
+
+                    observation = observationFilter.apply(toolCall.getName(), observation);
+                    events.add(AgentStreamEvent.toolResult(toolCall.getName(), observation));
+
+                    run.record("Tool Call: " + toolCall.getName() + " args=" + node.pendingArgs());
+                    run.record("Observation: " + observation);
+                    promptBuilder.onObservation(toolCall, observation);
+                    return Node.next(node.step(), events);
+                });
+        }
+
+        /**
+         * 等待时间不超过本轮剩余预算
+         */
+        private <T> Mono<T> withinDeadline(Mono<T> call) {
+            if (!deadline.isBounded()) {
+                return call;
+            }
+            return call.timeout(Duration.ofMillis(Math.max(1, deadline.remainingMillis())))
+                .onErrorMap(TimeoutException.class, e -> new DeadlineExceededException());
+        }
+    }
+
+    private static String toObservation(ToolResult result) {
+        return result.isSuccess() ? String.valueOf(result.getData()) : "Error: " + result.getError();
+    }
+
+    private String toJson(ToolCall toolCall) {
+        try {
+            return objectMapper.writeValueAsString(toolCall.getArguments());
+        } catch (JsonProcessingException e) {
+            return String.valueOf(toolCall.getArguments());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.nanobot.reactive.controller;
+
+import com.nanobot.core.agent.AgentStreamEvent;
+import com.nanobot.reactive.agent.ReactiveAgentService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+/**
+ * 响应式 Agent SSE 端点
+ *
+ * 与 Admin 的 /api/agent/stream/chat 事件格式相同（event: agent-event，id 从 1 递增），
+ * 事件由 WebFlux 按客户端的读取速度写出，客户端断开时取消整轮执行。
+ */
+@RestController
+@RequestMapping("/api/agent/reactive")
+@RequiredArgsConstructor
+public class ReactiveAgentController {
+
+    private final ReactiveAgentService agentService;
+
+    /**
+     * 流式对话接口
+     *
+     * @param request 包含 message 字段
+     * @return SSE 事件流
+     */
+    @PostMapping(value = "/chat", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AgentStreamEvent>> chat(@RequestBody ChatRequest request) {
+        return agentService.chat(request.message())
+            .index()
+            .map(indexed -> ServerSentEvent.builder(indexed.getT2())
+                .id(String.valueOf(indexed.getT1() + 1))
+                .event("agent-event")
+                .build());
+    }
+
+    /**
+     * 请求体
+     *
+     * @param message 用户消息
+     */
+    public record ChatRequest(String message) {}
+}
@@ -0,0 +1,23 @@
+package com.nanobot.reactive.llm;
+
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import reactor.core.publisher.Mono;
+
+/**
+ * 非阻塞 LLM 客户端 - core 模块 LLMClient 的响应式版本
+ */
+public interface ReactiveLLMClient {
+
+    /**
+     * 发送请求（订阅时发起 HTTP 调用，取消订阅时中止请求）
+     * @param request LLM 请求
+     * @return LLM 响应
+     */
+    Mono<LLMResponse> chat(LLMRequest request);
+
+    /**
+     * 获取模型名称
+     */
+    String getModelName();
+}
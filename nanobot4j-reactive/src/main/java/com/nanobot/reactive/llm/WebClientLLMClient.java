@@ -0,0 +1,174 @@
+package com.nanobot.reactive.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nanobot.core.agent.DeadlineExceededException;
+import com.nanobot.core.llm.LLMException;
+import com.nanobot.core.llm.LLMRequest;
+import com.nanobot.core.llm.LLMResponse;
+import com.nanobot.core.llm.Message;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 WebClient 的 LLM 客户端 - 支持 DeepSeek、Kimi 和任意 OpenAI 兼容端点
+ *
+ * 端点与生成参数使用与 Admin 相同的配置项（llm.provider、llm.{provider}.base-url/api-key/model、
+ * llm.openai-compatible.*、llm.profiles.default.*），两条链路可以对同一个本地模拟服务压测。
+ *
+ * 与 Admin 的 LLMService 行为一致：调用失败时发出 LLMException，由 ReAct 循环作为错误事件结束本轮执行，
+ * 而不是把错误信息当作模型输出。
+ */
+@Slf4j
+@Component
+public class WebClientLLMClient implements ReactiveLLMClient {
+
+    private final WebClient webClient;
+    private final String providerName;
+    private final String model;
+    private final double temperature;
+    private final int maxTokens;
+    /** 单次请求超时（整轮执行时限由引擎另行约束） */
+    private final Duration requestTimeout;
+
+    public WebClientLLMClient(
+        WebClient.Builder webClientBuilder,
+        @Value("${llm.provider:deepseek}") String provider,
+        @Value("${llm.deepseek.base-url:https://api.deepseek.com/v1}") String deepseekBaseUrl,
+        @Value("${llm.deepseek.api-key:}") String deepseekApiKey,
+        @Value("${llm.deepseek.model:deepseek-chat}") String deepseekModel,
+        @Value("${llm.kimi.base-url:https://api.moonshot.cn/v1}") String kimiBaseUrl,
+        @Value("${llm.kimi.api-key:}") String kimiApiKey,
+        @Value("${llm.kimi.model:moonshot-v1-8k}") String kimiModel,
+        @Value("${llm.openai-compatible.name:openai}") String compatibleName,
+        @Value("${llm.openai-compatible.base-url:}") String compatibleBaseUrl,
+        @Value("${llm.openai-compatible.api-key:}") String compatibleApiKey,
+        @Value("${llm.openai-compatible.model:}") String compatibleModel,
+        @Value("${llm.profiles.default.model:}") String profileModel,
+        @Value("${llm.profiles.default.temperature:0.7}") double temperature,
+        @Value("${llm.profiles.default.max-tokens:2000}") int maxTokens,
+        @Value("${llm.profiles.default.timeout:60s}") Duration requestTimeout
+    ) {
+        String baseUrl;
+        String apiKey;
+        String providerModel;
+        if ("kimi".equalsIgnoreCase(provider)) {
+            this.providerName = "kimi";
+            baseUrl = kimiBaseUrl;
+            apiKey = kimiApiKey;
+            providerModel = kimiModel;
+        } else if (compatibleName.equalsIgnoreCase(provider)) {
+            this.providerName = compatibleName;
+            baseUrl = compatibleBaseUrl;
+            apiKey = compatibleApiKey;
+            providerModel = compatibleModel;
+        } else {
+            if (!"deepseek".equalsIgnoreCase(provider)) {
+                log.warn("Unknown LLM provider: {}, falling back to DeepSeek", provider);
+            }
+            this.providerName = "deepseek";
+            baseUrl = deepseekBaseUrl;
+            apiKey = deepseekApiKey;
+            providerModel = deepseekModel;
+        }
+        this.model = profileModel.isBlank() ? providerModel : profileModel;
+        this.temperature = temperature;
+        this.maxTokens = maxTokens;
+        this.requestTimeout = requestTimeout;
+        this.webClient = webClientBuilder
+            .baseUrl(baseUrl)
+            .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + apiKey)
+            .build();
+        log.info("LLM provider: {} ({}), model: {}", providerName, baseUrl, model);
+    }
+
+    @Override
+    public Mono<LLMResponse> chat(LLMRequest request) {
+        String requestModel = request.getModel() != null ? request.getModel() : model;
+        log.info("Calling {} API with model: {}", providerName, requestModel);
+
+        return webClient.post()
+            .uri("/chat/completions")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(buildRequestBody(request, requestModel))
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .timeout(requestTimeout)
+            .map(this::toResponse)
+            .onErrorMap(e -> !(e instanceof DeadlineExceededException), e -> {
+                log.error("LLM call failed", e);
+                return new LLMException("LLM call failed - " + e.getMessage(), e);
+            });
+    }
+
+    @Override
+    public String getModelName() {
+        return model;
+    }
+
+    private LLMResponse toResponse(JsonNode json) {
+        String content = json.get("choices").get(0).get("message").get("content").asText();
+        LLMResponse.TokenUsage usage = parseUsage(json.get("usage"));
+        log.debug("{} response: {}", providerName, content);
+        return new LLMResponse(content, null, true, usage);
+    }
+
+    /**
+     * 构建 OpenAI 兼容的请求体
+     */
+    private Map<String, Object> buildRequestBody(LLMRequest request, String requestModel) {
+        List<Map<String, Object>> messages = new ArrayList<>();
+        for (Message message : request.getMessages()) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("role", message.getRole());
+            m.put("content", message.getContent());
+            if (message.getToolCallId() != null) {
+                m.put("tool_call_id", message.getToolCallId());
+            }
+            messages.add(m);
+        }
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", requestModel);
+        requestBody.put("messages", messages);
+        requestBody.put("temperature", request.getTemperature() != null ? request.getTemperature() : temperature);
+        requestBody.put("max_tokens", request.getMaxTokens() != null ? request.getMaxTokens() : maxTokens);
+        return requestBody;
+    }
+
+    /**
+     * 解析 OpenAI 兼容的 usage 字段（缓存命中数的字段名与 Admin 的 LLMService 相同）
+     */
+    private LLMResponse.TokenUsage parseUsage(JsonNode usage) {
+        if (usage == null || usage.isNull()) {
+            return null;
+        }
+
+        int cached;
+        if (usage.has("prompt_cache_hit_tokens")) {
+            cached = usage.get("prompt_cache_hit_tokens").asInt();
+        } else if (usage.path("prompt_tokens_details").has("cached_tokens")) {
+            cached = usage.get("prompt_tokens_details").get("cached_tokens").asInt();
+        } else {
+            cached = usage.path("cached_tokens").asInt(0);
+        }
+
+        return new LLMResponse.TokenUsage(
+            usage.path("prompt_tokens").asInt(0),
+            usage.path("completion_tokens").asInt(0),
+            usage.path("total_tokens").asInt(0),
+            cached
+        );
+    }
+}
@@ -0,0 +1,19 @@
+package com.nanobot.reactive.tool;
+
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolResult;
+import reactor.core.publisher.Mono;
+
+/**
+ * 非阻塞工具执行器 - core 模块 ToolExecutor 的响应式版本
+ */
+@FunctionalInterface
+public interface ReactiveToolExecutor {
+
+    /**
+     * 执行一次工具调用（订阅时发起调用，取消订阅时中止请求）
+     * @param toolCall 工具调用
+     * @return 执行结果
+     */
+    Mono<ToolResult> execute(ToolCall toolCall);
+}
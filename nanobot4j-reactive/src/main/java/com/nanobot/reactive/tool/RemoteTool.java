@@ -0,0 +1,11 @@
+package com.nanobot.reactive.tool;
+
+/**
+ * Admin 注册中心中的一个远程工具
+ *
+ * @param name 工具名称
+ * @param description 工具描述
+ * @param parameterSchema 参数 JSON Schema
+ * @param instanceAddress 所在实例地址
+ */
+public record RemoteTool(String name, String description, String parameterSchema, String instanceAddress) {}
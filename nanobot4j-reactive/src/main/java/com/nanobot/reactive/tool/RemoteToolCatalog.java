@@ -0,0 +1,75 @@
+package com.nanobot.reactive.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 远程工具目录 - 从 Admin 注册中心（/api/registry/instances/online）拉取在线工具
+ *
+ * 结果缓存 catalog-refresh 时长，所有并发执行共享同一次拉取；
+ * 拉取失败时不缓存错误，本轮按无工具执行。
+ */
+@Slf4j
+@Component
+public class RemoteToolCatalog {
+
+    private static final Duration FETCH_TIMEOUT = Duration.ofSeconds(5);
+
+    private final WebClient webClient;
+    private final Mono<List<RemoteTool>> tools;
+
+    public RemoteToolCatalog(
+        WebClient.Builder webClientBuilder,
+        @Value("${nanobot.admin.address:http://localhost:8080}") String adminAddress,
+        @Value("${nanobot.admin.catalog-refresh:5s}") Duration refresh
+    ) {
+        this.webClient = webClientBuilder.baseUrl(adminAddress).build();
+        this.tools = fetch().cache(value -> refresh, error -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    /**
+     * 当前在线工具（按名称排序，保证 Prompt 前缀稳定）
+     */
+    public Mono<List<RemoteTool>> tools() {
+        return tools.onErrorResume(e -> {
+            log.warn("Failed to fetch tool catalog from admin: {}", e.getMessage());
+            return Mono.just(List.of());
+        });
+    }
+
+    private Mono<List<RemoteTool>> fetch() {
+        return webClient.get()
+            .uri("/api/registry/instances/online")
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .timeout(FETCH_TIMEOUT)
+            .map(RemoteToolCatalog::parse);
+    }
+
+    private static List<RemoteTool> parse(JsonNode body) {
+        List<RemoteTool> result = new ArrayList<>();
+        for (JsonNode instance : body.path("data")) {
+            String address = instance.path("address").asText();
+            for (JsonNode tool : instance.path("tools")) {
+                result.add(new RemoteTool(
+                    tool.path("name").asText(),
+                    tool.path("description").asText(),
+                    tool.path("parameterSchema").asText("{}"),
+                    address
+                ));
+            }
+        }
+        result.sort(Comparator.comparing(RemoteTool::name).thenComparing(RemoteTool::instanceAddress));
+        log.debug("Fetched {} remote tools", result.size());
+        return List.copyOf(result);
+    }
+}
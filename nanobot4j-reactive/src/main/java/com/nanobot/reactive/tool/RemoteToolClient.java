@@ -0,0 +1,96 @@
+package com.nanobot.reactive.tool;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.llm.ToolCall;
+import com.nanobot.core.tool.ToolResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 远程工具客户端 - 通过 WebClient 调用 Client 端的 /api/nanobot/client/execute
+ *
+ * 与 Admin 的 RemoteToolExecutor 协议相同：本轮剩余预算通过 X-Nanobot-Timeout-Ms 请求头传给 Client 端。
+ */
+@Slf4j
+@Component
+public class RemoteToolClient {
+
+    /** 单次工具调用超时（整轮执行时限由引擎另行约束） */
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(30);
+
+    private final WebClient webClient;
+
+    public RemoteToolClient(WebClient.Builder webClientBuilder) {
+        this.webClient = webClientBuilder.build();
+    }
+
+    /**
+     * 创建本轮执行使用的工具执行器
+     *
+     * @param tools 本轮可用的工具
+     * @param deadline 本轮执行时限
+     * @return 工具执行器
+     */
+    public ReactiveToolExecutor executorFor(List<RemoteTool> tools, Deadline deadline) {
+        return toolCall -> execute(tools, toolCall, deadline);
+    }
+
+    private Mono<ToolResult> execute(List<RemoteTool> tools, ToolCall toolCall, Deadline deadline) {
+        RemoteTool tool = tools.stream()
+            .filter(t -> t.name().equals(toolCall.getName()))
+            .findFirst()
+            .orElse(null);
+        if (tool == null) {
+            log.error("No online instance found with tool: {}", toolCall.getName());
+            return Mono.just(ToolResult.failure("找不到提供该工具的服务实例"));
+        }
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("toolName", toolCall.getName());
+        request.put("params", toolCall.getArguments());
+
+        log.info("Calling remote tool {} at {}", tool.name(), tool.instanceAddress());
+        return webClient.post()
+            .uri(tool.instanceAddress() + "/api/nanobot/client/execute")
+            .contentType(MediaType.APPLICATION_JSON)
+            .headers(headers -> {
+                if (deadline.isBounded()) {
+                    headers.set(Deadline.HEADER, String.valueOf(deadline.remainingMillis()));
+                }
+            })
+            .bodyValue(request)
+            .retrieve()
+            .bodyToMono(JsonNode.class)
+            .timeout(CALL_TIMEOUT)
+            .map(RemoteToolClient::toResult)
+            .onErrorResume(WebClientResponseException.class, e -> {
+                log.error("Remote tool execution failed with HTTP {}", e.getStatusCode().value());
+                return Mono.just(ToolResult.failure("远程调用失败 (HTTP " + e.getStatusCode().value() + ")"));
+            })
+            .onErrorResume(e -> {
+                log.error("Failed to execute remote tool: {}", toolCall.getName(), e);
+                return Mono.just(ToolResult.failure("远程调用异常 - " + e.getMessage()));
+            });
+    }
+
+    private static ToolResult toResult(JsonNode response) {
+        if (response.path("code").asInt() == 200) {
+            JsonNode data = response.path("data");
+            if (data.isMissingNode() || data.isNull()) {
+                return ToolResult.success("");
+            }
+            return ToolResult.success(data.isTextual() ? data.asText() : data.toString());
+        }
+        return ToolResult.failure(response.path("message").asText());
+    }
+}
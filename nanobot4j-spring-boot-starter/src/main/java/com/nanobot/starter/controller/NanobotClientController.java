@@ -1,11 +1,16 @@
 package com.nanobot.starter.controller;
 
+import com.nanobot.core.agent.CancellationToken;
+import com.nanobot.core.agent.Deadline;
+import com.nanobot.core.agent.RunContext;
 import com.nanobot.core.tool.ToolResult;
 import com.nanobot.starter.registry.ToolRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.*;
 
 /**
  * Nanobot Client 执行端点
@@ -18,23 +23,46 @@ public class NanobotClientController {
 
     private final ToolRegistry toolRegistry;
 
+    /**
+     * 带时限的工具执行线程池
+     */
+    private static final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName("nanobot-tool-" + System.currentTimeMillis());
+        return thread;
+    });
+
     public NanobotClientController(ToolRegistry toolRegistry) {
         this.toolRegistry = toolRegistry;
     }
 
     /**
      * 执行工具
+     *
+     * Admin 通过 X-Nanobot-Timeout-Ms 请求头传入本轮 Agent 执行的剩余预算：
+     * 预算已耗尽时直接拒绝，否则最多等待剩余预算，超时后中断工具线程并返回失败
+     *
      * @param request 包含 toolName 和 params
+     * @param timeoutMs 剩余预算（毫秒，可选）
      * @return 标准响应格式
      */
     @PostMapping("/execute")
-    public ToolExecutionResponse execute(@RequestBody ToolExecutionRequest request) {
-        log.info("Received tool execution request: toolName={}, params={}",
-                request.getToolName(), request.getParams());
+    public ToolExecutionResponse execute(@RequestBody ToolExecutionRequest request,
+                                         @RequestHeader(value = Deadline.HEADER, required = false) Long timeoutMs) {
+        log.info("Received tool execution request: toolName={}, params={}, timeoutMs={}",
+                request.getToolName(), request.getParams(), timeoutMs);
+
+        if (timeoutMs != null && timeoutMs <= 0) {
+            log.warn("Tool execution rejected, deadline exceeded: toolName={}", request.getToolName());
+            return ToolExecutionResponse.failure("Tool execution rejected: deadline exceeded");
+        }
 
         try {
             // 从注册表中获取工具并执行
-            ToolResult result = toolRegistry.executeTool(request.getToolName(), request.getParams());
+            ToolResult result = timeoutMs != null
+                    ? executeWithin(request, timeoutMs)
+                    : toolRegistry.executeTool(request.getToolName(), request.getParams());
 
             if (result.isSuccess()) {
                 log.info("Tool execution succeeded: toolName={}, result={}",
@@ -45,12 +73,35 @@ public class NanobotClientController {
                         request.getToolName(), result.getError());
                 return ToolExecutionResponse.failure(result.getError());
             }
+        } catch (TimeoutException e) {
+            log.error("Tool execution timeout: toolName={}, timeoutMs={}", request.getToolName(), timeoutMs);
+            return ToolExecutionResponse.failure("Tool execution timeout after " + timeoutMs + " ms");
         } catch (Exception e) {
             log.error("Tool execution exception: toolName={}", request.getToolName(), e);
             return ToolExecutionResponse.failure("Tool execution exception: " + e.getMessage());
         }
     }
 
+    /**
+     * 在剩余预算内执行工具，执行线程绑定同一时限的 RunContext
+     */
+    private ToolResult executeWithin(ToolExecutionRequest request, long timeoutMs) throws Exception {
+        RunContext context = new RunContext(CancellationToken.NONE, Deadline.after(Duration.ofMillis(timeoutMs)));
+        Future<ToolResult> future = executor.submit(() -> {
+            try (RunContext.Scope ignored = context.attach()) {
+                return toolRegistry.executeTool(request.getToolName(), request.getParams());
+            }
+        });
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        }
+    }
+
     /**
      * 健康检查端点
      */